@@ -249,6 +249,16 @@ public class AirdropManager implements Listener {
                 
                 Player player = (Player) event.getPlayer();
                 
+                // 计入本局比赛的战斗数据
+                if (plugin instanceof RandomItemPVP) {
+                    ArenaManager arenaManager = ((RandomItemPVP) plugin).getArenaManager();
+                    GameInstance game = arenaManager != null ? arenaManager.getRunningGame(player) : null;
+                    MatchResult match = game != null ? game.getCurrentMatch() : null;
+                    if (match != null) {
+                        match.recordAirdropOpened(player);
+                    }
+                }
+                
                 // 只在第一次打开时广播（不使用标题，避免过于干扰）
                 // 聊天消息播报
                 Bukkit.broadcast(Component.text("§6§l【空投】§e" + player.getName() + " §7打开了空投箱并获得稀有装备！"));
@@ -568,6 +568,23 @@ public class ArenaManager {
         return playerArena.containsKey(player);
     }
     
+    /**
+     * 获取玩家所在的正在进行的游戏
+     * @param player 玩家，可以为 null
+     * @return 游戏实例，如果玩家不在房间或房间没有进行中的游戏则返回 null
+     */
+    public GameInstance getRunningGame(Player player) {
+        if (player == null) {
+            return null;
+        }
+        String arenaName = playerArena.get(player);
+        GameArena arena = arenaName != null ? arenas.get(arenaName) : null;
+        if (arena == null || !arena.getGameInstance().isRunning()) {
+            return null;
+        }
+        return arena.getGameInstance();
+    }
+    
     /**
      * 获取房间
      * @param arenaName 房间名
@@ -934,5 +951,15 @@ public class ArenaManager {
     public void saveAllArenas() {
         // TODO: 保存所有房间到配置文件
     }
+    
+    /**
+     * 提交所有进行中比赛的结果（插件关闭时调用，在统计管理器关闭之前）
+     * 比赛中的击杀/死亡只在比赛结束时写入，关闭时不提交会丢失
+     */
+    public void commitRunningMatches() {
+        for (GameArena arena : arenas.values()) {
+            arena.getGameInstance().commitOnShutdown();
+        }
+    }
 }
 
@@ -7,6 +7,7 @@ import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.potion.PotionType;
 
 import java.io.File;
 import java.io.IOException;
@@ -15,6 +16,7 @@ import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -41,6 +43,27 @@ public class ConfigManager {
     
     private File mapsConfigFile;
     private FileConfiguration mapsConfig;
+    
+    // 编译后的配置快照：加载/重载完成后整体替换，所有 getter 只读取快照
+    private volatile ConfigSnapshot snapshot;
+    
+    // 未配置 potions 时发放的药水效果（权重相同）
+    private static final PotionType[] DEFAULT_POTIONS = {
+        PotionType.STRONG_HEALING,      // 强效治疗
+        PotionType.REGENERATION,        // 生命恢复
+        PotionType.STRONG_STRENGTH,     // 强效力量
+        PotionType.STRONG_SWIFTNESS,    // 强效速度
+        PotionType.FIRE_RESISTANCE,     // 抗火
+        PotionType.INVISIBILITY,        // 隐身
+        PotionType.NIGHT_VISION,        // 夜视
+        PotionType.STRONG_LEAPING,      // 强效跳跃
+        PotionType.WATER_BREATHING,     // 水下呼吸
+        PotionType.STRONG_SLOWNESS,     // 强效缓慢（攻击用）
+        PotionType.STRONG_HARMING,      // 强效伤害（攻击用）
+        PotionType.POISON,              // 中毒（攻击用）
+        PotionType.WEAKNESS,            // 虚弱（攻击用）
+        PotionType.STRONG_TURTLE_MASTER // 神龟（防御）
+    };
 
     public ConfigManager(JavaPlugin plugin) {
         this.plugin = plugin;
@@ -68,6 +91,7 @@ public class ConfigManager {
         loadEventsConfig();
         loadDatabaseConfig();
         loadMapsConfig();
+        compileSnapshot();
         
         // 显示配置加载摘要
         displayConfigSummary();
@@ -75,6 +99,21 @@ public class ConfigManager {
         plugin.getLogger().info("============================================");
     }
     
+    /**
+     * 按当前加载的配置文件编译新的快照并整体替换
+     * 必须在所有配置文件加载完成后调用，替换之前的读取方仍使用旧快照
+     */
+    private void compileSnapshot() {
+        this.snapshot = new ConfigSnapshot(this);
+    }
+    
+    /**
+     * 获取当前的配置快照（需要多项设置保持一致时，先取得快照再读取）
+     */
+    public ConfigSnapshot getSnapshot() {
+        return snapshot;
+    }
+    
     /**
      * 加载物品配置文件（items.yml）
      */
@@ -130,6 +169,14 @@ public class ConfigManager {
      * 重载物品配置文件
      */
     public void reloadItemsConfig() {
+        readItemsConfig();
+        compileSnapshot();
+    }
+    
+    /**
+     * 重新读取物品配置文件（不编译快照）
+     */
+    private void readItemsConfig() {
         if (itemsConfigFile.exists()) {
             this.itemsConfig = YamlConfiguration.loadConfiguration(itemsConfigFile);
             plugin.getLogger().info("✓ 物品配置文件已重载: items.yml");
@@ -363,6 +410,7 @@ public class ConfigManager {
         } else {
             this.preset = null;
         }
+        compileSnapshot();
     }
 
     public void reloadConfig() {
@@ -374,8 +422,8 @@ public class ConfigManager {
         this.config = plugin.getConfig();
         plugin.getLogger().info("✓ 主配置文件已重载: config.yml");
         
-        // 重载所有模块化配置
-        reloadItemsConfig();
+        // 重载所有模块化配置（全部读取完成后再替换快照）
+        readItemsConfig();
         loadArenaConfig();
         loadBorderConfig();
         loadEventsConfig();
@@ -389,6 +437,7 @@ public class ConfigManager {
             preset.reload();
             plugin.getLogger().info("✓ 配置预设已重载: " + preset.getPresetName());
         }
+        compileSnapshot();
         
         // 显示配置加载摘要
         displayConfigSummary();
@@ -425,15 +474,16 @@ public class ConfigManager {
         } else {
             this.preset = null;
         }
+        compileSnapshot();
     }
     
     /**
-     * 获取配置值（支持模块化配置、预设覆盖）
+     * 获取配置值（支持模块化配置、预设覆盖；编译快照时调用，游戏中请读取快照）
      * @param path 配置路径
      * @param defaultValue 默认值
      * @return 配置值（优先使用模块化配置，其次预设，最后主配置）
      */
-    private int getIntWithPreset(String path, int defaultValue) {
+    int getIntWithPreset(String path, int defaultValue) {
         // 优先使用模块化配置
         FileConfiguration modularConfig = getModularConfig(path);
         if (modularConfig != null) {
@@ -452,7 +502,7 @@ public class ConfigManager {
         return config.getInt(path, defaultValue);
     }
     
-    private double getDoubleWithPreset(String path, double defaultValue) {
+    double getDoubleWithPreset(String path, double defaultValue) {
         // 优先使用模块化配置
         FileConfiguration modularConfig = getModularConfig(path);
         if (modularConfig != null) {
@@ -471,7 +521,7 @@ public class ConfigManager {
         return config.getDouble(path, defaultValue);
     }
     
-    private boolean getBooleanWithPreset(String path, boolean defaultValue) {
+    boolean getBooleanWithPreset(String path, boolean defaultValue) {
         // 优先使用模块化配置
         FileConfiguration modularConfig = getModularConfig(path);
         if (modularConfig != null) {
@@ -490,7 +540,7 @@ public class ConfigManager {
         return config.getBoolean(path, defaultValue);
     }
     
-    private long getLongWithPreset(String path, long defaultValue) {
+    long getLongWithPreset(String path, long defaultValue) {
         // 优先使用模块化配置
         FileConfiguration modularConfig = getModularConfig(path);
         if (modularConfig != null) {
@@ -509,6 +559,25 @@ public class ConfigManager {
         return config.getLong(path, defaultValue);
     }
     
+    String getStringWithPreset(String path, String defaultValue) {
+        // 优先使用模块化配置
+        FileConfiguration modularConfig = getModularConfig(path);
+        if (modularConfig != null) {
+            String subPath = getSubPath(path);
+            if (modularConfig.contains(subPath)) {
+                return modularConfig.getString(subPath, defaultValue);
+            }
+        }
+        
+        // 其次使用预设
+        if (preset != null && preset.contains(path)) {
+            return preset.getString(path, defaultValue);
+        }
+        
+        // 最后使用主配置
+        return config.getString(path, defaultValue);
+    }
+    
     /**
      * 获取子路径（移除模块前缀）
      * @param path 完整路径（如 "arena.radius", "border.damage"）
@@ -559,16 +628,18 @@ public class ConfigManager {
         return mainList != null && !mainList.isEmpty() ? mainList : defaultValue;
     }
 
-    public int getArenaRadius() { return getIntWithPreset("arena.radius", 48); }
-    public int getMinPlayers() { return getIntWithPreset("arena.min-players", 2); }
-    public int getStartCountdown() { return getIntWithPreset("arena.start-countdown", 30); }
-    public int getAutoStartDelay() { return getIntWithPreset("arena.auto-start-delay", 5); }
-    public int getVoteDuration() { return getIntWithPreset("arena.vote-duration", 15); }
-    public boolean isWorldInstancingEnabled() { return getBooleanWithPreset("arena.world-instancing.enabled", true); }
-    public boolean isWorldInstancingAutoCleanup() { return getBooleanWithPreset("arena.world-instancing.auto-cleanup", true); }
-    public boolean isLobbyEnabled() { return getBooleanWithPreset("arena.lobby.enabled", true); }
-    public double getBorderDamageAmount() { return getDoubleWithPreset("border.damage", 3.0); }
-    public List<String> getItemBlacklist() {
+    public int getArenaRadius() { return snapshot.getArenaRadius(); }
+    public int getMinPlayers() { return snapshot.getMinPlayers(); }
+    public int getStartCountdown() { return snapshot.getStartCountdown(); }
+    public int getAutoStartDelay() { return snapshot.getAutoStartDelay(); }
+    public int getVoteDuration() { return snapshot.getVoteDuration(); }
+    public boolean isWorldInstancingEnabled() { return snapshot.isWorldInstancingEnabled(); }
+    public boolean isWorldInstancingAutoCleanup() { return snapshot.isWorldInstancingAutoCleanup(); }
+    public boolean isLobbyEnabled() { return snapshot.isLobbyEnabled(); }
+    public double getBorderDamageAmount() { return snapshot.getBorderDamageAmount(); }
+    public List<String> getItemBlacklist() { return snapshot.getItemBlacklist(); }
+    
+    List<String> resolveItemBlacklist() {
         // 优先使用预设
         if (preset != null && preset.contains("items.blacklist")) {
             return preset.getStringList("items.blacklist", Collections.emptyList());
@@ -586,7 +657,9 @@ public class ConfigManager {
         return getStringListWithPreset("items.blacklist", Collections.emptyList());
     }
     
-    public long getItemInterval() {
+    public long getItemInterval() { return snapshot.getItemInterval(); }
+    
+    long resolveItemInterval() {
         // 优先使用预设
         if (preset != null && preset.contains("items.interval_ticks")) {
             return preset.getLong("items.interval_ticks", 100L);
@@ -600,20 +673,65 @@ public class ConfigManager {
         // 最后使用主配置
         return getLongWithPreset("items.interval_ticks", 100L);
     }
-    public long getEventDelayMin() { return getLongWithPreset("events.delay_min_ticks", 600L); }
-    public long getEventDelayMax() { return getLongWithPreset("events.delay_max_ticks", 2400L); }
-    public long getEventDelayMinFinal() { return getLongWithPreset("events.delay_min_ticks_final_circle", 200L); }
-    public long getEventDelayMaxFinal() { return getLongWithPreset("events.delay_max_ticks_final_circle", 600L); }
-    public double getShrinkAmount() { return getDoubleWithPreset("border.shrink_amount_per_interval", 6.0); }
-    public long getShrinkInterval() { return getLongWithPreset("border.shrink_interval_ticks", 600L); }
-    public long getShrinkDelay() { return getLongWithPreset("border.first_shrink_delay_ticks", 200L); }
-    public double getMinBorderSize() { return getDoubleWithPreset("border.min_diameter", 10.0); }
+    
+    public int getItemMaxPerTick() { return snapshot.getItemMaxPerTick(); }
+    
+    int resolveItemMaxPerTick() {
+        // 优先使用预设
+        if (preset != null && preset.contains("items.max_per_tick")) {
+            return preset.getInt("items.max_per_tick", 8);
+        }
+        
+        // 其次使用独立的物品配置文件
+        if (hasItemsConfig() && itemsConfig.contains("max_per_tick")) {
+            return itemsConfig.getInt("max_per_tick", 8);
+        }
+        
+        // 最后使用主配置
+        return getIntWithPreset("items.max_per_tick", 8);
+    }
+    public long getEventDelayMin() { return snapshot.getEventDelayMin(); }
+    public long getEventDelayMax() { return snapshot.getEventDelayMax(); }
+    public long getEventDelayMinFinal() { return snapshot.getEventDelayMinFinal(); }
+    public long getEventDelayMaxFinal() { return snapshot.getEventDelayMaxFinal(); }
+    public double getShrinkAmount() { return snapshot.getShrinkAmount(); }
+    public long getShrinkInterval() { return snapshot.getShrinkInterval(); }
+    public long getShrinkDelay() { return snapshot.getShrinkDelay(); }
+    public double getMinBorderSize() { return snapshot.getMinBorderSize(); }
+    public long getWriteBehindFlushDelay() { return snapshot.getWriteBehindFlushDelay(); }
+    public int getWriteBehindMaxBatchSize() { return snapshot.getWriteBehindMaxBatchSize(); }
+    public int getDatabaseQueueCapacity() { return snapshot.getDatabaseQueueCapacity(); }
+    public int getDatabaseStartupBufferCapacity() { return snapshot.getDatabaseStartupBufferCapacity(); }
+    public int getCircuitBreakerFailureThreshold() { return snapshot.getCircuitBreakerFailureThreshold(); }
+    public long getCircuitBreakerOpenDuration() { return snapshot.getCircuitBreakerOpenDuration(); }
+    public int getUuidMigrationChunkSize() { return snapshot.getUuidMigrationChunkSize(); }
+    public long getUuidMigrationChunkDelay() { return snapshot.getUuidMigrationChunkDelay(); }
+    public long getStatsLoadBatchWindow() { return snapshot.getStatsLoadBatchWindow(); }
+    public int getStatsLoadMaxBatchSize() { return snapshot.getStatsLoadMaxBatchSize(); }
+    public int getStatsTransferBatchSize() { return snapshot.getStatsTransferBatchSize(); }
+    public long getStatsTransferProgressInterval() { return snapshot.getStatsTransferProgressInterval(); }
+    public boolean isSeasonsEnabled() { return snapshot.isSeasonsEnabled(); }
+    public String getInitialSeasonId() { return snapshot.getInitialSeasonId(); }
+    public int getDailyStatsRetentionDays() { return snapshot.getDailyStatsRetentionDays(); }
+    public int getLeaderboardSize() { return snapshot.getLeaderboardSize(); }
+    public long getLeaderboardRefreshInterval() { return snapshot.getLeaderboardRefreshInterval(); }
+    public int getReplicaPoolSize() { return snapshot.getReplicaPoolSize(); }
+    public long getReplicaConnectionTimeout() { return snapshot.getReplicaConnectionTimeout(); }
+    public long getReplicaMaxStaleness() { return snapshot.getReplicaMaxStaleness(); }
+    public long getReplicaCheckInterval() { return snapshot.getReplicaCheckInterval(); }
     
     /**
      * 获取物品权重配置（支持预设覆盖和独立文件）
-     * @return 物品权重映射，键为物品类型，值为权重（只包含配置文件中明确指定的物品）
+     * @return 物品权重映射（不可修改），键为物品类型，值为权重（只包含配置文件中明确指定的物品）
      */
     public Map<Material, Integer> getItemWeights() {
+        return snapshot.getItemWeights();
+    }
+    
+    /**
+     * 解析物品权重配置（编译快照时调用，配置无效时的警告只在加载时输出一次）
+     */
+    Map<Material, Integer> resolveItemWeights() {
         Map<Material, Integer> weights = new HashMap<>();
         ConfigurationSection weightsSection = null;
         
@@ -659,12 +777,51 @@ public class ConfigManager {
         return weights;
     }
     
+    /**
+     * 解析药水效果权重（编译快照时调用，优先预设，其次 items.yml，最后主配置）
+     * 都未配置时使用内置的效果列表，各效果权重相同
+     */
+    Map<PotionType, Integer> resolvePotionWeights() {
+        ConfigurationSection potionsSection = null;
+        if (preset != null && preset.getConfig() != null) {
+            potionsSection = preset.getConfig().getConfigurationSection("items.potions");
+        }
+        if (potionsSection == null && hasItemsConfig() && itemsConfig.contains("potions")) {
+            potionsSection = itemsConfig.getConfigurationSection("potions");
+        }
+        if (potionsSection == null) {
+            potionsSection = config.getConfigurationSection("items.potions");
+        }
+        
+        Map<PotionType, Integer> weights = new LinkedHashMap<>();
+        if (potionsSection != null) {
+            for (String key : potionsSection.getKeys(false)) {
+                try {
+                    PotionType type = PotionType.valueOf(key.toUpperCase());
+                    int weight = potionsSection.getInt(key, 1);
+                    if (weight > 0) {
+                        weights.put(type, weight);
+                    }
+                } catch (IllegalArgumentException e) {
+                    plugin.getLogger().warning("无效的药水效果配置: " + key);
+                }
+            }
+        }
+        
+        if (weights.isEmpty()) {
+            for (PotionType type : DEFAULT_POTIONS) {
+                weights.put(type, 1);
+            }
+        }
+        return weights;
+    }
+    
     /**
      * 获取所有可掉落的物品列表（只包含配置文件中指定的物品）
      * @return 物品列表
      */
     public List<Material> getDroppableItems() {
-        return new ArrayList<>(getItemWeights().keySet());
+        return snapshot.getDroppableItems();
     }
     
     /**
@@ -673,7 +830,7 @@ public class ConfigManager {
      * @return 权重值（默认为1）
      */
     public int getItemWeight(Material material) {
-        return getItemWeights().getOrDefault(material, 1);
+        return snapshot.getItemWeights().getOrDefault(material, 1);
     }
     
     /**
@@ -748,9 +905,13 @@ public class ConfigManager {
     
     /**
      * 获取所有可用的地图列表（支持预设覆盖）
-     * @return 地图ID列表
+     * @return 地图ID列表（不可修改）
      */
     public List<String> getAvailableMaps() {
+        return snapshot.getAvailableMaps();
+    }
+    
+    List<String> resolveAvailableMaps() {
         List<String> maps = new ArrayList<>();
         ConfigurationSection mapsSection = null;
         
@@ -777,6 +938,48 @@ public class ConfigManager {
      * @return 显示名称，如果不存在则返回地图ID
      */
     public String getMapName(String mapId) {
+        ConfigSnapshot.MapSettings map = snapshot.getMap(mapId);
+        return map != null ? map.getName() : mapId;
+    }
+    
+    /**
+     * 预设和主配置中出现过的所有地图ID（编译快照时为每张地图解析独立设置）
+     */
+    List<String> resolveMapIds() {
+        List<String> mapIds = new ArrayList<>();
+        if (preset != null && preset.getConfig() != null) {
+            ConfigurationSection presetMaps = preset.getConfig().getConfigurationSection("arena.maps");
+            if (presetMaps != null) {
+                mapIds.addAll(presetMaps.getKeys(false));
+            }
+        }
+        ConfigurationSection mainMaps = config.getConfigurationSection("arena.maps");
+        if (mainMaps != null) {
+            for (String mapId : mainMaps.getKeys(false)) {
+                if (!mapIds.contains(mapId)) {
+                    mapIds.add(mapId);
+                }
+            }
+        }
+        return mapIds;
+    }
+    
+    /**
+     * 解析地图的独立整数设置（优先预设，其次主配置，都没有时使用全局设置）
+     * @param key 地图下的配置项（如 "radius"）
+     */
+    int resolveMapInt(String mapId, String key, int globalValue) {
+        String path = "arena.maps." + mapId + "." + key;
+        if (preset != null && preset.contains(path)) {
+            return preset.getInt(path, globalValue);
+        }
+        if (config.contains(path)) {
+            return config.getInt(path, globalValue);
+        }
+        return globalValue;
+    }
+    
+    String resolveMapName(String mapId) {
         String name = null;
         
         // 优先使用预设
@@ -855,13 +1058,7 @@ public class ConfigManager {
      * @return 是否存在
      */
     public boolean mapExists(String mapId) {
-        // 优先检查预设
-        if (preset != null && preset.contains("arena.maps." + mapId)) {
-            return true;
-        }
-        
-        // 检查主配置
-        return config.contains("arena.maps." + mapId);
+        return snapshot.getMap(mapId) != null;
     }
     
     /**
@@ -908,106 +1105,33 @@ public class ConfigManager {
      * @param mapId 地图ID
      * @return 半径值
      */
-    public int getMapRadius(String mapId) {
-        if (mapId == null) return getArenaRadius();
-        
-        // 优先使用预设
-        if (preset != null && preset.contains("arena.maps." + mapId + ".radius")) {
-            return preset.getInt("arena.maps." + mapId + ".radius", getArenaRadius());
-        }
-        
-        // 使用主配置
-        if (config.contains("arena.maps." + mapId + ".radius")) {
-            return config.getInt("arena.maps." + mapId + ".radius", getArenaRadius());
-        }
-        
-        return getArenaRadius();
-    }
+    public int getMapRadius(String mapId) { return snapshot.getMapRadius(mapId); }
     
     /**
      * 获取地图特定的最少玩家数配置（支持预设覆盖，带fallback到全局配置）
      * @param mapId 地图ID
      * @return 最少玩家数
      */
-    public int getMapMinPlayers(String mapId) {
-        if (mapId == null) return getMinPlayers();
-        
-        // 优先使用预设
-        if (preset != null && preset.contains("arena.maps." + mapId + ".min-players")) {
-            return preset.getInt("arena.maps." + mapId + ".min-players", getMinPlayers());
-        }
-        
-        // 使用主配置
-        if (config.contains("arena.maps." + mapId + ".min-players")) {
-            return config.getInt("arena.maps." + mapId + ".min-players", getMinPlayers());
-        }
-        
-        return getMinPlayers();
-    }
+    public int getMapMinPlayers(String mapId) { return snapshot.getMapMinPlayers(mapId); }
     
     /**
      * 获取地图特定的倒计时配置（支持预设覆盖，带fallback到全局配置）
      * @param mapId 地图ID
      * @return 倒计时时长（秒）
      */
-    public int getMapStartCountdown(String mapId) {
-        if (mapId == null) return getStartCountdown();
-        
-        // 优先使用预设
-        if (preset != null && preset.contains("arena.maps." + mapId + ".start-countdown")) {
-            return preset.getInt("arena.maps." + mapId + ".start-countdown", getStartCountdown());
-        }
-        
-        // 使用主配置
-        if (config.contains("arena.maps." + mapId + ".start-countdown")) {
-            return config.getInt("arena.maps." + mapId + ".start-countdown", getStartCountdown());
-        }
-        
-        return getStartCountdown();
-    }
+    public int getMapStartCountdown(String mapId) { return snapshot.getMapStartCountdown(mapId); }
     
     /**
      * 获取地图特定的自动启动延迟配置（支持预设覆盖，带fallback到全局配置）
      * @param mapId 地图ID
      * @return 自动启动延迟（秒）
      */
-    public int getMapAutoStartDelay(String mapId) {
-        if (mapId == null) return getAutoStartDelay();
-        
-        // 优先使用预设
-        if (preset != null && preset.contains("arena.maps." + mapId + ".auto-start-delay")) {
-            return preset.getInt("arena.maps." + mapId + ".auto-start-delay", getAutoStartDelay());
-        }
-        
-        // 使用主配置
-        if (config.contains("arena.maps." + mapId + ".auto-start-delay")) {
-            return config.getInt("arena.maps." + mapId + ".auto-start-delay", getAutoStartDelay());
-        }
-        
-        return getAutoStartDelay();
-    }
+    public int getMapAutoStartDelay(String mapId) { return snapshot.getMapAutoStartDelay(mapId); }
     
     /**
      * 获取地图特定的投票时长配置（支持预设覆盖，带fallback到全局配置）
      * @param mapId 地图ID
      * @return 投票时长（秒）
      */
-    public int getMapVoteDuration(String mapId) {
-        if (mapId == null) return getVoteDuration();
-        
-        // 优先使用预设
-        if (preset != null && preset.contains("arena.maps." + mapId + ".vote-duration")) {
-            return preset.getInt("arena.maps." + mapId + ".vote-duration", getVoteDuration());
-        }
-        
-        // 使用主配置
-        if (config.contains("arena.maps." + mapId + ".vote-duration")) {
-            return config.getInt("arena.maps." + mapId + ".vote-duration", getVoteDuration());
-        }
-        
-        return getVoteDuration();
-    }
+    public int getMapVoteDuration(String mapId) { return snapshot.getMapVoteDuration(mapId); }
 }
-
-
-
@@ -0,0 +1,244 @@
+package org.luminolcraft.randomitempvp;
+
+import org.bukkit.Material;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 编译后的配置快照（不可变）
+ * 加载或重载配置时，按“模块化配置 → 预设 → 主配置”的优先级把所有设置一次性解析为普通字段；
+ * ConfigManager 通过 volatile 引用整体替换快照，读取方要么看到旧配置，要么看到新配置，不会看到重载了一半的配置。
+ * 游戏中的定时任务和事件只读取这里的字段，不再遍历 YAML
+ */
+public final class ConfigSnapshot {
+    
+    /**
+     * 地图的独立设置（未单独配置的项已回退到全局设置）
+     */
+    public static final class MapSettings {
+        private final String name;
+        private final int radius;
+        private final int minPlayers;
+        private final int startCountdown;
+        private final int autoStartDelay;
+        private final int voteDuration;
+        
+        MapSettings(String name, int radius, int minPlayers, int startCountdown, int autoStartDelay, int voteDuration) {
+            this.name = name;
+            this.radius = radius;
+            this.minPlayers = minPlayers;
+            this.startCountdown = startCountdown;
+            this.autoStartDelay = autoStartDelay;
+            this.voteDuration = voteDuration;
+        }
+        
+        public String getName() { return name; }
+        public int getRadius() { return radius; }
+        public int getMinPlayers() { return minPlayers; }
+        public int getStartCountdown() { return startCountdown; }
+        public int getAutoStartDelay() { return autoStartDelay; }
+        public int getVoteDuration() { return voteDuration; }
+    }
+    
+    // 竞技场（arena.yml）
+    private final int arenaRadius;
+    private final int minPlayers;
+    private final int startCountdown;
+    private final int autoStartDelay;
+    private final int voteDuration;
+    private final boolean worldInstancingEnabled;
+    private final boolean worldInstancingAutoCleanup;
+    private final boolean lobbyEnabled;
+    // 边界（border.yml）
+    private final double borderDamageAmount;
+    private final double shrinkAmount;
+    private final long shrinkInterval;
+    private final long shrinkDelay;
+    private final double minBorderSize;
+    // 随机事件（events.yml）
+    private final long eventDelayMin;
+    private final long eventDelayMax;
+    private final long eventDelayMinFinal;
+    private final long eventDelayMaxFinal;
+    // 数据库（database.yml，只在启动时读取）
+    private final long writeBehindFlushDelay;
+    private final int writeBehindMaxBatchSize;
+    private final int databaseQueueCapacity;
+    private final int databaseStartupBufferCapacity;
+    private final int circuitBreakerFailureThreshold;
+    private final long circuitBreakerOpenDuration;
+    private final int uuidMigrationChunkSize;
+    private final long uuidMigrationChunkDelay;
+    private final long statsLoadBatchWindow;
+    private final int statsLoadMaxBatchSize;
+    private final int statsTransferBatchSize;
+    private final long statsTransferProgressInterval;
+    private final boolean seasonsEnabled;
+    private final String initialSeasonId;
+    private final int dailyStatsRetentionDays;
+    private final int leaderboardSize;
+    private final long leaderboardRefreshInterval;
+    private final int replicaPoolSize;
+    private final long replicaConnectionTimeout;
+    private final long replicaMaxStaleness;
+    private final long replicaCheckInterval;
+    // 物品（items.yml）
+    private final long itemInterval;
+    private final int itemMaxPerTick;
+    private final List<String> itemBlacklist;
+    private final Map<Material, Integer> itemWeights;
+    private final List<Material> droppableItems;
+    // 预先构建的物品原型及其别名表（每次加载编译一次，药水按效果细分）
+    private final ItemPrototypes itemPrototypes;
+    // 地图（列表顺序与配置一致）
+    private final List<String> availableMaps;
+    private final Map<String, MapSettings> maps;
+    
+    /**
+     * 从 ConfigManager 当前加载的配置文件编译快照（由 ConfigManager 在加载/重载完成后调用）
+     */
+    ConfigSnapshot(ConfigManager source) {
+        this.arenaRadius = source.getIntWithPreset("arena.radius", 48);
+        this.minPlayers = source.getIntWithPreset("arena.min-players", 2);
+        this.startCountdown = source.getIntWithPreset("arena.start-countdown", 30);
+        this.autoStartDelay = source.getIntWithPreset("arena.auto-start-delay", 5);
+        this.voteDuration = source.getIntWithPreset("arena.vote-duration", 15);
+        this.worldInstancingEnabled = source.getBooleanWithPreset("arena.world-instancing.enabled", true);
+        this.worldInstancingAutoCleanup = source.getBooleanWithPreset("arena.world-instancing.auto-cleanup", true);
+        this.lobbyEnabled = source.getBooleanWithPreset("arena.lobby.enabled", true);
+        this.borderDamageAmount = source.getDoubleWithPreset("border.damage", 3.0);
+        this.shrinkAmount = source.getDoubleWithPreset("border.shrink_amount_per_interval", 6.0);
+        this.shrinkInterval = source.getLongWithPreset("border.shrink_interval_ticks", 600L);
+        this.shrinkDelay = source.getLongWithPreset("border.first_shrink_delay_ticks", 200L);
+        this.minBorderSize = source.getDoubleWithPreset("border.min_diameter", 10.0);
+        this.eventDelayMin = source.getLongWithPreset("events.delay_min_ticks", 600L);
+        this.eventDelayMax = source.getLongWithPreset("events.delay_max_ticks", 2400L);
+        this.eventDelayMinFinal = source.getLongWithPreset("events.delay_min_ticks_final_circle", 200L);
+        this.eventDelayMaxFinal = source.getLongWithPreset("events.delay_max_ticks_final_circle", 600L);
+        this.writeBehindFlushDelay = source.getLongWithPreset("database.write-behind.flush-delay", 5000L);
+        this.writeBehindMaxBatchSize = source.getIntWithPreset("database.write-behind.max-batch-size", 200);
+        this.databaseQueueCapacity = source.getIntWithPreset("database.executor.queue-capacity", 1000);
+        this.databaseStartupBufferCapacity = source.getIntWithPreset("database.executor.startup-buffer", 500);
+        this.circuitBreakerFailureThreshold = source.getIntWithPreset("database.circuit-breaker.failure-threshold", 3);
+        this.circuitBreakerOpenDuration = source.getLongWithPreset("database.circuit-breaker.open-duration", 10000L);
+        this.uuidMigrationChunkSize = source.getIntWithPreset("database.uuid-migration.chunk-size", 1000);
+        this.uuidMigrationChunkDelay = source.getLongWithPreset("database.uuid-migration.chunk-delay", 50L);
+        this.statsLoadBatchWindow = source.getLongWithPreset("database.batch-load.window", 30L);
+        this.statsLoadMaxBatchSize = source.getIntWithPreset("database.batch-load.max-batch-size", 500);
+        this.statsTransferBatchSize = source.getIntWithPreset("database.transfer.batch-size", 500);
+        this.statsTransferProgressInterval = source.getLongWithPreset("database.transfer.progress-interval", 10000L);
+        this.seasonsEnabled = source.getBooleanWithPreset("database.season.enabled", true);
+        this.initialSeasonId = source.getStringWithPreset("database.season.initial-id", "S1");
+        this.dailyStatsRetentionDays = source.getIntWithPreset("database.rollup.retention-days", 62);
+        this.leaderboardSize = source.getIntWithPreset("database.leaderboard.size", 10);
+        this.leaderboardRefreshInterval = source.getLongWithPreset("database.leaderboard.refresh-interval", 60L);
+        this.replicaPoolSize = source.getIntWithPreset("database.mysql.read-replicas.pool-size", 4);
+        this.replicaConnectionTimeout = source.getLongWithPreset("database.mysql.read-replicas.connection-timeout", 2000L);
+        this.replicaMaxStaleness = source.getLongWithPreset("database.mysql.read-replicas.max-staleness", 10L);
+        this.replicaCheckInterval = source.getLongWithPreset("database.mysql.read-replicas.check-interval", 5L);
+        
+        this.itemInterval = source.resolveItemInterval();
+        this.itemMaxPerTick = Math.max(1, source.resolveItemMaxPerTick());
+        this.itemBlacklist = Collections.unmodifiableList(new ArrayList<>(source.resolveItemBlacklist()));
+        this.itemWeights = Collections.unmodifiableMap(new LinkedHashMap<>(source.resolveItemWeights()));
+        this.droppableItems = Collections.unmodifiableList(new ArrayList<>(itemWeights.keySet()));
+        this.itemPrototypes = new ItemPrototypes(itemWeights, source.resolvePotionWeights());
+        
+        this.availableMaps = Collections.unmodifiableList(new ArrayList<>(source.resolveAvailableMaps()));
+        Map<String, MapSettings> mapSettings = new HashMap<>();
+        for (String mapId : source.resolveMapIds()) {
+            mapSettings.put(mapId, new MapSettings(
+                source.resolveMapName(mapId),
+                source.resolveMapInt(mapId, "radius", arenaRadius),
+                source.resolveMapInt(mapId, "min-players", minPlayers),
+                source.resolveMapInt(mapId, "start-countdown", startCountdown),
+                source.resolveMapInt(mapId, "auto-start-delay", autoStartDelay),
+                source.resolveMapInt(mapId, "vote-duration", voteDuration)));
+        }
+        this.maps = Collections.unmodifiableMap(mapSettings);
+    }
+    
+    public int getArenaRadius() { return arenaRadius; }
+    public int getMinPlayers() { return minPlayers; }
+    public int getStartCountdown() { return startCountdown; }
+    public int getAutoStartDelay() { return autoStartDelay; }
+    public int getVoteDuration() { return voteDuration; }
+    public boolean isWorldInstancingEnabled() { return worldInstancingEnabled; }
+    public boolean isWorldInstancingAutoCleanup() { return worldInstancingAutoCleanup; }
+    public boolean isLobbyEnabled() { return lobbyEnabled; }
+    public double getBorderDamageAmount() { return borderDamageAmount; }
+    public double getShrinkAmount() { return shrinkAmount; }
+    public long getShrinkInterval() { return shrinkInterval; }
+    public long getShrinkDelay() { return shrinkDelay; }
+    public double getMinBorderSize() { return minBorderSize; }
+    public long getEventDelayMin() { return eventDelayMin; }
+    public long getEventDelayMax() { return eventDelayMax; }
+    public long getEventDelayMinFinal() { return eventDelayMinFinal; }
+    public long getEventDelayMaxFinal() { return eventDelayMaxFinal; }
+    public long getWriteBehindFlushDelay() { return writeBehindFlushDelay; }
+    public int getWriteBehindMaxBatchSize() { return writeBehindMaxBatchSize; }
+    public int getDatabaseQueueCapacity() { return databaseQueueCapacity; }
+    public int getDatabaseStartupBufferCapacity() { return databaseStartupBufferCapacity; }
+    public int getCircuitBreakerFailureThreshold() { return circuitBreakerFailureThreshold; }
+    public long getCircuitBreakerOpenDuration() { return circuitBreakerOpenDuration; }
+    public int getUuidMigrationChunkSize() { return uuidMigrationChunkSize; }
+    public long getUuidMigrationChunkDelay() { return uuidMigrationChunkDelay; }
+    public long getStatsLoadBatchWindow() { return statsLoadBatchWindow; }
+    public int getStatsLoadMaxBatchSize() { return statsLoadMaxBatchSize; }
+    public int getStatsTransferBatchSize() { return statsTransferBatchSize; }
+    public long getStatsTransferProgressInterval() { return statsTransferProgressInterval; }
+    public boolean isSeasonsEnabled() { return seasonsEnabled; }
+    public String getInitialSeasonId() { return initialSeasonId; }
+    public int getDailyStatsRetentionDays() { return dailyStatsRetentionDays; }
+    public int getLeaderboardSize() { return leaderboardSize; }
+    public long getLeaderboardRefreshInterval() { return leaderboardRefreshInterval; }
+    public int getReplicaPoolSize() { return replicaPoolSize; }
+    public long getReplicaConnectionTimeout() { return replicaConnectionTimeout; }
+    public long getReplicaMaxStaleness() { return replicaMaxStaleness; }
+    public long getReplicaCheckInterval() { return replicaCheckInterval; }
+    public long getItemInterval() { return itemInterval; }
+    public int getItemMaxPerTick() { return itemMaxPerTick; }
+    public List<String> getItemBlacklist() { return itemBlacklist; }
+    public Map<Material, Integer> getItemWeights() { return itemWeights; }
+    public List<Material> getDroppableItems() { return droppableItems; }
+    public ItemPrototypes getItemPrototypes() { return itemPrototypes; }
+    public List<String> getAvailableMaps() { return availableMaps; }
+    
+    /**
+     * 获取地图的独立设置
+     * @return 地图设置，地图不存在或 mapId 为 null 时返回 null
+     */
+    public MapSettings getMap(String mapId) {
+        return mapId != null ? maps.get(mapId) : null;
+    }
+    
+    public int getMapRadius(String mapId) {
+        MapSettings map = getMap(mapId);
+        return map != null ? map.radius : arenaRadius;
+    }
+    
+    public int getMapMinPlayers(String mapId) {
+        MapSettings map = getMap(mapId);
+        return map != null ? map.minPlayers : minPlayers;
+    }
+    
+    public int getMapStartCountdown(String mapId) {
+        MapSettings map = getMap(mapId);
+        return map != null ? map.startCountdown : startCountdown;
+    }
+    
+    public int getMapAutoStartDelay(String mapId) {
+        MapSettings map = getMap(mapId);
+        return map != null ? map.autoStartDelay : autoStartDelay;
+    }
+    
+    public int getMapVoteDuration(String mapId) {
+        MapSettings map = getMap(mapId);
+        return map != null ? map.voteDuration : voteDuration;
+    }
+}
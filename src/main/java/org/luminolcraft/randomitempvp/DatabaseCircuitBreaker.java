@@ -0,0 +1,130 @@
+package org.luminolcraft.randomitempvp;
+
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 数据库熔断器
+ * 连续多次获取连接失败后熔断：熔断期间立即失败，不再让线程等待连接超时；
+ * 熔断时间结束后只放行一个探测请求，成功则恢复，失败则继续熔断
+ */
+public class DatabaseCircuitBreaker {
+    
+    /**
+     * 熔断器状态
+     */
+    public enum State {
+        CLOSED,    // 正常
+        OPEN,      // 熔断中，所有请求立即失败
+        HALF_OPEN  // 熔断时间已到，等待探测结果
+    }
+    
+    /**
+     * 熔断期间获取连接时抛出（请求没有访问数据库，不计入失败次数）
+     */
+    public static class CircuitOpenException extends SQLTransientConnectionException {
+        public CircuitOpenException() {
+            super("数据库暂时不可用（熔断中）");
+        }
+    }
+    
+    private final int failureThreshold;
+    private final long openMillis;
+    
+    private volatile State state = State.CLOSED;
+    private volatile long openedAt = 0;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    // 半开状态下是否已有探测请求在执行
+    private final AtomicBoolean probing = new AtomicBoolean(false);
+    
+    public DatabaseCircuitBreaker(int failureThreshold, long openMillis) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openMillis = Math.max(1000L, openMillis);
+    }
+    
+    /**
+     * 是否允许本次请求访问数据库
+     */
+    public boolean allowRequest() {
+        State current = state;
+        if (current == State.CLOSED) {
+            return true;
+        }
+        if (current == State.OPEN && System.currentTimeMillis() - openedAt < openMillis) {
+            return false;
+        }
+        // 熔断时间已到：只放行一个探测请求
+        if (probing.compareAndSet(false, true)) {
+            state = State.HALF_OPEN;
+            return true;
+        }
+        return false;
+    }
+    
+    /**
+     * 记录一次成功（关闭熔断器）
+     */
+    public void recordSuccess() {
+        consecutiveFailures.set(0);
+        if (state != State.CLOSED) {
+            state = State.CLOSED;
+            probing.set(false);
+        }
+    }
+    
+    /**
+     * 记录一次失败（探测失败或连续失败达到阈值时熔断）
+     * @return 本次失败是否使熔断器进入熔断状态
+     */
+    public boolean recordFailure() {
+        int failures = consecutiveFailures.incrementAndGet();
+        if (state == State.HALF_OPEN || (state == State.CLOSED && failures >= failureThreshold)) {
+            boolean tripped = state == State.CLOSED;
+            openedAt = System.currentTimeMillis();
+            state = State.OPEN;
+            probing.set(false);
+            return tripped;
+        }
+        return false;
+    }
+    
+    /**
+     * 熔断器是否处于熔断（或等待探测）状态
+     */
+    public boolean isOpen() {
+        return state != State.CLOSED;
+    }
+    
+    public State getState() {
+        return state;
+    }
+    
+    public int getConsecutiveFailures() {
+        return consecutiveFailures.get();
+    }
+    
+    /**
+     * 判断异常是否由连接问题引起（连接超时、连接断开等），
+     * SQL 语法错误、约束冲突等不应触发熔断
+     */
+    public static boolean isConnectionFailure(SQLException e) {
+        if (e instanceof CircuitOpenException) {
+            return false;
+        }
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLTransientConnectionException || cause instanceof SQLNonTransientConnectionException) {
+                return true;
+            }
+            if (cause instanceof SQLException) {
+                String sqlState = ((SQLException) cause).getSQLState();
+                if (sqlState != null && sqlState.startsWith("08")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -2,47 +2,115 @@ package org.luminolcraft.randomitempvp;
 
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import org.bukkit.Bukkit;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.plugin.java.JavaPlugin;
 
 import java.io.File;
+import java.nio.ByteBuffer;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * 数据库管理器 - 支持 SQLite 和 MySQL
+ * FILE 类型不建立数据库连接，统计数据由 MappedFileStatsStore 写入本地文件，只使用这里的线程池
  */
 public class DatabaseManager {
     private final JavaPlugin plugin;
     private final ConfigManager config;
     private HikariDataSource dataSource;
-    private DatabaseType databaseType;
+    // SQLite 只读连接池（WAL 模式下与写连接互不阻塞），MySQL 下为 null
+    private HikariDataSource readDataSource;
+    // MySQL 只读副本（未配置时为 null），只用于可容忍延迟的查询
+    private volatile ReadReplicaRouter replicaRouter;
+    // player_stats.uuid 是否以 16 字节二进制存储（由 plugin_meta 记录，迁移完成时切换）
+    private volatile boolean binaryUuids = false;
+    private final DatabaseType databaseType;
+    
+    // 数据库专用线程池（不占用公共 ForkJoinPool），线程数与连接池大小一致
+    private ThreadPoolExecutor executor;
+    private final AtomicLong rejectedCount = new AtomicLong();
+    
+    // 熔断器：数据库不可用时立即失败，不让线程等待连接超时
+    private final DatabaseCircuitBreaker circuitBreaker;
+    
+    // 启动阶段：连接在后台建立，完成前提交的任务暂存在有界缓冲中，完成后按顺序提交
+    private final CompletableFuture<Boolean> readyFuture = new CompletableFuture<>();
+    private final Deque<DatabaseTask<?>> startupBuffer = new ArrayDeque<>();
+    private final List<Consumer<Boolean>> readyHooks = new ArrayList<>();
+    private volatile boolean started = false;
+    // 插件正在关闭：后台连接完成后不再启动，直接关闭已建立的连接池
+    private volatile boolean closing = false;
+    private boolean drained = false;
+    // 关闭时最多等待的时间（等待后台连接和已提交的数据库任务合计）
+    private static final long SHUTDOWN_WAIT_MILLIS = 5000L;
     
     public enum DatabaseType {
         SQLITE,
-        MYSQL
+        MYSQL,
+        FILE  // 内存映射的本地文件（无比赛记录）
     }
     
     public DatabaseManager(JavaPlugin plugin, ConfigManager config) {
         this.plugin = plugin;
         this.config = config;
+        
+        String typeString = plugin.getConfig().getString("database.type", "SQLITE").toUpperCase();
+        DatabaseType type;
+        try {
+            type = DatabaseType.valueOf(typeString);
+        } catch (IllegalArgumentException e) {
+            plugin.getLogger().warning("无效的数据库类型：" + typeString + "，使用默认的 SQLite");
+            type = DatabaseType.SQLITE;
+        }
+        this.databaseType = type;
+        this.circuitBreaker = new DatabaseCircuitBreaker(config.getCircuitBreakerFailureThreshold(),
+            config.getCircuitBreakerOpenDuration());
     }
     
     /**
-     * 连接数据库
+     * 在后台连接数据库（不阻塞服务器启动）
+     * @return 就绪 Future，连接和结构迁移完成后以 true 完成，连接失败时以 false 完成
+     */
+    public CompletableFuture<Boolean> connectAsync() {
+        Bukkit.getAsyncScheduler().runNow(plugin, task -> connect());
+        return readyFuture;
+    }
+    
+    /**
+     * 连接数据库（阻塞，直到连接和结构迁移完成）
      */
     public void connect() {
-        String typeString = plugin.getConfig().getString("database.type", "SQLITE").toUpperCase();
-        
-        try {
-            databaseType = DatabaseType.valueOf(typeString);
-        } catch (IllegalArgumentException e) {
-            plugin.getLogger().warning("无效的数据库类型：" + typeString + "，使用默认的 SQLite");
-            databaseType = DatabaseType.SQLITE;
+        if (databaseType == DatabaseType.FILE) {
+            // 本地文件存储：不需要连接池和结构迁移，单线程顺序访问文件
+            plugin.getLogger().info("使用本地文件存储统计数据（不记录比赛历史）");
+            startExecutor(1);
+            finishStartup(true);
+            return;
         }
         
+        boolean connected = false;
         try {
             if (databaseType == DatabaseType.SQLITE) {
                 connectSQLite();
@@ -50,14 +118,232 @@ public class DatabaseManager {
                 connectMySQL();
             }
             
-            // 创建表
-            createTables();
-            
-            plugin.getLogger().info("数据库连接成功！使用：" + databaseType.name());
+            if (!closing) {
+                // 创建表
+                createTables();
+                
+                plugin.getLogger().info("数据库连接成功！使用：" + databaseType.name());
+                connected = true;
+            }
         } catch (SQLException e) {
             plugin.getLogger().severe("数据库连接失败！");
             e.printStackTrace();
         }
+        
+        if (closing) {
+            // 连接期间插件已关闭：不再执行就绪回调和缓冲任务，关闭已建立的连接池
+            closePools();
+            synchronized (startupBuffer) {
+                readyHooks.clear();
+            }
+            // 缓冲中的任务以失败结束，由调用方的失败处理转入写回日志
+            rejectBuffered();
+            readyFuture.complete(false);
+            return;
+        }
+        
+        int threads = (dataSource != null ? dataSource.getMaximumPoolSize() : 1)
+            + (readDataSource != null ? readDataSource.getMaximumPoolSize() : 0)
+            + (replicaRouter != null ? replicaRouter.getTotalPoolSize() : 0);
+        startExecutor(threads);
+        finishStartup(connected);
+    }
+    
+    /**
+     * 连接完成：先执行就绪回调，再按顺序提交启动缓冲中的任务，最后完成就绪 Future
+     * （就绪回调执行时 isReady() 仍为 false，连接结果通过回调参数传入）
+     */
+    private void finishStartup(boolean connected) {
+        List<Consumer<Boolean>> hooks;
+        synchronized (startupBuffer) {
+            hooks = new ArrayList<>(readyHooks);
+            readyHooks.clear();
+        }
+        for (Consumer<Boolean> hook : hooks) {
+            try {
+                hook.accept(connected);
+            } catch (RuntimeException e) {
+                plugin.getLogger().severe("数据库就绪回调执行失败！");
+                e.printStackTrace();
+            }
+        }
+        
+        int buffered;
+        synchronized (startupBuffer) {
+            buffered = startupBuffer.size();
+            // 在锁内提交，保证缓冲中的任务排在之后提交的任务前面
+            while (!startupBuffer.isEmpty()) {
+                submit(startupBuffer.poll());
+            }
+            started = true;
+        }
+        if (buffered > 0) {
+            plugin.getLogger().info("已提交启动期间缓冲的 " + buffered + " 个数据库任务");
+        }
+        readyFuture.complete(connected);
+    }
+    
+    /**
+     * 获取就绪 Future（连接成功时以 true 完成，失败时以 false 完成）
+     */
+    public CompletableFuture<Boolean> getReadyFuture() {
+        return readyFuture;
+    }
+    
+    /**
+     * 数据库是否已连接并完成结构迁移
+     */
+    public boolean isReady() {
+        return readyFuture.getNow(false);
+    }
+    
+    /**
+     * 注册连接完成后执行的回调（无论连接成功与否，在启动缓冲中的任务之前执行）
+     * 已经完成时立即在当前线程执行
+     * @param hook 参数为是否连接成功
+     */
+    public void onReady(Consumer<Boolean> hook) {
+        synchronized (startupBuffer) {
+            if (!started) {
+                readyHooks.add(hook);
+                return;
+            }
+        }
+        hook.accept(readyFuture.join());
+    }
+    
+    /**
+     * 创建数据库线程池
+     * 有界队列，队列满时拒绝新任务（返回失败的 Future），避免阻塞调用方线程
+     */
+    private void startExecutor(int threads) {
+        int queueCapacity = Math.max(1, config.getDatabaseQueueCapacity());
+        AtomicInteger threadId = new AtomicInteger();
+        
+        executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            runnable -> {
+                Thread thread = new Thread(runnable, "RandomItemPVP-DB-" + threadId.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            },
+            (runnable, pool) -> {
+                rejectedCount.incrementAndGet();
+                throw new RejectedExecutionException("数据库任务队列已满（" + queueCapacity + "）");
+            });
+        executor.allowCoreThreadTimeOut(true);
+    }
+    
+    /**
+     * 在数据库线程池中异步执行（有返回值）
+     * 连接完成前提交的任务进入启动缓冲；队列或缓冲已满时返回以 RejectedExecutionException 失败的 Future
+     */
+    public <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier) {
+        if (!started) {
+            synchronized (startupBuffer) {
+                if (!started) {
+                    return defer(supplier);
+                }
+            }
+        }
+        
+        DatabaseTask<T> task = new DatabaseTask<>(supplier);
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            plugin.getLogger().warning("数据库任务被拒绝：" + e.getMessage());
+            return CompletableFuture.failedFuture(e);
+        }
+        return task.future;
+    }
+    
+    /**
+     * 在数据库线程池中异步执行（无返回值）
+     * 连接完成前提交的任务进入启动缓冲；队列或缓冲已满时返回以 RejectedExecutionException 失败的 Future
+     */
+    public CompletableFuture<Void> runAsync(Runnable task) {
+        return supplyAsync(() -> {
+            task.run();
+            return null;
+        });
+    }
+    
+    /**
+     * 将任务放入启动缓冲（调用方持有 startupBuffer 锁）
+     */
+    private <T> CompletableFuture<T> defer(Supplier<T> supplier) {
+        int capacity = Math.max(1, config.getDatabaseStartupBufferCapacity());
+        if (startupBuffer.size() >= capacity) {
+            rejectedCount.incrementAndGet();
+            RejectedExecutionException e = new RejectedExecutionException("数据库尚未就绪，启动缓冲已满（" + capacity + "）");
+            plugin.getLogger().warning("数据库任务被拒绝：" + e.getMessage());
+            return CompletableFuture.failedFuture(e);
+        }
+        
+        DatabaseTask<T> task = new DatabaseTask<>(supplier);
+        startupBuffer.add(task);
+        return task.future;
+    }
+    
+    /**
+     * 提交启动缓冲中的任务（队列已满时任务以失败结束）
+     */
+    private void submit(DatabaseTask<?> task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.reject(e);
+        }
+    }
+    
+    /**
+     * 数据库线程池中的任务
+     * 关闭时未执行的任务可以直接以失败结束，调用方的失败处理（如统计数据转入写回日志）仍会执行
+     */
+    private static class DatabaseTask<T> implements Runnable {
+        private final Supplier<T> supplier;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        
+        DatabaseTask(Supplier<T> supplier) {
+            this.supplier = supplier;
+        }
+        
+        @Override
+        public void run() {
+            try {
+                future.complete(supplier.get());
+            } catch (Throwable e) {
+                // 与 CompletableFuture.supplyAsync 一致，异常包装为 CompletionException
+                future.completeExceptionally(e instanceof CompletionException ? e : new CompletionException(e));
+            }
+        }
+        
+        void reject(RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+    }
+    
+    /**
+     * 获取启动缓冲中等待连接完成的任务数
+     */
+    public int getStartupBufferSize() {
+        synchronized (startupBuffer) {
+            return startupBuffer.size();
+        }
+    }
+    
+    /**
+     * 获取数据库线程池中排队等待的任务数
+     */
+    public int getQueueDepth() {
+        return executor != null ? executor.getQueue().size() : 0;
+    }
+    
+    /**
+     * 获取因队列已满被拒绝的任务总数
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
     }
     
     /**
@@ -76,7 +362,7 @@ public class DatabaseManager {
         hikariConfig.setPoolName("RandomItemPVP-SQLite");
         hikariConfig.setDriverClassName("org.sqlite.JDBC");
         hikariConfig.setJdbcUrl("jdbc:sqlite:" + dbFile.getAbsolutePath());
-        hikariConfig.setMaximumPoolSize(1); // SQLite 只支持单连接
+        hikariConfig.setMaximumPoolSize(1); // SQLite 只允许一个写连接
         hikariConfig.setMinimumIdle(1);
         hikariConfig.setConnectionTimeout(60000); // 增加超时时间到60秒
         hikariConfig.setIdleTimeout(600000); // 10分钟空闲超时
@@ -87,8 +373,46 @@ public class DatabaseManager {
         hikariConfig.addDataSourceProperty("prepStmtCacheSize", "250");
         hikariConfig.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
         hikariConfig.addDataSourceProperty("journal_mode", "WAL"); // SQLite WAL 模式，支持并发读
+        applySQLitePragmas(hikariConfig);
         
         dataSource = new HikariDataSource(hikariConfig);
+        
+        // 只读连接池：排行榜、PAPI 加载等查询不再排在写入之后
+        // （写连接已将数据库切换为 WAL 模式，该设置会持久保存在数据库文件中）
+        int readerPoolSize = plugin.getConfig().getInt("database.sqlite.reader-pool-size", 4);
+        if (readerPoolSize > 0) {
+            HikariConfig readerConfig = new HikariConfig();
+            readerConfig.setPoolName("RandomItemPVP-SQLite-Reader");
+            readerConfig.setDriverClassName("org.sqlite.JDBC");
+            readerConfig.setJdbcUrl("jdbc:sqlite:" + dbFile.getAbsolutePath());
+            readerConfig.setMaximumPoolSize(readerPoolSize);
+            readerConfig.setMinimumIdle(1);
+            readerConfig.setConnectionTimeout(60000);
+            readerConfig.setIdleTimeout(600000);
+            readerConfig.setMaxLifetime(1800000);
+            readerConfig.setConnectionTestQuery("SELECT 1");
+            readerConfig.setAutoCommit(true);
+            readerConfig.addDataSourceProperty("open_mode", "1"); // SQLITE_OPEN_READONLY
+            applySQLitePragmas(readerConfig);
+            
+            readDataSource = new HikariDataSource(readerConfig);
+        }
+    }
+    
+    /**
+     * SQLite 连接参数（由驱动在建立连接时执行对应的 PRAGMA）
+     */
+    private void applySQLitePragmas(HikariConfig hikariConfig) {
+        ConfigurationSection pragmas = plugin.getConfig().getConfigurationSection("database.sqlite.pragmas");
+        String synchronous = pragmas != null ? pragmas.getString("synchronous", "NORMAL") : "NORMAL";
+        long cacheSize = pragmas != null ? pragmas.getLong("cache-size", -16000L) : -16000L;
+        long mmapSize = pragmas != null ? pragmas.getLong("mmap-size", 268435456L) : 268435456L;
+        long busyTimeout = pragmas != null ? pragmas.getLong("busy-timeout", 5000L) : 5000L;
+        
+        hikariConfig.addDataSourceProperty("synchronous", synchronous); // WAL 下 NORMAL 足够安全
+        hikariConfig.addDataSourceProperty("cache_size", String.valueOf(cacheSize)); // 负数表示 KB
+        hikariConfig.addDataSourceProperty("mmap_size", String.valueOf(mmapSize));
+        hikariConfig.addDataSourceProperty("busy_timeout", String.valueOf(busyTimeout));
     }
     
     /**
@@ -118,17 +442,10 @@ public class DatabaseManager {
             }
         }
         
-        String jdbcUrl = String.format("jdbc:mysql://%s:%d/%s%s%s", 
-            host, port, database, 
-            propertiesBuilder.length() > 0 ? "?" : "",
-            propertiesBuilder.toString());
+        String urlSuffix = propertiesBuilder.length() > 0 ? "?" + propertiesBuilder : "";
         
-        HikariConfig hikariConfig = new HikariConfig();
-        hikariConfig.setPoolName("RandomItemPVP-MySQL");
-        hikariConfig.setDriverClassName("com.mysql.cj.jdbc.Driver");
-        hikariConfig.setJdbcUrl(jdbcUrl);
-        hikariConfig.setUsername(username);
-        hikariConfig.setPassword(password);
+        HikariConfig hikariConfig = createMySQLConfig("RandomItemPVP-MySQL",
+            String.format("jdbc:mysql://%s:%d/%s%s", host, port, database, urlSuffix), username, password);
         
         // 连接池设置
         ConfigurationSection poolConfig = mysqlConfig.getConfigurationSection("pool");
@@ -140,71 +457,218 @@ public class DatabaseManager {
             hikariConfig.setMaxLifetime(poolConfig.getLong("max-lifetime", 1800000));
         }
         
+        dataSource = new HikariDataSource(hikariConfig);
+        connectReplicas(mysqlConfig, database, urlSuffix, username, password);
+    }
+    
+    /**
+     * MySQL 连接池的公共设置（主库和只读副本）
+     */
+    private HikariConfig createMySQLConfig(String poolName, String jdbcUrl, String username, String password) {
+        HikariConfig hikariConfig = new HikariConfig();
+        hikariConfig.setPoolName(poolName);
+        hikariConfig.setDriverClassName("com.mysql.cj.jdbc.Driver");
+        hikariConfig.setJdbcUrl(jdbcUrl);
+        hikariConfig.setUsername(username);
+        hikariConfig.setPassword(password);
         hikariConfig.setConnectionTestQuery("SELECT 1");
         hikariConfig.addDataSourceProperty("cachePrepStmts", "true");
         hikariConfig.addDataSourceProperty("prepStmtCacheSize", "250");
         hikariConfig.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+        return hikariConfig;
+    }
+    
+    /**
+     * 为配置的只读副本各建立一个连接池（副本连接失败不影响启动，查询回退到主库）
+     * 副本使用与主库相同的数据库名和连接参数，用户名和密码可单独配置
+     */
+    private void connectReplicas(ConfigurationSection mysqlConfig, String database, String urlSuffix,
+                                 String username, String password) {
+        List<Map<?, ?>> endpoints = mysqlConfig.getMapList("read-replicas.endpoints");
+        if (endpoints.isEmpty()) {
+            return;
+        }
         
-        dataSource = new HikariDataSource(hikariConfig);
+        List<ReadReplicaRouter.Replica> replicas = new ArrayList<>();
+        for (Map<?, ?> endpoint : endpoints) {
+            Object hostValue = endpoint.get("host");
+            if (hostValue == null) {
+                plugin.getLogger().warning("只读副本缺少 host，已跳过：" + endpoint);
+                continue;
+            }
+            String host = hostValue.toString();
+            int port = endpoint.get("port") instanceof Number ? ((Number) endpoint.get("port")).intValue() : 3306;
+            String name = host + ":" + port;
+            
+            HikariConfig replicaConfig = createMySQLConfig("RandomItemPVP-Replica-" + (replicas.size() + 1),
+                String.format("jdbc:mysql://%s:%d/%s%s", host, port, database, urlSuffix),
+                endpoint.get("username") != null ? endpoint.get("username").toString() : username,
+                endpoint.get("password") != null ? endpoint.get("password").toString() : password);
+            replicaConfig.setMaximumPoolSize(config.getReplicaPoolSize());
+            replicaConfig.setMinimumIdle(1);
+            replicaConfig.setConnectionTimeout(config.getReplicaConnectionTimeout());
+            replicaConfig.setReadOnly(true);
+            // 副本暂时无法连接时也创建连接池，由延迟检查决定是否使用
+            replicaConfig.setInitializationFailTimeout(-1);
+            replicas.add(new ReadReplicaRouter.Replica(name, new HikariDataSource(replicaConfig)));
+        }
+        if (replicas.isEmpty()) {
+            return;
+        }
+        
+        replicaRouter = new ReadReplicaRouter(plugin, replicas,
+            config.getReplicaMaxStaleness(), config.getReplicaCheckInterval());
+        replicaRouter.start();
+        plugin.getLogger().info("已配置 " + replicas.size() + " 个 MySQL 只读副本（可容忍延迟 " + 
+            config.getReplicaMaxStaleness() + " 秒）");
     }
     
     /**
-     * 创建数据表
+     * 创建数据表并执行结构迁移
      */
     private void createTables() throws SQLException {
-        String createTableSQL;
-        
-        if (databaseType == DatabaseType.SQLITE) {
-            createTableSQL = """
-                CREATE TABLE IF NOT EXISTS player_stats (
-                    uuid TEXT PRIMARY KEY,
-                    player_name TEXT NOT NULL,
-                    wins INTEGER DEFAULT 0,
-                    losses INTEGER DEFAULT 0,
-                    kills INTEGER DEFAULT 0,
-                    deaths INTEGER DEFAULT 0,
-                    games_played INTEGER DEFAULT 0,
-                    last_played INTEGER DEFAULT 0
-                )
-                """;
-        } else {
-            createTableSQL = """
-                CREATE TABLE IF NOT EXISTS player_stats (
-                    uuid VARCHAR(36) PRIMARY KEY,
-                    player_name VARCHAR(16) NOT NULL,
-                    wins INT DEFAULT 0,
-                    losses INT DEFAULT 0,
-                    kills INT DEFAULT 0,
-                    deaths INT DEFAULT 0,
-                    games_played INT DEFAULT 0,
-                    last_played BIGINT DEFAULT 0,
-                    INDEX idx_wins (wins),
-                    INDEX idx_kills (kills)
-                ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
-                """;
+        try (Connection conn = getConnection()) {
+            new SchemaMigrator(plugin, databaseType).migrate(conn);
+            binaryUuids = "BINARY".equals(getMeta(conn, "uuid_format"));
         }
-        
-        try (Connection conn = getConnection();
-             PreparedStatement stmt = conn.prepareStatement(createTableSQL)) {
-            stmt.execute();
+    }
+    
+    /**
+     * 读取插件元数据
+     * @return 元数据值，不存在时返回 null
+     */
+    public String getMeta(Connection conn, String key) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement("SELECT meta_value FROM plugin_meta WHERE meta_key = ?")) {
+            stmt.setString(1, key);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getString(1) : null;
+            }
+        }
+    }
+    
+    /**
+     * 写入插件元数据
+     */
+    public void setMeta(Connection conn, String key, String value) throws SQLException {
+        String sql = databaseType == DatabaseType.SQLITE
+            ? "INSERT OR REPLACE INTO plugin_meta (meta_key, meta_value) VALUES (?, ?)"
+            : "REPLACE INTO plugin_meta (meta_key, meta_value) VALUES (?, ?)";
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            stmt.setString(1, key);
+            stmt.setString(2, value);
+            stmt.executeUpdate();
         }
     }
     
     /**
-     * 获取数据库连接
+     * 获取数据库连接（用于写入）
      */
     public Connection getConnection() throws SQLException {
         if (dataSource == null) {
-            throw new SQLException("数据库未连接！");
+            throw new SQLNonTransientConnectionException("数据库未连接！");
+        }
+        return acquire(dataSource);
+    }
+    
+    /**
+     * 获取只读数据库连接（用于查询）
+     * SQLite 下来自只读连接池，不会排在写入之后；MySQL 下与 getConnection 相同
+     */
+    public Connection getReadConnection() throws SQLException {
+        if (readDataSource != null) {
+            return acquire(readDataSource);
+        }
+        return getConnection();
+    }
+    
+    /**
+     * 获取可容忍延迟的只读连接（排行榜、比赛记录）
+     * 配置了 MySQL 只读副本时来自复制延迟在容忍范围内的副本，没有可用副本时与 getReadConnection 相同
+     * 副本连接不经过熔断器：主库熔断期间仍可从副本查询
+     */
+    public Connection getReplicaConnection() throws SQLException {
+        if (replicaRouter != null) {
+            Connection conn = replicaRouter.getConnection();
+            if (conn != null) {
+                return conn;
+            }
+        }
+        return getReadConnection();
+    }
+    
+    /**
+     * 获取只读副本路由（未配置副本时返回 null）
+     */
+    public ReadReplicaRouter getReplicaRouter() {
+        return replicaRouter;
+    }
+    
+    /**
+     * 经过熔断器获取连接（熔断期间立即抛出 CircuitOpenException）
+     */
+    private Connection acquire(HikariDataSource source) throws SQLException {
+        if (!circuitBreaker.allowRequest()) {
+            throw new DatabaseCircuitBreaker.CircuitOpenException();
+        }
+        try {
+            Connection conn = source.getConnection();
+            circuitBreaker.recordSuccess();
+            return conn;
+        } catch (SQLException e) {
+            onConnectionFailure();
+            throw e;
+        }
+    }
+    
+    /**
+     * 报告执行语句时发生的异常（只有连接类异常会计入熔断器）
+     */
+    public void reportFailure(SQLException e) {
+        if (DatabaseCircuitBreaker.isConnectionFailure(e)) {
+            onConnectionFailure();
+        }
+    }
+    
+    /**
+     * 记录数据库操作失败
+     * 熔断期间只输出一行警告（不打印堆栈），其他异常计入熔断器并打印堆栈
+     */
+    public void logFailure(String message, SQLException e) {
+        if (e instanceof DatabaseCircuitBreaker.CircuitOpenException) {
+            plugin.getLogger().warning(message + "（数据库暂时不可用）");
+            return;
+        }
+        reportFailure(e);
+        plugin.getLogger().severe(message);
+        e.printStackTrace();
+    }
+    
+    private void onConnectionFailure() {
+        if (circuitBreaker.recordFailure()) {
+            plugin.getLogger().warning("数据库连续 " + circuitBreaker.getConsecutiveFailures() + 
+                " 次连接失败，已熔断；统计数据将暂存到本地，恢复后自动写回");
         }
-        return dataSource.getConnection();
+    }
+    
+    /**
+     * 数据库当前是否可用（熔断器未熔断）
+     */
+    public boolean isAvailable() {
+        return !circuitBreaker.isOpen();
+    }
+    
+    /**
+     * 获取熔断器状态
+     */
+    public DatabaseCircuitBreaker.State getCircuitState() {
+        return circuitBreaker.getState();
     }
     
     /**
      * 异步执行SQL（无返回值）
      */
     public CompletableFuture<Void> executeAsync(String sql, Object... params) {
-        return CompletableFuture.runAsync(() -> {
+        return runAsync(() -> {
             try (Connection conn = getConnection();
                  PreparedStatement stmt = conn.prepareStatement(sql)) {
                 
@@ -214,22 +678,159 @@ public class DatabaseManager {
                 
                 stmt.executeUpdate();
             } catch (SQLException e) {
-                plugin.getLogger().severe("SQL 执行失败：" + sql);
-                e.printStackTrace();
+                logFailure("SQL 执行失败：" + sql, e);
             }
         });
     }
     
     /**
-     * 关闭数据库连接
+     * 停止接受新任务并等待已提交的数据库任务执行完毕（插件关闭时在写回日志最后一次刷新之前调用）
+     * 等待后台连接和已提交的任务合计最多 SHUTDOWN_WAIT_MILLIS 毫秒，不让服务器关闭长时间阻塞；
+     * 未能执行的任务（包括启动缓冲中的任务）以 RejectedExecutionException 结束，
+     * 其失败处理在当前线程执行（如比赛统计转入写回日志，随后由写回日志写入或暂存到本地）
+     */
+    public synchronized void drainTasks() {
+        if (drained) {
+            return;
+        }
+        drained = true;
+        long deadline = System.currentTimeMillis() + SHUTDOWN_WAIT_MILLIS;
+        
+        // 后台连接尚未完成时取消连接：连接线程结束后自行关闭已建立的连接池
+        if (!readyFuture.isDone()) {
+            closing = true;
+            plugin.getLogger().info("数据库仍在连接，已取消连接");
+            try {
+                readyFuture.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException | TimeoutException e) {
+                plugin.getLogger().warning("数据库连接仍未结束，连接池将在连接线程结束后关闭");
+            }
+        }
+        closing = true;
+        rejectBuffered();
+        
+        // 等待已提交的数据库任务执行完毕
+        if (executor != null && !executor.isShutdown()) {
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS)) {
+                    plugin.getLogger().warning("数据库任务未能在 " + (SHUTDOWN_WAIT_MILLIS / 1000) + " 秒内完成，剩余任务已取消");
+                    rejectAll(executor.shutdownNow());
+                }
+            } catch (InterruptedException e) {
+                rejectAll(executor.shutdownNow());
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    /**
+     * 关闭数据库连接（插件关闭时在写回日志关闭之后调用）
      */
     public void disconnect() {
+        drainTasks();
+        closePools();
+    }
+    
+    /**
+     * 取消启动缓冲中尚未提交的任务
+     */
+    private void rejectBuffered() {
+        synchronized (startupBuffer) {
+            while (!startupBuffer.isEmpty()) {
+                startupBuffer.poll().reject(new RejectedExecutionException("插件正在关闭，数据库任务已取消"));
+            }
+        }
+    }
+    
+    private static void rejectAll(List<Runnable> tasks) {
+        for (Runnable task : tasks) {
+            if (task instanceof DatabaseTask) {
+                ((DatabaseTask<?>) task).reject(new RejectedExecutionException("插件正在关闭，数据库任务已取消"));
+            }
+        }
+    }
+    
+    /**
+     * 关闭所有连接池（只读副本、只读连接池、主连接池）
+     */
+    private synchronized void closePools() {
+        if (replicaRouter != null) {
+            replicaRouter.close();
+        }
+        if (readDataSource != null && !readDataSource.isClosed()) {
+            readDataSource.close();
+        }
         if (dataSource != null && !dataSource.isClosed()) {
             dataSource.close();
             plugin.getLogger().info("数据库连接已关闭。");
         }
     }
     
+    /**
+     * player_stats.uuid 当前是否以二进制存储
+     */
+    public boolean isBinaryUuids() {
+        return binaryUuids;
+    }
+    
+    /**
+     * 切换 UUID 存储格式（仅在迁移完成、持有日志刷新锁时调用）
+     */
+    void setBinaryUuids(boolean binaryUuids) {
+        this.binaryUuids = binaryUuids;
+    }
+    
+    /**
+     * 配置中是否要求使用二进制 UUID 存储
+     */
+    public boolean isBinaryUuidRequested() {
+        return "BINARY".equalsIgnoreCase(plugin.getConfig().getString("database.uuid-storage", "TEXT"));
+    }
+    
+    /**
+     * 将 UUID 转换为 player_stats.uuid 的参数值（按当前存储格式）
+     */
+    public Object uuidParam(UUID uuid) {
+        return binaryUuids ? toBytes(uuid) : uuid.toString();
+    }
+    
+    /**
+     * 绑定 player_stats.uuid 参数（按当前存储格式）
+     */
+    public void setUuid(PreparedStatement stmt, int index, UUID uuid) throws SQLException {
+        if (binaryUuids) {
+            stmt.setBytes(index, toBytes(uuid));
+        } else {
+            stmt.setString(index, uuid.toString());
+        }
+    }
+    
+    /**
+     * 读取 player_stats.uuid 列（两种存储格式都支持，迁移切换期间也能正确读取）
+     */
+    public UUID getUuid(ResultSet rs, String column) throws SQLException {
+        Object value = rs.getObject(column);
+        if (value instanceof byte[] && ((byte[]) value).length == 16) {
+            return fromBytes((byte[]) value);
+        }
+        return UUID.fromString(String.valueOf(value));
+    }
+    
+    public static byte[] toBytes(UUID uuid) {
+        return ByteBuffer.allocate(16)
+            .putLong(uuid.getMostSignificantBits())
+            .putLong(uuid.getLeastSignificantBits())
+            .array();
+    }
+    
+    public static UUID fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+    
     /**
      * 获取数据库类型
      */
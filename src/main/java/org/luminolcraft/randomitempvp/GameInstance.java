@@ -43,7 +43,7 @@ public class GameInstance {
     
     // 任务管理
     private ScheduledTask countdownTask = null;
-    private ScheduledTask itemTask = null;
+    private ItemDistributor.Round itemRound = null;
     private ScheduledTask eventTask = null;
     private ScheduledTask borderShrinkTask = null;
     private ScheduledTask aliveCountTask = null;
@@ -57,10 +57,16 @@ public class GameInstance {
     // 游戏结束后直接使用 Worlds 插件删除世界实例即可
     private int lastAliveCount = -1;
     
+    // 当前比赛结果（比赛开始时创建，结束时一次性提交）
+    private volatile MatchResult currentMatch = null;
+    // 本局使用的配置快照（开始倒计时时取得，整局游戏中的定时任务只读取它，不受中途重载影响）
+    private volatile ConfigSnapshot settings;
+    
     public GameInstance(GameArena arena, JavaPlugin plugin, ConfigManager config, PlayerStatsManager statsManager) {
         this.arena = arena;
         this.plugin = plugin;
         this.config = config;
+        this.settings = config.getSnapshot();
         this.statsManager = statsManager;
     }
     
@@ -145,6 +151,10 @@ public class GameInstance {
         
         // 从存活列表中移除（在移除participants之前）
         alivePlayers.remove(player);
+        MatchResult match = currentMatch;
+        if (match != null) {
+            match.recordEliminated(player);
+        }
         
         // 如果游戏正在运行，先检查是否应该结束游戏（在移除participants之前）
         if (gameRunning) {
@@ -162,21 +172,24 @@ public class GameInstance {
                     if (survivors.isEmpty()) {
                         Bukkit.broadcastMessage("§c[房间 " + arena.getArenaName() + "] 游戏结束！所有玩家都已离开！");
                         // 所有玩家都离开了，记录失败
+                        List<Player> losers = new ArrayList<>();
                         for (Player p : participants) {
                             if (p.isOnline()) {
-                                statsManager.recordLoss(p);
+                                losers.add(p);
                             }
                         }
+                        commitMatchResult(null, losers);
                     } else {
                         Player winner = survivors.get(0);
                         Bukkit.broadcastMessage("§a[房间 " + arena.getArenaName() + "] §6" + winner.getName() + " §a获胜！");
-                        statsManager.recordWin(winner);
                         // 失败者记录失败
+                        List<Player> losers = new ArrayList<>();
                         for (Player p : participants) {
                             if (p != winner && p.isOnline()) {
-                                statsManager.recordLoss(p);
+                                losers.add(p);
                             }
                         }
+                        commitMatchResult(winner, losers);
                     }
                     
                     // 清理并重置
@@ -387,6 +400,7 @@ public class GameInstance {
         }
         
         preparing = true;
+        settings = config.getSnapshot();
         gatherLocation = spawnLoc.clone();
         
         // 首先将初始参与者添加到列表中
@@ -425,7 +439,7 @@ public class GameInstance {
         
         // 使用当前地图的倒计时配置（如果有），否则使用全局配置
         String currentMapId = arena.getCurrentMapId();
-        int countdown = currentMapId != null ? config.getMapStartCountdown(currentMapId) : config.getStartCountdown();
+        int countdown = settings.getMapStartCountdown(currentMapId);
         final int[] currentCount = {countdown}; // 使用数组以便在 lambda 中修改
         
         // 使用定时任务进行倒计时
@@ -450,7 +464,7 @@ public class GameInstance {
                 
                 // 检查参与者数量（使用当前地图的配置）
                 // 注意：currentMapId 已在外部作用域声明（第424行）
-                int minPlayers = currentMapId != null ? config.getMapMinPlayers(currentMapId) : config.getMinPlayers();
+                int minPlayers = settings.getMapMinPlayers(currentMapId);
                 if (participants.size() < minPlayers) {
                     Bukkit.broadcastMessage("§c[房间 " + arena.getArenaName() + "] 参与者不足！游戏取消。需要至少 " + minPlayers + " 人");
                     cancelGame();
@@ -526,6 +540,14 @@ public class GameInstance {
         return gameRunning;
     }
     
+    /**
+     * 获取当前比赛的结果（用于累计战斗数据）
+     * @return 比赛结果，没有进行中的比赛时返回 null
+     */
+    public MatchResult getCurrentMatch() {
+        return currentMatch;
+    }
+    
     public boolean isPreparing() {
         return preparing;
     }
@@ -559,6 +581,9 @@ public class GameInstance {
         preparing = false;
         gameRunning = false;
         
+        // 保存已产生的击杀/死亡
+        commitMatchResult(null, Collections.emptyList());
+        
         // 设置房间状态为 WAITING（防止状态不同步）
         arena.setStatus(GameArena.ArenaStatus.WAITING);
         
@@ -731,7 +756,7 @@ public class GameInstance {
                 String arenaName = arena.getArenaName();
                 // 使用当前地图的半径配置（如果有），否则使用全局配置
                 String currentMapId = arena.getCurrentMapId();
-                int radius = currentMapId != null ? config.getMapRadius(currentMapId) : config.getArenaRadius();
+                int radius = settings.getMapRadius(currentMapId);
                 World arenaWorld = spawnLocation.getWorld();
                 
                 // 遍历所有在线玩家
@@ -803,6 +828,13 @@ public class GameInstance {
             return;
         }
         
+        // 创建本局比赛结果
+        MatchResult match = new MatchResult(arena.getArenaName(), arena.getCurrentMapId());
+        for (Player p : participants) {
+            match.addPlayer(p);
+        }
+        currentMatch = match;
+        
         // 初始化存活玩家列表（只添加在线的参与者），并确保所有玩家都在正确的世界
         alivePlayers.clear();
         for (Player player : new ArrayList<>(participants)) {
@@ -849,7 +881,7 @@ public class GameInstance {
      * 取消所有任务
      */
     private void cancelAllTasks() {
-        if (itemTask != null) { itemTask.cancel(); itemTask = null; }
+        if (itemRound != null) { itemRound.cancel(); itemRound = null; }
         if (eventTask != null) { eventTask.cancel(); eventTask = null; }
         if (borderShrinkTask != null) { borderShrinkTask.cancel(); borderShrinkTask = null; }
         if (aliveCountTask != null) { aliveCountTask.cancel(); aliveCountTask = null; }
@@ -880,10 +912,10 @@ public class GameInstance {
         // 立即设置边界大小（0秒过渡，避免从上一局的超大值慢慢过渡）
         // 使用当前地图的半径配置（如果有），否则使用全局配置
         String currentMapId = arena.getCurrentMapId();
-        int radius = currentMapId != null ? config.getMapRadius(currentMapId) : config.getArenaRadius();
+        int radius = settings.getMapRadius(currentMapId);
         gameBorder.setSize(radius * 2, 0);
         gameBorder.setDamageBuffer(0);
-        gameBorder.setDamageAmount(config.getBorderDamageAmount());
+        gameBorder.setDamageAmount(settings.getBorderDamageAmount());
         gameBorder.setWarningDistance(5);
         gameBorder.setWarningTime(10);
     }
@@ -917,7 +949,7 @@ public class GameInstance {
         double angleStep = 2 * Math.PI / playerCount;
         // 使用当前地图的半径配置（如果有），否则使用全局配置
         String currentMapId = arena.getCurrentMapId();
-        int arenaRadius = currentMapId != null ? config.getMapRadius(currentMapId) : config.getArenaRadius();
+        int arenaRadius = settings.getMapRadius(currentMapId);
         int circleRadius = Math.min(20, arenaRadius / 2); // 圆圈半径（玩家之间的距离）
         int pillarHeight = 128; // 基岩柱子高度
         
@@ -1019,102 +1051,38 @@ public class GameInstance {
      * 启动物品发放任务
      */
     private void startItemTask() {
-        long intervalTicks = config.getItemInterval();
-        itemTask = Bukkit.getGlobalRegionScheduler().runAtFixedRate(plugin, task -> {
-            if (!gameRunning) {
-                task.cancel();
-                return;
+        long intervalTicks = settings.getItemInterval();
+        // 由共用的发放调度器把本房间玩家的发放时间错开分散到整个间隔内
+        itemRound = RandomItemPVP.getInstance().getItemDistributor().register(new ItemDistributor.Source() {
+            @Override
+            public boolean isActive() {
+                return gameRunning;
             }
-            List<Player> survivors = getSurvivingPlayers();
-            if (survivors.isEmpty()) return;
-
-            // 从配置文件获取可掉落的物品列表（只包含配置中指定的物品）
-            List<Material> droppableItems = config.getDroppableItems();
             
-            if (droppableItems.isEmpty()) {
-                plugin.getLogger().warning("配置文件中没有可掉落的物品！请检查 config.yml 中的 items.weights 配置。");
-                return;
+            @Override
+            public Collection<Player> getRecipients() {
+                return getSurvivingPlayers();
             }
-
-            for (Player player : survivors) {
-                // 使用权重系统选择物品
-                Material randomMat = selectWeightedRandomItem(droppableItems);
-                ItemStack item = createItemStack(randomMat);
-                player.getInventory().addItem(item);
+            
+            @Override
+            public boolean isRecipient(Player player) {
+                return alivePlayers.contains(player) && player.getGameMode() != GameMode.SPECTATOR;
             }
-        }, 1, intervalTicks);
-    }
-    
-    /**
-     * 创建物品堆（带特殊效果）
-     * @param material 物品类型
-     * @return 物品堆
-     */
-    private ItemStack createItemStack(Material material) {
-        ItemStack item = new ItemStack(material, 1);
-        
-        // 如果是药水，添加随机效果
-        if (material == Material.POTION || material == Material.SPLASH_POTION || material == Material.LINGERING_POTION) {
-            org.bukkit.inventory.meta.PotionMeta meta = (org.bukkit.inventory.meta.PotionMeta) item.getItemMeta();
-            if (meta != null) {
-                // 随机选择一个有用的药水效果
-                org.bukkit.potion.PotionType[] usefulPotions = {
-                    org.bukkit.potion.PotionType.STRONG_HEALING,      // 强效治疗
-                    org.bukkit.potion.PotionType.REGENERATION,        // 生命恢复
-                    org.bukkit.potion.PotionType.STRONG_STRENGTH,     // 强效力量
-                    org.bukkit.potion.PotionType.STRONG_SWIFTNESS,    // 强效速度
-                    org.bukkit.potion.PotionType.FIRE_RESISTANCE,     // 抗火
-                    org.bukkit.potion.PotionType.INVISIBILITY,        // 隐身
-                    org.bukkit.potion.PotionType.NIGHT_VISION,        // 夜视
-                    org.bukkit.potion.PotionType.STRONG_LEAPING,      // 强效跳跃
-                    org.bukkit.potion.PotionType.WATER_BREATHING,     // 水下呼吸
-                    org.bukkit.potion.PotionType.STRONG_SLOWNESS,     // 强效缓慢（攻击用）
-                    org.bukkit.potion.PotionType.STRONG_HARMING,      // 强效伤害（攻击用）
-                    org.bukkit.potion.PotionType.POISON,              // 中毒（攻击用）
-                    org.bukkit.potion.PotionType.WEAKNESS,            // 虚弱（攻击用）
-                    org.bukkit.potion.PotionType.STRONG_TURTLE_MASTER // 神龟（防御）
-                };
-                
-                org.bukkit.potion.PotionType randomPotion = usefulPotions[random.nextInt(usefulPotions.length)];
-                meta.setBasePotionType(randomPotion);
-                item.setItemMeta(meta);
+            
+            @Override
+            public ItemPrototypes getPrototypes() {
+                // 按物品权重编译的物品原型（只包含配置中指定的物品）
+                return settings.getItemPrototypes();
             }
-        }
-        
-        return item;
-    }
-    
-    /**
-     * 基于权重选择随机物品
-     * @param materials 可选物品列表
-     * @return 选中的物品
-     */
-    private Material selectWeightedRandomItem(List<Material> materials) {
-        if (materials.isEmpty()) return Material.STONE;
-        
-        // 获取物品权重配置
-        Map<Material, Integer> weights = config.getItemWeights();
-        
-        // 计算总权重
-        int totalWeight = 0;
-        for (Material mat : materials) {
-            totalWeight += weights.getOrDefault(mat, 1);
-        }
-        
-        // 生成随机数
-        int randomValue = random.nextInt(totalWeight);
-        
-        // 找到对应的物品
-        int currentWeight = 0;
-        for (Material mat : materials) {
-            currentWeight += weights.getOrDefault(mat, 1);
-            if (randomValue < currentWeight) {
-                return mat;
+            
+            @Override
+            public void onDelivered(Player player) {
+                MatchResult match = currentMatch;
+                if (match != null) {
+                    match.recordItemReceived(player);
+                }
             }
-        }
-        
-        // 默认返回第一个物品（理论上不会到达这里）
-        return materials.get(0);
+        }, intervalTicks);
     }
     
     /**
@@ -1132,11 +1100,11 @@ public class GameInstance {
         if (!gameRunning) return;
         
         // 检查是否在最后一圈
-        boolean isFinalCircle = gameBorder != null && gameBorder.getSize() <= config.getMinBorderSize() * 1.2;
+        boolean isFinalCircle = gameBorder != null && gameBorder.getSize() <= settings.getMinBorderSize() * 1.2;
         
         // 根据是否在最后一圈调整延迟
-        long minDelay = isFinalCircle ? config.getEventDelayMinFinal() : config.getEventDelayMin();
-        long maxDelay = isFinalCircle ? config.getEventDelayMaxFinal() : config.getEventDelayMax();
+        long minDelay = isFinalCircle ? settings.getEventDelayMinFinal() : settings.getEventDelayMin();
+        long maxDelay = isFinalCircle ? settings.getEventDelayMaxFinal() : settings.getEventDelayMax();
         
         long delay = minDelay + random.nextLong(Math.max(1, maxDelay - minDelay + 1));
         
@@ -1366,22 +1334,22 @@ public class GameInstance {
      * 启动边界缩小任务
      */
     private void startBorderShrink() {
-        long delay = config.getShrinkDelay();
-        long interval = config.getShrinkInterval();
+        long delay = settings.getShrinkDelay();
+        long interval = settings.getShrinkInterval();
         borderShrinkTask = Bukkit.getGlobalRegionScheduler().runAtFixedRate(plugin, task -> {
             if (!gameRunning || gameBorder == null) { 
                 task.cancel(); 
                 return; 
             }
             double currentSize = gameBorder.getSize();
-            double minSize = config.getMinBorderSize();
+            double minSize = settings.getMinBorderSize();
             if (currentSize <= minSize) { 
                 task.cancel(); 
                 Bukkit.broadcastMessage("§c[房间 " + arena.getArenaName() + "] 边界已缩小到最小范围（" + minSize + "格）！"); 
                 return; 
             }
-            double newSize = Math.max(minSize, currentSize - config.getShrinkAmount());
-            long shrinkSeconds = config.getShrinkInterval() / 20;
+            double newSize = Math.max(minSize, currentSize - settings.getShrinkAmount());
+            long shrinkSeconds = settings.getShrinkInterval() / 20;
             gameBorder.setSize(newSize, shrinkSeconds);
             Bukkit.broadcastMessage("§e[房间 " + arena.getArenaName() + "] 边界正在缩小！当前直径：§6" + (int)newSize + "格");
             for (Player p : getSurvivingPlayers()) p.playSound(p.getLocation(), Sound.BLOCK_ANVIL_LAND, 1.0f, 1.0f);
@@ -1466,27 +1434,38 @@ public class GameInstance {
         // 从存活列表中移除
         alivePlayers.remove(player);
         
+        MatchResult match = currentMatch;
+        if (match != null) {
+            match.recordEliminated(player);
+        }
+        
         Player killer = player.getKiller();
         if (killer != null && participants.contains(killer)) {
-            // 击杀奖励
-            statsManager.recordKill(killer);
-            statsManager.recordDeath(player);
+            // 击杀奖励（计入本局比赛结果，比赛结束时统一提交）
+            if (match != null) {
+                match.recordKill(killer);
+                match.recordDeath(player);
+            }
             
             // 回血
             double maxHealth = killer.getMaxHealth();
             killer.setHealth(Math.min(maxHealth, killer.getHealth() + 4.0));
             
             // 奖励物品
-            List<Material> droppableItems = config.getDroppableItems();
-            if (!droppableItems.isEmpty()) {
-                Material randomMat = selectWeightedRandomItem(droppableItems);
-                ItemStack reward = createItemStack(randomMat);
+            ItemPrototypes prototypes = settings.getItemPrototypes();
+            if (!prototypes.isEmpty()) {
+                ItemStack reward = prototypes.next(random);
                 killer.getInventory().addItem(reward);
+                if (match != null) {
+                    match.recordItemReceived(killer);
+                }
             }
             
             Bukkit.broadcastMessage("§a[房间 " + arena.getArenaName() + "] §6" + killer.getName() + " §a击杀了 §c" + player.getName() + "§a！");
         } else {
-            statsManager.recordDeath(player);
+            if (match != null) {
+                match.recordDeath(player);
+            }
         }
         
         // 检查游戏是否结束
@@ -1500,19 +1479,14 @@ public class GameInstance {
                 if (survivors.isEmpty()) {
                     Bukkit.broadcastMessage("§c[房间 " + arena.getArenaName() + "] 游戏结束！所有玩家都已死亡！");
                     // 所有玩家都死了，记录失败
-                    for (Player p : participants) {
-                        statsManager.recordLoss(p);
-                    }
+                    commitMatchResult(null, new ArrayList<>(participants));
                 } else {
                     Player winner = survivors.get(0);
                     Bukkit.broadcastMessage("§a[房间 " + arena.getArenaName() + "] §6" + winner.getName() + " §a获胜！");
-                    statsManager.recordWin(winner);
                     // 失败者记录失败
-                    for (Player p : participants) {
-                        if (p != winner) {
-                            statsManager.recordLoss(p);
-                        }
-                    }
+                    List<Player> losers = new ArrayList<>(participants);
+                    losers.remove(winner);
+                    commitMatchResult(winner, losers);
                 }
                 
                 // 清理并重置
@@ -1521,6 +1495,16 @@ public class GameInstance {
         }
     }
     
+    /**
+     * 记录伤害（只在内存中累加，比赛结束时随结果一起提交）
+     * @param attacker 造成伤害的玩家，没有时为 null
+     */
+    public void onPlayerDamage(Player attacker, Player victim, double damage) {
+        MatchResult match = currentMatch;
+        if (!gameRunning || match == null) return;
+        match.recordDamage(attacker, victim, damage);
+    }
+    
     /**
      * 处理玩家离线
      */
@@ -1530,6 +1514,10 @@ public class GameInstance {
         
         // 从存活列表中移除
         alivePlayers.remove(player);
+        MatchResult match = currentMatch;
+        if (match != null) {
+            match.recordEliminated(player);
+        }
         
         // 如果游戏正在运行，检查游戏是否结束
         if (gameRunning) {
@@ -1550,25 +1538,27 @@ public class GameInstance {
                 Bukkit.getGlobalRegionScheduler().runDelayed(plugin, task -> {
                     if (survivors.isEmpty()) {
                         // 向房间内的玩家发送消息
+                        List<Player> losers = new ArrayList<>();
                         for (Player p : new ArrayList<>(participants)) {
                             if (p.isOnline()) {
                                 p.sendMessage("§c[房间 " + arena.getArenaName() + "] 游戏结束！所有玩家都已离开！");
-                                statsManager.recordLoss(p);
+                                losers.add(p);
                             }
                         }
+                        commitMatchResult(null, losers);
                     } else {
                         Player winner = survivors.get(0);
                         // 向房间内的玩家发送消息
+                        List<Player> losers = new ArrayList<>();
                         for (Player p : new ArrayList<>(participants)) {
                             if (p.isOnline()) {
                                 p.sendMessage("§a[房间 " + arena.getArenaName() + "] §6" + winner.getName() + " §a获胜！");
-                                if (p == winner) {
-                                    statsManager.recordWin(winner);
-                                } else {
-                                    statsManager.recordLoss(p);
+                                if (p != winner) {
+                                    losers.add(p);
                                 }
                             }
                         }
+                        commitMatchResult(winner, losers);
                     }
                     
                     // 清理并重置
@@ -1595,6 +1585,32 @@ public class GameInstance {
         }
     }
     
+    /**
+     * 提交当前比赛结果（每局只提交一次）
+     * @param winner 胜利者，没有胜利者时为 null
+     * @param losers 失败者（其余参与者视为中途离开）
+     */
+    private void commitMatchResult(Player winner, Collection<Player> losers) {
+        MatchResult match = currentMatch;
+        currentMatch = null;
+        if (match == null) {
+            return;
+        }
+        
+        match.finish(winner, losers);
+        statsManager.commitMatch(match);
+    }
+    
+    /**
+     * 插件关闭时保存进行中比赛已产生的击杀/死亡（比赛按中止处理，不计胜负）
+     * 只提交统计，不传送玩家或恢复物品（关闭时实体调度器已不可用）
+     */
+    public void commitOnShutdown() {
+        gameRunning = false;
+        preparing = false;
+        commitMatchResult(null, Collections.emptyList());
+    }
+    
     /**
      * 停止游戏
      */
@@ -1603,6 +1619,9 @@ public class GameInstance {
         preparing = false;
         arena.setStatus(GameArena.ArenaStatus.WAITING);
         
+        // 比赛被中止（未决出结果）时仍然保存已产生的击杀/死亡
+        commitMatchResult(null, Collections.emptyList());
+        
         // 取消所有任务
         cancelAllTasks();
         
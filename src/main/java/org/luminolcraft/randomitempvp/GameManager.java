@@ -6,9 +6,12 @@ import org.bukkit.*;
 import org.bukkit.entity.*;
 import org.bukkit.entity.Creeper;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.BlockBreakEvent;
 import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.entity.EntityDamageByEntityEvent;
+import org.bukkit.event.entity.EntityDamageEvent;
 import org.bukkit.event.entity.PlayerDeathEvent;
 import org.bukkit.event.player.PlayerBucketEmptyEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
@@ -32,7 +35,7 @@ public class GameManager implements Listener {
     private volatile boolean preparing = false; // 准备阶段（倒计时中）
     private volatile boolean eventTriggered = false;
     private final Random random = new Random();
-    private ScheduledTask itemTask;
+    private ItemDistributor.Round itemRound;
     private ScheduledTask eventTask;
     private ScheduledTask borderShrinkTask;
     private ScheduledTask countdownTask; // 倒计时任务（用于取消）
@@ -427,7 +430,7 @@ public class GameManager implements Listener {
     }
 
     private void cancelAllTasks() {
-        if (itemTask != null) { itemTask.cancel(); itemTask = null; }
+        if (itemRound != null) { itemRound.cancel(); itemRound = null; }
         if (eventTask != null) { eventTask.cancel(); eventTask = null; }
         if (borderShrinkTask != null) { borderShrinkTask.cancel(); borderShrinkTask = null; }
         if (aliveCountTask != null) { aliveCountTask.cancel(); aliveCountTask = null; }
@@ -635,101 +638,34 @@ public class GameManager implements Listener {
 
     private void startItemTask() {
         long intervalTicks = config.getItemInterval();
-        itemTask = Bukkit.getGlobalRegionScheduler().runAtFixedRate(plugin, task -> {
-            if (!gameRunning) {
-                task.cancel();
-                return;
+        // 由共用的发放调度器把玩家的发放时间错开分散到整个间隔内
+        itemRound = RandomItemPVP.getInstance().getItemDistributor().register(new ItemDistributor.Source() {
+            @Override
+            public boolean isActive() {
+                return gameRunning;
             }
-            List<Player> survivors = getSurvivingPlayers();
-            if (survivors.isEmpty()) return;
-
-            // 从配置文件获取可掉落的物品列表（只包含配置中指定的物品）
-            List<Material> droppableItems = config.getDroppableItems();
             
-            if (droppableItems.isEmpty()) {
-                plugin.getLogger().warning("配置文件中没有可掉落的物品！请检查 config.yml 中的 items.weights 配置。");
-                return;
+            @Override
+            public Collection<Player> getRecipients() {
+                return getSurvivingPlayers();
             }
-
-            for (Player player : survivors) {
-                // 使用权重系统选择物品
-                Material randomMat = selectWeightedRandomItem(droppableItems);
-                ItemStack item = createItemStack(randomMat);
-                player.getInventory().addItem(item);
+            
+            @Override
+            public boolean isRecipient(Player player) {
+                return alivePlayers.contains(player) && player.getGameMode() != GameMode.SPECTATOR;
             }
-        }, 1, intervalTicks);
-    }
-    
-    /**
-     * 创建物品堆（带特殊效果）
-     * @param material 物品类型
-     * @return 物品堆
-     */
-    private ItemStack createItemStack(Material material) {
-        ItemStack item = new ItemStack(material, 1);
-        
-        // 如果是药水，添加随机效果
-        if (material == Material.POTION || material == Material.SPLASH_POTION || material == Material.LINGERING_POTION) {
-            org.bukkit.inventory.meta.PotionMeta meta = (org.bukkit.inventory.meta.PotionMeta) item.getItemMeta();
-            if (meta != null) {
-                // 随机选择一个有用的药水效果
-                org.bukkit.potion.PotionType[] usefulPotions = {
-                    org.bukkit.potion.PotionType.STRONG_HEALING,      // 强效治疗
-                    org.bukkit.potion.PotionType.REGENERATION,        // 生命恢复
-                    org.bukkit.potion.PotionType.STRONG_STRENGTH,     // 强效力量
-                    org.bukkit.potion.PotionType.STRONG_SWIFTNESS,    // 强效速度
-                    org.bukkit.potion.PotionType.FIRE_RESISTANCE,     // 抗火
-                    org.bukkit.potion.PotionType.INVISIBILITY,        // 隐身
-                    org.bukkit.potion.PotionType.NIGHT_VISION,        // 夜视
-                    org.bukkit.potion.PotionType.STRONG_LEAPING,      // 强效跳跃
-                    org.bukkit.potion.PotionType.WATER_BREATHING,     // 水下呼吸
-                    org.bukkit.potion.PotionType.STRONG_SLOWNESS,     // 强效缓慢（攻击用）
-                    org.bukkit.potion.PotionType.STRONG_HARMING,      // 强效伤害（攻击用）
-                    org.bukkit.potion.PotionType.POISON,              // 中毒（攻击用）
-                    org.bukkit.potion.PotionType.WEAKNESS,            // 虚弱（攻击用）
-                    org.bukkit.potion.PotionType.STRONG_TURTLE_MASTER // 神龟（防御）
-                };
-                
-                org.bukkit.potion.PotionType randomPotion = usefulPotions[random.nextInt(usefulPotions.length)];
-                meta.setBasePotionType(randomPotion);
-                item.setItemMeta(meta);
+            
+            @Override
+            public ItemPrototypes getPrototypes() {
+                // 按物品权重编译的物品原型（只包含配置中指定的物品）
+                return config.getSnapshot().getItemPrototypes();
             }
-        }
-        
-        return item;
-    }
-    
-    /**
-     * 基于权重选择随机物品
-     * @param materials 可选物品列表
-     * @return 选中的物品
-     */
-    private Material selectWeightedRandomItem(List<Material> materials) {
-        if (materials.isEmpty()) return Material.STONE;
-        
-        // 获取物品权重配置
-        Map<Material, Integer> weights = config.getItemWeights();
-        
-        // 计算总权重
-        int totalWeight = 0;
-        for (Material mat : materials) {
-            totalWeight += weights.getOrDefault(mat, 1);
-        }
-        
-        // 生成随机数
-        int randomValue = random.nextInt(totalWeight);
-        
-        // 找到对应的物品
-        int currentWeight = 0;
-        for (Material mat : materials) {
-            currentWeight += weights.getOrDefault(mat, 1);
-            if (randomValue < currentWeight) {
-                return mat;
+            
+            @Override
+            public void onDelivered(Player player) {
+                // 单房间模式不记录比赛统计
             }
-        }
-        
-        // 默认返回第一个物品（理论上不会到达这里）
-        return materials.get(0);
+        }, intervalTicks);
     }
     
     private boolean isUsefulItem(Material material) {
@@ -1189,6 +1125,51 @@ public class GameManager implements Listener {
         }
     }
 
+    /**
+     * 累计多房间系统中的伤害数据（只在内存中累加，比赛结束时随结果一起提交）
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityDamage(EntityDamageEvent event) {
+        if (!(this.plugin instanceof RandomItemPVP)) return;
+        ArenaManager arenaManager = ((RandomItemPVP) this.plugin).getArenaManager();
+        if (arenaManager == null) return;
+        
+        Player victim = event.getEntity() instanceof Player ? (Player) event.getEntity() : null;
+        Player attacker = event instanceof EntityDamageByEntityEvent
+            ? getDamagingPlayer(((EntityDamageByEntityEvent) event).getDamager()) : null;
+        if (victim == null && attacker == null) return;
+        
+        double damage = event.getFinalDamage();
+        GameInstance victimGame = arenaManager.getRunningGame(victim);
+        GameInstance attackerGame = arenaManager.getRunningGame(attacker);
+        if (victimGame != null && victimGame == attackerGame) {
+            victimGame.onPlayerDamage(attacker, victim, damage);
+            return;
+        }
+        if (victimGame != null) {
+            victimGame.onPlayerDamage(null, victim, damage);
+        }
+        if (attackerGame != null) {
+            attackerGame.onPlayerDamage(attacker, null, damage);
+        }
+    }
+    
+    /**
+     * 获取造成伤害的玩家（直接攻击、弹射物或点燃的 TNT）
+     */
+    private Player getDamagingPlayer(Entity damager) {
+        if (damager instanceof Player) {
+            return (Player) damager;
+        }
+        if (damager instanceof Projectile && ((Projectile) damager).getShooter() instanceof Player) {
+            return (Player) ((Projectile) damager).getShooter();
+        }
+        if (damager instanceof TNTPrimed && ((TNTPrimed) damager).getSource() instanceof Player) {
+            return (Player) ((TNTPrimed) damager).getSource();
+        }
+        return null;
+    }
+
     @EventHandler
     public void onPlayerJoin(PlayerJoinEvent event) {
         Player player = event.getPlayer();
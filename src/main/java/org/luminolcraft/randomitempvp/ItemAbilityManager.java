@@ -72,6 +72,10 @@ public class ItemAbilityManager implements Listener {
             
             // 投掷 TNT
             throwTNT(player);
+            MatchResult match = getCurrentMatch(player);
+            if (match != null) {
+                match.recordTntThrown(player);
+            }
             
             // 消耗物品
             if (item.getAmount() > 1) {
@@ -138,6 +142,10 @@ public class ItemAbilityManager implements Listener {
             
             // 投掷火焰弹
             throwFireball(player);
+            MatchResult match = getCurrentMatch(player);
+            if (match != null) {
+                match.recordFireballThrown(player);
+            }
             
             // 消耗物品
             if (item.getAmount() > 1) {
@@ -188,6 +196,17 @@ public class ItemAbilityManager implements Listener {
         }
     }
     
+    /**
+     * 获取玩家所在房间当前比赛的结果（用于累计战斗数据）
+     * @return 比赛结果，玩家不在进行中的房间时返回 null
+     */
+    private MatchResult getCurrentMatch(Player player) {
+        if (!(plugin instanceof RandomItemPVP)) return null;
+        ArenaManager arenaManager = ((RandomItemPVP) plugin).getArenaManager();
+        GameInstance game = arenaManager != null ? arenaManager.getRunningGame(player) : null;
+        return game != null ? game.getCurrentMatch() : null;
+    }
+    
     /**
      * 投掷 TNT
      */
@@ -0,0 +1,251 @@
+package org.luminolcraft.randomitempvp;
+
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 随机物品发放调度器（所有房间共用）
+ * 一个全局计时器每 tick 运行一次，把每名玩家的发放时间均匀分散到整个发放间隔内：
+ * 每轮游戏按注册顺序取一个错开的起始偏移，玩家在轮内按顺序均分间隔，避免所有房间的所有玩家在同一 tick 领取物品。
+ * 每名玩家每个间隔仍然只领取一个物品；每 tick 的发放数量有上限，超出的顺延到下一 tick（不会少发）。
+ * 计时器只决定发放给谁、发放什么，背包操作交给玩家所在区域的线程执行
+ */
+public class ItemDistributor {
+    
+    // 黄金分割比例：依次注册的轮次偏移彼此错开，且不会与之前的轮次重合
+    private static final double GOLDEN_RATIO = 0.6180339887498949;
+    
+    /**
+     * 一轮游戏的物品发放来源
+     */
+    public interface Source {
+        /**
+         * 游戏是否仍在进行（返回 false 时停止发放并注销该轮）
+         */
+        boolean isActive();
+        
+        /**
+         * 当前应该领取物品的玩家（每个间隔同步一次，新出现的玩家会分配发放时间）
+         */
+        Collection<Player> getRecipients();
+        
+        /**
+         * 玩家是否仍应领取物品（在玩家所在区域的线程调用）
+         */
+        boolean isRecipient(Player player);
+        
+        /**
+         * 本轮使用的物品原型
+         */
+        ItemPrototypes getPrototypes();
+        
+        /**
+         * 物品放入背包后调用（在玩家所在区域的线程调用）
+         */
+        void onDelivered(Player player);
+    }
+    
+    /**
+     * 已注册的一轮发放（由 register 返回，游戏结束时取消）
+     */
+    public static final class Round {
+        private final Source source;
+        private final long interval;
+        private final long offset;
+        // 以下字段只在全局计时器线程访问
+        private final Map<Player, Long> nextDelivery = new LinkedHashMap<>();
+        private long nextSync = -1;
+        private boolean warnedEmpty = false;
+        private volatile boolean cancelled = false;
+        
+        private Round(Source source, long interval, long offset) {
+            this.source = source;
+            this.interval = interval;
+            this.offset = offset;
+        }
+        
+        /**
+         * 停止本轮发放（已经交给玩家线程的发放仍会检查游戏状态）
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+    
+    private final JavaPlugin plugin;
+    private final ConfigManager config;
+    private final List<Round> rounds = new CopyOnWriteArrayList<>();
+    private ScheduledTask tickTask;
+    // 计时器运行以来的 tick 数（只在全局计时器线程访问）
+    private long tick = 0;
+    private long registered = 0;
+    // 下一 tick 从哪一轮开始发放，超出上限时各轮轮流优先
+    private int firstRound = 0;
+    
+    public ItemDistributor(JavaPlugin plugin, ConfigManager config) {
+        this.plugin = plugin;
+        this.config = config;
+    }
+    
+    /**
+     * 注册一轮物品发放（第一个物品在一个间隔内按分配的时间发放）
+     * @param source 发放来源
+     * @param intervalTicks 每名玩家的发放间隔（ticks）
+     * @return 本轮发放，游戏结束时调用 cancel()
+     */
+    public synchronized Round register(Source source, long intervalTicks) {
+        long interval = Math.max(1, intervalTicks);
+        long offset = (long) (((registered++ * GOLDEN_RATIO) % 1.0) * interval);
+        Round round = new Round(source, interval, offset);
+        rounds.add(round);
+        if (tickTask == null) {
+            tickTask = Bukkit.getGlobalRegionScheduler().runAtFixedRate(plugin, task -> tick(), 1, 1);
+        }
+        return round;
+    }
+    
+    /**
+     * 停止计时器并取消所有轮次（插件禁用时调用）
+     */
+    public synchronized void shutdown() {
+        for (Round round : rounds) {
+            round.cancel();
+        }
+        rounds.clear();
+        if (tickTask != null) {
+            tickTask.cancel();
+            tickTask = null;
+        }
+    }
+    
+    private void tick() {
+        tick++;
+        List<Round> active = new ArrayList<>(rounds.size());
+        int pending = 0;
+        for (Round round : rounds) {
+            if (round.cancelled || !round.source.isActive()) {
+                rounds.remove(round);
+                continue;
+            }
+            if (tick >= round.nextSync) {
+                sync(round);
+            }
+            active.add(round);
+            pending += round.nextDelivery.size();
+        }
+        if (active.isEmpty()) {
+            stopIfIdle();
+            return;
+        }
+        
+        // 每 tick 的上限不低于“玩家数 / 间隔”，保证每名玩家每个间隔都能领到一个物品
+        int limit = Math.max(config.getSnapshot().getItemMaxPerTick(), ceilDiv(pending, minInterval(active)));
+        int delivered = 0;
+        int start = Math.floorMod(firstRound++, active.size());
+        for (int i = 0; i < active.size() && delivered < limit; i++) {
+            delivered += deliverDue(active.get((start + i) % active.size()), limit - delivered);
+        }
+    }
+    
+    /**
+     * 同步本轮的玩家列表：移除不再领取物品的玩家，为新出现的玩家分配发放时间
+     */
+    private void sync(Round round) {
+        Collection<Player> recipients = round.source.getRecipients();
+        round.nextDelivery.keySet().retainAll(recipients);
+        
+        List<Player> added = new ArrayList<>();
+        for (Player player : recipients) {
+            if (!round.nextDelivery.containsKey(player)) {
+                added.add(player);
+            }
+        }
+        // 新玩家在一个间隔内均匀分布：第 i 名玩家的发放时间为 偏移 + i × 间隔 / 人数
+        for (int i = 0; i < added.size(); i++) {
+            long slot = (round.offset + i * round.interval / added.size()) % round.interval;
+            round.nextDelivery.put(added.get(i), tick + 1 + slot);
+        }
+        round.nextSync = tick + round.interval;
+    }
+    
+    /**
+     * 发放本轮已到时间的物品
+     * @param budget 本 tick 剩余的发放数量
+     * @return 实际发放的数量
+     */
+    private int deliverDue(Round round, int budget) {
+        ItemPrototypes prototypes = round.source.getPrototypes();
+        if (prototypes.isEmpty()) {
+            if (!round.warnedEmpty) {
+                round.warnedEmpty = true;
+                plugin.getLogger().warning("配置文件中没有可掉落的物品！请检查 config.yml 中的 items.weights 配置。");
+            }
+            return 0;
+        }
+        
+        int delivered = 0;
+        Iterator<Map.Entry<Player, Long>> it = round.nextDelivery.entrySet().iterator();
+        while (it.hasNext() && delivered < budget) {
+            Map.Entry<Player, Long> entry = it.next();
+            long due = entry.getValue();
+            if (due > tick) {
+                continue;
+            }
+            Player player = entry.getKey();
+            if (!player.isOnline()) {
+                it.remove();
+                continue;
+            }
+            // 下一次按原定时间推进一个间隔，顺延的发放不会让后面的发放整体后移
+            entry.setValue(Math.max(due + round.interval, tick + 1));
+            deliver(round.source, player, prototypes.next(ThreadLocalRandom.current()));
+            delivered++;
+        }
+        return delivered;
+    }
+    
+    /**
+     * 把物品交给玩家所在区域的线程放入背包（玩家已下线时任务不会执行，物品直接丢弃）
+     */
+    private void deliver(Source source, Player player, ItemStack item) {
+        player.getScheduler().run(plugin, playerTask -> {
+            // 调度期间游戏可能已结束或玩家已被淘汰
+            if (!source.isActive() || !source.isRecipient(player)) {
+                return;
+            }
+            player.getInventory().addItem(item);
+            source.onDelivered(player);
+        }, null);
+    }
+    
+    private static long minInterval(List<Round> active) {
+        long min = Long.MAX_VALUE;
+        for (Round round : active) {
+            min = Math.min(min, round.interval);
+        }
+        return min;
+    }
+    
+    private static int ceilDiv(int value, long divisor) {
+        return (int) ((value + divisor - 1) / divisor);
+    }
+    
+    private synchronized void stopIfIdle() {
+        if (rounds.isEmpty() && tickTask != null) {
+            tickTask.cancel();
+            tickTask = null;
+        }
+    }
+}
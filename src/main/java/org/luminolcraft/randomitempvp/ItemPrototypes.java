@@ -0,0 +1,95 @@
+package org.luminolcraft.randomitempvp;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.PotionMeta;
+import org.bukkit.potion.PotionType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 随机发放物品的原型
+ * 加载配置时为每种物品预先构建一个 ItemStack（药水按效果各构建一个），发放时只克隆原型，不再创建和设置物品元数据。
+ * 药水物品的权重按效果权重再细分：某种药水效果的概率 = 物品权重 × 效果权重 / 效果总权重
+ */
+public final class ItemPrototypes {
+    
+    private final WeightedSampler<ItemStack> sampler;
+    
+    /**
+     * @param itemWeights 物品权重
+     * @param potionWeights 药水效果权重（用于药水、喷溅药水和滞留药水）
+     */
+    public ItemPrototypes(Map<Material, Integer> itemWeights, Map<PotionType, Integer> potionWeights) {
+        long potionTotal = 0;
+        for (int weight : potionWeights.values()) {
+            potionTotal += Math.max(0, weight);
+        }
+        
+        List<ItemStack> prototypes = new ArrayList<>();
+        List<Double> weights = new ArrayList<>();
+        for (Map.Entry<Material, Integer> entry : itemWeights.entrySet()) {
+            Material material = entry.getKey();
+            int weight = entry.getValue();
+            if (weight <= 0) {
+                continue;
+            }
+            
+            if (isPotion(material) && potionTotal > 0) {
+                // 每种药水效果一个原型，概率按效果权重分配
+                for (Map.Entry<PotionType, Integer> potion : potionWeights.entrySet()) {
+                    if (potion.getValue() <= 0) {
+                        continue;
+                    }
+                    prototypes.add(createPotion(material, potion.getKey()));
+                    weights.add((double) weight * potion.getValue() / potionTotal);
+                }
+            } else {
+                prototypes.add(new ItemStack(material, 1));
+                weights.add((double) weight);
+            }
+        }
+        this.sampler = WeightedSampler.of(prototypes, weights);
+    }
+    
+    private static boolean isPotion(Material material) {
+        return material == Material.POTION || material == Material.SPLASH_POTION || material == Material.LINGERING_POTION;
+    }
+    
+    private static ItemStack createPotion(Material material, PotionType type) {
+        ItemStack item = new ItemStack(material, 1);
+        PotionMeta meta = (PotionMeta) item.getItemMeta();
+        if (meta != null) {
+            meta.setBasePotionType(type);
+            item.setItemMeta(meta);
+        }
+        return item;
+    }
+    
+    /**
+     * 按权重随机抽取一个物品
+     * @param random 随机数生成器
+     * @return 原型的副本（可以直接放入背包），没有物品时返回 null
+     */
+    public ItemStack next(Random random) {
+        ItemStack prototype = sampler.sample(random);
+        return prototype != null ? prototype.clone() : null;
+    }
+    
+    /**
+     * 是否没有任何可发放的物品
+     */
+    public boolean isEmpty() {
+        return sampler.isEmpty();
+    }
+    
+    /**
+     * 原型数量（药水的每种效果各算一个）
+     */
+    public int size() {
+        return sampler.size();
+    }
+}
@@ -0,0 +1,918 @@
+package org.luminolcraft.randomitempvp;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 基于 JDBC 的统计存储（SQLite / MySQL）
+ * 两种数据库的差异只在 upsert 语法和插入忽略语法上，其余 SQL 共用
+ */
+public class JdbcStatsStore implements StatsStore {
+    // 单条语句最多绑定的参数数（SQLite 旧版本上限为 999）
+    private static final int MAX_IN_PARAMS = 900;
+    private static final String ACTIVE_SEASON_META_KEY = "active_season";
+    private static final String NAME_INDEX_META_KEY = "name_index_built";
+    
+    private final DatabaseManager database;
+    
+    public JdbcStatsStore(DatabaseManager database) {
+        this.database = database;
+    }
+    
+    @Override
+    public Map<UUID, PlayerStatsManager.PlayerStats> loadOrCreate(Map<UUID, String> requests) throws SQLException {
+        Map<UUID, PlayerStatsManager.PlayerStats> result = new LinkedHashMap<>();
+        List<UUID> uuids = new ArrayList<>(requests.keySet());
+        
+        try (Connection conn = database.getReadConnection()) {
+            for (int from = 0; from < uuids.size(); from += MAX_IN_PARAMS) {
+                List<UUID> chunk = uuids.subList(from, Math.min(uuids.size(), from + MAX_IN_PARAMS));
+                String sql = "SELECT * FROM player_stats WHERE uuid IN (" + placeholders(chunk.size(), "?") + ")";
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        database.setUuid(stmt, i + 1, chunk.get(i));
+                    }
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            PlayerStatsManager.PlayerStats stats = readStats(rs);
+                            result.put(stats.getUuid(), stats);
+                        }
+                    }
+                }
+            }
+        }
+        
+        List<UUID> missing = new ArrayList<>();
+        for (UUID uuid : uuids) {
+            if (!result.containsKey(uuid)) {
+                missing.add(uuid);
+                result.put(uuid, new PlayerStatsManager.PlayerStats(uuid, requests.get(uuid)));
+            }
+        }
+        
+        if (!missing.isEmpty()) {
+            // 新玩家，使用写连接以一条多行插入初始化
+            String verb = database.getDatabaseType() == DatabaseManager.DatabaseType.SQLITE ? "INSERT OR IGNORE" : "INSERT IGNORE";
+            long now = System.currentTimeMillis();
+            try (Connection conn = database.getConnection()) {
+                for (int from = 0; from < missing.size(); from += MAX_IN_PARAMS / 3) {
+                    List<UUID> chunk = missing.subList(from, Math.min(missing.size(), from + MAX_IN_PARAMS / 3));
+                    String sql = verb + " INTO player_stats (uuid, player_name, last_played) VALUES " +
+                                 placeholders(chunk.size(), "(?, ?, ?)");
+                    try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                        int index = 1;
+                        for (UUID uuid : chunk) {
+                            database.setUuid(stmt, index++, uuid);
+                            stmt.setString(index++, requests.get(uuid));
+                            stmt.setLong(index++, now);
+                        }
+                        stmt.executeUpdate();
+                    }
+                }
+                
+                // 新玩家同时写入名称索引，之后只在改名时更新
+                for (int from = 0; from < missing.size(); from += MAX_IN_PARAMS / 4) {
+                    List<UUID> chunk = missing.subList(from, Math.min(missing.size(), from + MAX_IN_PARAMS / 4));
+                    try (PreparedStatement stmt = conn.prepareStatement(nameIndexSql(database.getDatabaseType(), chunk.size()))) {
+                        int index = 1;
+                        for (UUID uuid : chunk) {
+                            index = bindNameIndex(stmt, index, uuid, requests.get(uuid), now);
+                        }
+                        stmt.executeUpdate();
+                    }
+                }
+            }
+        }
+        
+        return result;
+    }
+    
+    @Override
+    public Map<UUID, PlayerStatsManager.PlayerStats> loadSeasonStats(String season, Collection<UUID> uuids) throws SQLException {
+        Map<UUID, PlayerStatsManager.PlayerStats> result = new HashMap<>();
+        List<UUID> list = new ArrayList<>(uuids);
+        
+        try (Connection conn = database.getReadConnection()) {
+            for (int from = 0; from < list.size(); from += MAX_IN_PARAMS) {
+                List<UUID> chunk = list.subList(from, Math.min(list.size(), from + MAX_IN_PARAMS));
+                String sql = "SELECT * FROM season_stats WHERE season_id = ? AND uuid IN (" + placeholders(chunk.size(), "?") + ")";
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    stmt.setString(1, season);
+                    for (int i = 0; i < chunk.size(); i++) {
+                        stmt.setString(i + 2, chunk.get(i).toString());
+                    }
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            PlayerStatsManager.PlayerStats stats = readStats(rs, true);
+                            result.put(stats.getUuid(), stats);
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+    
+    @Override
+    public Map<UUID, int[]> loadRankTotals(String season) throws SQLException {
+        String sql = season == null
+            ? "SELECT uuid, wins, kills, deaths, games_played FROM player_stats"
+            : "SELECT uuid, wins, kills, deaths, games_played FROM season_stats WHERE season_id = ?";
+        
+        Map<UUID, int[]> data = new HashMap<>();
+        // 排名索引只在加载时读取一次、之后只做增量更新，必须读取主库（副本可能还没有复制已写入的增量，造成永久偏差）
+        try (Connection conn = database.getReadConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            if (season != null) {
+                stmt.setString(1, season);
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    UUID uuid = season == null ? database.getUuid(rs, "uuid") : UUID.fromString(rs.getString("uuid"));
+                    data.put(uuid, new int[] {
+                        rs.getInt("wins"), rs.getInt("kills"), rs.getInt("deaths"), rs.getInt("games_played")
+                    });
+                }
+            }
+        }
+        return data;
+    }
+    
+    @Override
+    public List<PlayerStatsManager.PlayerStats> queryTop(String season, StatsRankIndex.RankType type, int limit) throws SQLException {
+        String from = season == null ? "player_stats WHERE 1 = 1" : "season_stats WHERE season_id = ?";
+        String sql;
+        switch (type) {
+            case KILLS:
+                sql = "SELECT * FROM " + from + " ORDER BY kills DESC LIMIT ?";
+                break;
+            case KD:
+                // 需要至少10场游戏才能上榜（避免只打1场就上榜），kd_ratio 为带索引的生成列
+                sql = "SELECT * FROM " + from + " AND games_played >= " + StatsRankIndex.MIN_KD_GAMES + " ORDER BY kd_ratio DESC LIMIT ?";
+                break;
+            case WINS:
+            default:
+                sql = "SELECT * FROM " + from + " ORDER BY wins DESC LIMIT ?";
+                break;
+        }
+        
+        List<PlayerStatsManager.PlayerStats> topPlayers = new ArrayList<>();
+        try (Connection conn = database.getReplicaConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            int index = 1;
+            if (season != null) {
+                stmt.setString(index++, season);
+            }
+            stmt.setInt(index, limit);
+            
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    topPlayers.add(readStats(rs, season != null));
+                }
+            }
+        }
+        return topPlayers;
+    }
+    
+    /**
+     * 对日期范围内的每日汇总按玩家求和后排序（KD 榜只包含周期内至少 StatsRankIndex.MIN_KD_GAMES 场的玩家）
+     */
+    @Override
+    public List<PlayerStatsManager.PlayerStats> queryPeriodTop(long fromDay, long toDay, StatsRankIndex.RankType type, int limit) throws SQLException {
+        String order;
+        String having = "";
+        switch (type) {
+            case KILLS:
+                order = "kills DESC";
+                break;
+            case KD:
+                having = " HAVING SUM(games_played) >= " + StatsRankIndex.MIN_KD_GAMES;
+                order = "CASE WHEN SUM(deaths) = 0 THEN SUM(kills) * 1.0 ELSE SUM(kills) * 1.0 / SUM(deaths) END DESC";
+                break;
+            case WINS:
+            default:
+                order = "wins DESC";
+                break;
+        }
+        String sql = "SELECT uuid, MAX(player_name) AS player_name, SUM(wins) AS wins, SUM(losses) AS losses, " +
+                     "SUM(kills) AS kills, SUM(deaths) AS deaths, SUM(games_played) AS games_played, MAX(last_played) AS last_played " +
+                     "FROM daily_stats WHERE day BETWEEN ? AND ? GROUP BY uuid" + having + " ORDER BY " + order + " LIMIT ?";
+        
+        List<PlayerStatsManager.PlayerStats> topPlayers = new ArrayList<>();
+        try (Connection conn = database.getReplicaConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            stmt.setLong(1, fromDay);
+            stmt.setLong(2, toDay);
+            stmt.setInt(3, limit);
+            
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    topPlayers.add(readStats(rs, true));
+                }
+            }
+        }
+        return topPlayers;
+    }
+    
+    @Override
+    public int pruneDailyStats(long beforeDay) throws SQLException {
+        try (Connection conn = database.getConnection();
+             PreparedStatement stmt = conn.prepareStatement("DELETE FROM daily_stats WHERE day < ?")) {
+            stmt.setLong(1, beforeDay);
+            return stmt.executeUpdate();
+        }
+    }
+    
+    /**
+     * 以单个事务批量写入
+     */
+    @Override
+    public void applyDeltas(String season, Map<UUID, StatsWriteJournal.Delta> deltas) throws SQLException {
+        try (Connection conn = database.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                writeDeltas(database, conn, season, deltas);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+    }
+    
+    /**
+     * 在一个事务中写入比赛记录和玩家统计
+     */
+    @Override
+    public void commitMatch(String season, MatchResult match, Map<UUID, StatsWriteJournal.Delta> deltas) throws SQLException {
+        String historySql = "INSERT INTO match_history (arena, map_id, winner_uuid, winner_name, player_count, started_at, ended_at, duration) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+        String playerSql = "INSERT INTO match_players (match_id, uuid, player_name, kills, deaths, result, ended_at, " +
+                           "damage_dealt, damage_taken, items_received, tnt_thrown, fireballs_thrown, airdrops_opened, time_survived) " +
+                           "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        String combatSql = "UPDATE player_stats SET damage_dealt = damage_dealt + ?, damage_taken = damage_taken + ?, " +
+                           "items_received = items_received + ?, tnt_thrown = tnt_thrown + ?, fireballs_thrown = fireballs_thrown + ?, " +
+                           "airdrops_opened = airdrops_opened + ?, time_survived = time_survived + ? WHERE uuid = ?";
+        
+        try (Connection conn = database.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                long matchId;
+                try (PreparedStatement stmt = conn.prepareStatement(historySql, Statement.RETURN_GENERATED_KEYS)) {
+                    stmt.setString(1, match.getArenaName());
+                    stmt.setString(2, match.getMapId());
+                    stmt.setString(3, match.getWinnerUuid() != null ? match.getWinnerUuid().toString() : null);
+                    stmt.setString(4, match.getWinnerName());
+                    stmt.setInt(5, match.getPlayers().size());
+                    stmt.setLong(6, match.getStartedAt());
+                    stmt.setLong(7, match.getEndedAt());
+                    stmt.setLong(8, match.getDurationMillis());
+                    stmt.executeUpdate();
+                    
+                    try (ResultSet keys = stmt.getGeneratedKeys()) {
+                        if (!keys.next()) {
+                            throw new SQLException("未能获取比赛记录 ID");
+                        }
+                        matchId = keys.getLong(1);
+                    }
+                }
+                
+                try (PreparedStatement stmt = conn.prepareStatement(playerSql)) {
+                    for (MatchResult.PlayerResult result : match.getPlayers()) {
+                        stmt.setLong(1, matchId);
+                        stmt.setString(2, result.getUuid().toString());
+                        stmt.setString(3, result.getPlayerName());
+                        stmt.setInt(4, result.getKills());
+                        stmt.setInt(5, result.getDeaths());
+                        stmt.setString(6, result.getOutcome().name());
+                        stmt.setLong(7, match.getEndedAt());
+                        bindCombat(stmt, 8, match, result);
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                }
+                
+                writeDeltas(database, conn, season, deltas);
+                
+                // 战斗数据累加到总榜（玩家记录已由上面的 upsert 创建）
+                try (PreparedStatement stmt = conn.prepareStatement(combatSql)) {
+                    for (MatchResult.PlayerResult result : match.getPlayers()) {
+                        bindCombat(stmt, 1, match, result);
+                        database.setUuid(stmt, 8, result.getUuid());
+                        stmt.addBatch();
+                    }
+                    stmt.executeBatch();
+                }
+                
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+    }
+    
+    /**
+     * 使用 (uuid, ended_at, match_id) 键集分页，不使用 OFFSET
+     */
+    @Override
+    public PlayerStatsManager.HistoryPage getPlayerHistory(UUID uuid, PlayerStatsManager.HistoryCursor after, int pageSize) throws SQLException {
+        String sql = "SELECT mp.match_id, mp.kills, mp.deaths, mp.result, mp.ended_at, " +
+                     "mh.arena, mh.map_id, mh.winner_name, mh.player_count, mh.duration " +
+                     "FROM match_players mp JOIN match_history mh ON mh.id = mp.match_id " +
+                     "WHERE mp.uuid = ?" +
+                     (after != null ? " AND (mp.ended_at < ? OR (mp.ended_at = ? AND mp.match_id < ?))" : "") +
+                     " ORDER BY mp.ended_at DESC, mp.match_id DESC LIMIT ?";
+        
+        try (Connection conn = database.getReplicaConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            int index = 1;
+            stmt.setString(index++, uuid.toString());
+            index = bindCursor(stmt, index, after);
+            stmt.setInt(index, pageSize + 1); // 多查一条判断是否还有下一页
+            
+            List<PlayerStatsManager.MatchHistoryEntry> entries = new ArrayList<>();
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    entries.add(new PlayerStatsManager.MatchHistoryEntry(
+                        rs.getLong("match_id"), rs.getString("arena"), rs.getString("map_id"),
+                        rs.getString("winner_name"), rs.getInt("player_count"),
+                        rs.getLong("ended_at"), rs.getLong("duration"),
+                        rs.getInt("kills"), rs.getInt("deaths"), parseOutcome(rs.getString("result"))));
+                }
+            }
+            return PlayerStatsManager.HistoryPage.of(entries, pageSize);
+        }
+    }
+    
+    /**
+     * 使用 (ended_at, id) 键集分页，不使用 OFFSET
+     */
+    @Override
+    public PlayerStatsManager.HistoryPage getServerHistory(PlayerStatsManager.HistoryCursor after, int pageSize) throws SQLException {
+        String sql = "SELECT id, arena, map_id, winner_name, player_count, ended_at, duration FROM match_history" +
+                     (after != null ? " WHERE (ended_at < ? OR (ended_at = ? AND id < ?))" : "") +
+                     " ORDER BY ended_at DESC, id DESC LIMIT ?";
+        
+        try (Connection conn = database.getReplicaConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            
+            int index = bindCursor(stmt, 1, after);
+            stmt.setInt(index, pageSize + 1);
+            
+            List<PlayerStatsManager.MatchHistoryEntry> entries = new ArrayList<>();
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    entries.add(new PlayerStatsManager.MatchHistoryEntry(
+                        rs.getLong("id"), rs.getString("arena"), rs.getString("map_id"),
+                        rs.getString("winner_name"), rs.getInt("player_count"),
+                        rs.getLong("ended_at"), rs.getLong("duration"), 0, 0, null));
+                }
+            }
+            return PlayerStatsManager.HistoryPage.of(entries, pageSize);
+        }
+    }
+    
+    /**
+     * 在一个事务中更新总榜、当前赛季和今天的每日汇总中的名称，并替换名称索引
+     */
+    @Override
+    public void updatePlayerName(UUID uuid, String playerName) throws SQLException {
+        try (Connection conn = database.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                try (PreparedStatement stmt = conn.prepareStatement("UPDATE player_stats SET player_name = ? WHERE uuid = ?")) {
+                    stmt.setString(1, playerName);
+                    database.setUuid(stmt, 2, uuid);
+                    stmt.executeUpdate();
+                }
+                
+                String season = database.getMeta(conn, ACTIVE_SEASON_META_KEY);
+                if (season != null) {
+                    try (PreparedStatement stmt = conn.prepareStatement("UPDATE season_stats SET player_name = ? WHERE season_id = ? AND uuid = ?")) {
+                        stmt.setString(1, playerName);
+                        stmt.setString(2, season);
+                        stmt.setString(3, uuid.toString());
+                        stmt.executeUpdate();
+                    }
+                }
+                try (PreparedStatement stmt = conn.prepareStatement("UPDATE daily_stats SET player_name = ? WHERE day = ? AND uuid = ?")) {
+                    stmt.setString(1, playerName);
+                    stmt.setLong(2, StatsPeriod.epochDay(System.currentTimeMillis()));
+                    stmt.setString(3, uuid.toString());
+                    stmt.executeUpdate();
+                }
+                
+                // 旧名称不再指向该玩家
+                try (PreparedStatement stmt = conn.prepareStatement("DELETE FROM player_names WHERE uuid = ? AND name_lower <> ?")) {
+                    stmt.setString(1, uuid.toString());
+                    stmt.setString(2, playerName.toLowerCase(Locale.ROOT));
+                    stmt.executeUpdate();
+                }
+                try (PreparedStatement stmt = conn.prepareStatement(nameIndexSql(database.getDatabaseType(), 1))) {
+                    bindNameIndex(stmt, 1, uuid, playerName, System.currentTimeMillis());
+                    stmt.executeUpdate();
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+    }
+    
+    @Override
+    public UUID findPlayerByName(String playerName) throws SQLException {
+        try (Connection conn = database.getReadConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT uuid FROM player_names WHERE name_lower = ?")) {
+            stmt.setString(1, playerName.toLowerCase(Locale.ROOT));
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? UUID.fromString(rs.getString(1)) : null;
+            }
+        }
+    }
+    
+    /**
+     * 按主键分页读取 player_stats，以多行 upsert 写入名称索引（同名时保留最近游玩的玩家）
+     * 完成后在 plugin_meta 中记录，之后的启动不再执行
+     */
+    @Override
+    public int buildNameIndex() throws SQLException {
+        try (Connection conn = database.getReadConnection()) {
+            if ("1".equals(database.getMeta(conn, NAME_INDEX_META_KEY))) {
+                return -1;
+            }
+        }
+        
+        int pageSize = MAX_IN_PARAMS / 4;
+        int indexed = 0;
+        UUID after = null;
+        while (true) {
+            List<PlayerStatsManager.PlayerStats> page = scanStats(after, pageSize);
+            if (page.isEmpty()) {
+                break;
+            }
+            try (Connection conn = database.getConnection();
+                 PreparedStatement stmt = conn.prepareStatement(nameIndexSql(database.getDatabaseType(), page.size()))) {
+                int index = 1;
+                for (PlayerStatsManager.PlayerStats stats : page) {
+                    index = bindNameIndex(stmt, index, stats.getUuid(), stats.getPlayerName(), stats.getLastPlayed());
+                }
+                stmt.executeUpdate();
+            }
+            indexed += page.size();
+            after = page.get(page.size() - 1).getUuid();
+        }
+        
+        try (Connection conn = database.getConnection()) {
+            database.setMeta(conn, NAME_INDEX_META_KEY, "1");
+        }
+        return indexed;
+    }
+    
+    @Override
+    public String getActiveSeason() throws SQLException {
+        try (Connection conn = database.getReadConnection()) {
+            return database.getMeta(conn, ACTIVE_SEASON_META_KEY);
+        }
+    }
+    
+    @Override
+    public void setActiveSeason(String season) throws SQLException {
+        try (Connection conn = database.getConnection()) {
+            database.setMeta(conn, ACTIVE_SEASON_META_KEY, season);
+        }
+    }
+    
+    @Override
+    public List<String> listSeasons() throws SQLException {
+        List<String> seasons = new ArrayList<>();
+        try (Connection conn = database.getReadConnection();
+             PreparedStatement stmt = conn.prepareStatement("SELECT DISTINCT season_id FROM season_stats ORDER BY season_id");
+             ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) {
+                seasons.add(rs.getString(1));
+            }
+        }
+        return seasons;
+    }
+    
+    @Override
+    public List<PlayerStatsManager.PlayerStats> scanStats(UUID after, int limit) throws SQLException {
+        String sql = "SELECT * FROM player_stats" + (after != null ? " WHERE uuid > ?" : "") + " ORDER BY uuid LIMIT ?";
+        
+        List<PlayerStatsManager.PlayerStats> page = new ArrayList<>();
+        try (Connection conn = database.getReadConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            int index = 1;
+            if (after != null) {
+                database.setUuid(stmt, index++, after);
+            }
+            stmt.setInt(index, limit);
+            
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    page.add(readStats(rs));
+                }
+            }
+        }
+        return page;
+    }
+    
+    @Override
+    public List<StatsTransfer.MatchRecord> scanMatches(long afterId, int limit) throws SQLException {
+        Map<Long, StatsTransfer.MatchRecord> page = new LinkedHashMap<>();
+        try (Connection conn = database.getReadConnection()) {
+            try (PreparedStatement stmt = conn.prepareStatement("SELECT * FROM match_history WHERE id > ? ORDER BY id LIMIT ?")) {
+                stmt.setLong(1, afterId);
+                stmt.setInt(2, limit);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        StatsTransfer.MatchRecord match = new StatsTransfer.MatchRecord(
+                            rs.getLong("id"), rs.getString("arena"), rs.getString("map_id"),
+                            rs.getString("winner_uuid"), rs.getString("winner_name"), rs.getInt("player_count"),
+                            rs.getLong("started_at"), rs.getLong("ended_at"), rs.getLong("duration"));
+                        page.put(match.getId(), match);
+                    }
+                }
+            }
+            
+            if (!page.isEmpty()) {
+                String sql = "SELECT * FROM match_players WHERE match_id IN (" + placeholders(page.size(), "?") + ")";
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    int index = 1;
+                    for (Long id : page.keySet()) {
+                        stmt.setLong(index++, id);
+                    }
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            page.get(rs.getLong("match_id")).getPlayers().add(new StatsTransfer.MatchPlayerRecord(
+                                rs.getString("uuid"), rs.getString("player_name"),
+                                rs.getInt("kills"), rs.getInt("deaths"), rs.getString("result"), rs.getLong("ended_at")));
+                        }
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(page.values());
+    }
+    
+    /**
+     * 以多行 upsert 累加导入的统计（每条语句最多 MAX_IN_PARAMS 个参数）
+     */
+    @Override
+    public void importStats(List<PlayerStatsManager.PlayerStats> batch) throws SQLException {
+        int rowsPerStatement = MAX_IN_PARAMS / 8;
+        try (Connection conn = database.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                for (int from = 0; from < batch.size(); from += rowsPerStatement) {
+                    List<PlayerStatsManager.PlayerStats> chunk = batch.subList(from, Math.min(batch.size(), from + rowsPerStatement));
+                    try (PreparedStatement stmt = conn.prepareStatement(upsertSql(database.getDatabaseType(), chunk.size()))) {
+                        int index = 1;
+                        for (PlayerStatsManager.PlayerStats stats : chunk) {
+                            database.setUuid(stmt, index++, stats.getUuid());
+                            stmt.setString(index++, stats.getPlayerName());
+                            stmt.setInt(index++, stats.getWins());
+                            stmt.setInt(index++, stats.getLosses());
+                            stmt.setInt(index++, stats.getKills());
+                            stmt.setInt(index++, stats.getDeaths());
+                            stmt.setInt(index++, stats.getGamesPlayed());
+                            stmt.setLong(index++, stats.getLastPlayed());
+                        }
+                        stmt.executeUpdate();
+                    }
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+    }
+    
+    /**
+     * 逐条插入比赛记录以取得新 ID，参赛玩家用多行插入
+     */
+    @Override
+    public void importMatches(List<StatsTransfer.MatchRecord> batch) throws SQLException {
+        String historySql = "INSERT INTO match_history (arena, map_id, winner_uuid, winner_name, player_count, started_at, ended_at, duration) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+        int rowsPerStatement = MAX_IN_PARAMS / 7;
+        
+        try (Connection conn = database.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                List<Object[]> players = new ArrayList<>();
+                try (PreparedStatement stmt = conn.prepareStatement(historySql, Statement.RETURN_GENERATED_KEYS)) {
+                    for (StatsTransfer.MatchRecord match : batch) {
+                        stmt.setString(1, match.getArenaName());
+                        stmt.setString(2, match.getMapId());
+                        stmt.setString(3, match.getWinnerUuid());
+                        stmt.setString(4, match.getWinnerName());
+                        stmt.setInt(5, match.getPlayerCount());
+                        stmt.setLong(6, match.getStartedAt());
+                        stmt.setLong(7, match.getEndedAt());
+                        stmt.setLong(8, match.getDuration());
+                        stmt.executeUpdate();
+                        
+                        long matchId;
+                        try (ResultSet keys = stmt.getGeneratedKeys()) {
+                            if (!keys.next()) {
+                                throw new SQLException("未能获取比赛记录 ID");
+                            }
+                            matchId = keys.getLong(1);
+                        }
+                        for (StatsTransfer.MatchPlayerRecord player : match.getPlayers()) {
+                            players.add(new Object[] {
+                                matchId, player.getUuid(), player.getPlayerName(),
+                                player.getKills(), player.getDeaths(), player.getResult(), player.getEndedAt()
+                            });
+                        }
+                    }
+                }
+                
+                for (int from = 0; from < players.size(); from += rowsPerStatement) {
+                    List<Object[]> chunk = players.subList(from, Math.min(players.size(), from + rowsPerStatement));
+                    String sql = "INSERT INTO match_players (match_id, uuid, player_name, kills, deaths, result, ended_at) VALUES " +
+                                 placeholders(chunk.size(), "(?, ?, ?, ?, ?, ?, ?)");
+                    try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                        int index = 1;
+                        for (Object[] row : chunk) {
+                            for (Object value : row) {
+                                stmt.setObject(index++, value);
+                            }
+                        }
+                        stmt.executeUpdate();
+                    }
+                }
+                
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+    }
+    
+    @Override
+    public boolean isLocal() {
+        return false;
+    }
+    
+    @Override
+    public void close() {
+        // 连接池由 DatabaseManager 关闭
+    }
+    
+    /**
+     * 在调用方的事务中累加一批增量：player_stats 和当前赛季的 season_stats 各一个批处理
+     * @param season 当前赛季 ID，null 表示只写总榜
+     */
+    static void writeDeltas(DatabaseManager database, Connection conn, String season,
+                            Map<UUID, StatsWriteJournal.Delta> deltas) throws SQLException {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(upsertSql(database.getDatabaseType()))) {
+            for (Map.Entry<UUID, StatsWriteJournal.Delta> entry : deltas.entrySet()) {
+                bindUpsert(database, stmt, entry.getKey(), entry.getValue());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+        
+        // 每日汇总：按增量的最后游玩时间计入当天（跨过零点合并的增量计入较晚的一天）
+        long now = System.currentTimeMillis();
+        try (PreparedStatement stmt = conn.prepareStatement(dailyUpsertSql(database.getDatabaseType()))) {
+            for (Map.Entry<UUID, StatsWriteJournal.Delta> entry : deltas.entrySet()) {
+                StatsWriteJournal.Delta delta = entry.getValue();
+                stmt.setLong(1, StatsPeriod.epochDay(delta.getLastPlayed() > 0 ? delta.getLastPlayed() : now));
+                stmt.setString(2, entry.getKey().toString());
+                stmt.setString(3, delta.getPlayerName() != null ? delta.getPlayerName() : "");
+                stmt.setInt(4, delta.getWins());
+                stmt.setInt(5, delta.getLosses());
+                stmt.setInt(6, delta.getKills());
+                stmt.setInt(7, delta.getDeaths());
+                stmt.setInt(8, delta.getGamesPlayed());
+                stmt.setLong(9, delta.getLastPlayed());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+        
+        if (season == null) {
+            return;
+        }
+        try (PreparedStatement stmt = conn.prepareStatement(seasonUpsertSql(database.getDatabaseType()))) {
+            for (Map.Entry<UUID, StatsWriteJournal.Delta> entry : deltas.entrySet()) {
+                StatsWriteJournal.Delta delta = entry.getValue();
+                stmt.setString(1, season);
+                stmt.setString(2, entry.getKey().toString());
+                stmt.setString(3, delta.getPlayerName() != null ? delta.getPlayerName() : "");
+                stmt.setInt(4, delta.getWins());
+                stmt.setInt(5, delta.getLosses());
+                stmt.setInt(6, delta.getKills());
+                stmt.setInt(7, delta.getDeaths());
+                stmt.setInt(8, delta.getGamesPlayed());
+                stmt.setLong(9, delta.getLastPlayed());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+    
+    /**
+     * 累加赛季统计的 upsert 语句
+     */
+    private static String seasonUpsertSql(DatabaseManager.DatabaseType type) {
+        return accumulateUpsertSql(type, "season_stats", "season_id");
+    }
+    
+    /**
+     * 累加每日汇总的 upsert 语句
+     */
+    private static String dailyUpsertSql(DatabaseManager.DatabaseType type) {
+        return accumulateUpsertSql(type, "daily_stats", "day");
+    }
+    
+    /**
+     * 按 (分区键, uuid) 累加统计的 upsert 语句（名称只在创建记录时写入，改名由 updatePlayerName 处理）
+     */
+    private static String accumulateUpsertSql(DatabaseManager.DatabaseType type, String table, String keyColumn) {
+        String sql = "INSERT INTO " + table + " (" + keyColumn + ", uuid, player_name, wins, losses, kills, deaths, games_played, last_played) " +
+                     "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) ";
+        if (type == DatabaseManager.DatabaseType.SQLITE) {
+            sql += "ON CONFLICT(" + keyColumn + ", uuid) DO UPDATE SET wins = wins + excluded.wins, losses = losses + excluded.losses, " +
+                   "kills = kills + excluded.kills, deaths = deaths + excluded.deaths, games_played = games_played + excluded.games_played, " +
+                   "last_played = MAX(last_played, excluded.last_played)";
+        } else {
+            sql += "ON DUPLICATE KEY UPDATE wins = wins + VALUES(wins), losses = losses + VALUES(losses), " +
+                   "kills = kills + VALUES(kills), deaths = deaths + VALUES(deaths), games_played = games_played + VALUES(games_played), " +
+                   "last_played = GREATEST(last_played, VALUES(last_played))";
+        }
+        return sql;
+    }
+    
+    /**
+     * 写入名称索引的多行 upsert 语句（名称已被占用时，只有更晚出现的玩家才会覆盖）
+     * @param rows VALUES 中的行数
+     */
+    private static String nameIndexSql(DatabaseManager.DatabaseType type, int rows) {
+        String sql = "INSERT INTO player_names (name_lower, uuid, player_name, last_seen) VALUES " + placeholders(rows, "(?, ?, ?, ?)") + " ";
+        if (type == DatabaseManager.DatabaseType.SQLITE) {
+            sql += "ON CONFLICT(name_lower) DO UPDATE SET uuid = excluded.uuid, player_name = excluded.player_name, " +
+                   "last_seen = excluded.last_seen WHERE excluded.last_seen >= player_names.last_seen";
+        } else {
+            // last_seen 必须最后更新，前面的 IF 比较的是旧值
+            sql += "ON DUPLICATE KEY UPDATE uuid = IF(VALUES(last_seen) >= last_seen, VALUES(uuid), uuid), " +
+                   "player_name = IF(VALUES(last_seen) >= last_seen, VALUES(player_name), player_name), " +
+                   "last_seen = GREATEST(last_seen, VALUES(last_seen))";
+        }
+        return sql;
+    }
+    
+    private static int bindNameIndex(PreparedStatement stmt, int index, UUID uuid, String playerName, long lastSeen) throws SQLException {
+        stmt.setString(index++, playerName.toLowerCase(Locale.ROOT));
+        stmt.setString(index++, uuid.toString());
+        stmt.setString(index++, playerName);
+        stmt.setLong(index++, lastSeen);
+        return index;
+    }
+    
+    /**
+     * 累加统计增量的 upsert 语句
+     */
+    static String upsertSql(DatabaseManager.DatabaseType type) {
+        return upsertSql(type, 1);
+    }
+    
+    /**
+     * 累加统计增量的多行 upsert 语句
+     * 名称只在创建记录时写入：玩家很少改名，改名由 updatePlayerName 在进服时处理
+     * @param rows VALUES 中的行数
+     */
+    static String upsertSql(DatabaseManager.DatabaseType type, int rows) {
+        String values = placeholders(rows, "(?, ?, ?, ?, ?, ?, ?, ?)");
+        String sql;
+        if (type == DatabaseManager.DatabaseType.SQLITE) {
+            sql = "INSERT INTO player_stats (uuid, player_name, wins, losses, kills, deaths, games_played, last_played) VALUES " + values + " " +
+                  "ON CONFLICT(uuid) DO UPDATE SET wins = wins + excluded.wins, losses = losses + excluded.losses, " +
+                  "kills = kills + excluded.kills, deaths = deaths + excluded.deaths, games_played = games_played + excluded.games_played, " +
+                  "last_played = MAX(last_played, excluded.last_played)";
+        } else {
+            sql = "INSERT INTO player_stats (uuid, player_name, wins, losses, kills, deaths, games_played, last_played) VALUES " + values + " " +
+                  "ON DUPLICATE KEY UPDATE wins = wins + VALUES(wins), losses = losses + VALUES(losses), " +
+                  "kills = kills + VALUES(kills), deaths = deaths + VALUES(deaths), games_played = games_played + VALUES(games_played), " +
+                  "last_played = GREATEST(last_played, VALUES(last_played))";
+        }
+        return sql;
+    }
+    
+    /**
+     * 绑定 upsert 语句的参数
+     */
+    static void bindUpsert(DatabaseManager database, PreparedStatement stmt, UUID uuid, StatsWriteJournal.Delta delta) throws SQLException {
+        database.setUuid(stmt, 1, uuid);
+        stmt.setString(2, delta.getPlayerName());
+        stmt.setInt(3, delta.getWins());
+        stmt.setInt(4, delta.getLosses());
+        stmt.setInt(5, delta.getKills());
+        stmt.setInt(6, delta.getDeaths());
+        stmt.setInt(7, delta.getGamesPlayed());
+        stmt.setLong(8, delta.getLastPlayed());
+    }
+    
+    /**
+     * 绑定一名玩家的战斗数据（7 个参数，存活时间以秒为单位）
+     */
+    private void bindCombat(PreparedStatement stmt, int index, MatchResult match, MatchResult.PlayerResult result) throws SQLException {
+        stmt.setLong(index, result.getDamageDealt());
+        stmt.setLong(index + 1, result.getDamageTaken());
+        stmt.setLong(index + 2, result.getItemsReceived());
+        stmt.setLong(index + 3, result.getTntThrown());
+        stmt.setLong(index + 4, result.getFireballsThrown());
+        stmt.setLong(index + 5, result.getAirdropsOpened());
+        stmt.setLong(index + 6, match.getTimeSurvived(result) / 1000);
+    }
+    
+    private PlayerStatsManager.PlayerStats readStats(ResultSet rs) throws SQLException {
+        return readStats(rs, false);
+    }
+    
+    /**
+     * @param season 是否为 season_stats / daily_stats 的行（uuid 以文本存储）
+     */
+    private PlayerStatsManager.PlayerStats readStats(ResultSet rs, boolean season) throws SQLException {
+        UUID uuid = season ? UUID.fromString(rs.getString("uuid")) : database.getUuid(rs, "uuid");
+        PlayerStatsManager.PlayerStats stats = new PlayerStatsManager.PlayerStats(uuid, rs.getString("player_name"));
+        stats.setWins(rs.getInt("wins"));
+        stats.setLosses(rs.getInt("losses"));
+        stats.setKills(rs.getInt("kills"));
+        stats.setDeaths(rs.getInt("deaths"));
+        stats.setGamesPlayed(rs.getInt("games_played"));
+        stats.setLastPlayed(rs.getLong("last_played"));
+        if (!season) {
+            stats.setDamageDealt(rs.getLong("damage_dealt"));
+            stats.setDamageTaken(rs.getLong("damage_taken"));
+            stats.setItemsReceived(rs.getLong("items_received"));
+            stats.setTntThrown(rs.getLong("tnt_thrown"));
+            stats.setFireballsThrown(rs.getLong("fireballs_thrown"));
+            stats.setAirdropsOpened(rs.getLong("airdrops_opened"));
+            stats.setTimeSurvived(rs.getLong("time_survived"));
+        }
+        return stats;
+    }
+    
+    private int bindCursor(PreparedStatement stmt, int index, PlayerStatsManager.HistoryCursor after) throws SQLException {
+        if (after != null) {
+            stmt.setLong(index++, after.getEndedAt());
+            stmt.setLong(index++, after.getEndedAt());
+            stmt.setLong(index++, after.getMatchId());
+        }
+        return index;
+    }
+    
+    private MatchResult.Outcome parseOutcome(String value) {
+        try {
+            return MatchResult.Outcome.valueOf(value);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            return MatchResult.Outcome.LEFT;
+        }
+    }
+    
+    /**
+     * 生成以逗号分隔的占位符
+     */
+    private static String placeholders(int count, String placeholder) {
+        return String.join(", ", Collections.nCopies(count, placeholder));
+    }
+}
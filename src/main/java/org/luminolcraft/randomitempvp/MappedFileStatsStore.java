@@ -0,0 +1,525 @@
+package org.luminolcraft.randomitempvp;
+
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+
+/**
+ * 基于内存映射文件的统计存储（database.type: FILE）
+ * 每名玩家一条定长记录，文件整体映射到内存，读写都是直接的内存访问；
+ * 启动时扫描一遍建立 UUID → 记录位置的索引。适合不想维护数据库的小型服务器，
+ * 不记录比赛历史，排行榜通过全表扫描生成
+ *
+ * 文件格式：64 字节文件头（魔数、版本、记录长度、记录数、当前赛季 ID），之后为 96 字节的定长记录。
+ * 每个赛季的统计保存在同目录下单独的文件中（同样的格式），换季只修改文件头中的赛季 ID
+ */
+public class MappedFileStatsStore implements StatsStore {
+    private static final int MAGIC = 0x52495053; // "RIPS"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+    private static final int RECORD_SIZE = 96;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MAX_NAME_BYTES = 48;
+    
+    // 文件头字段偏移
+    private static final int HEADER_MAGIC = 0;
+    private static final int HEADER_VERSION = 4;
+    private static final int HEADER_RECORD_SIZE = 8;
+    private static final int HEADER_COUNT = 12;
+    private static final int HEADER_SEASON_LENGTH = 16;
+    private static final int HEADER_SEASON = 17;
+    private static final int MAX_SEASON_BYTES = 32;
+    
+    // 记录字段偏移
+    private static final int UUID_MSB = 0;
+    private static final int UUID_LSB = 8;
+    private static final int WINS = 16;
+    private static final int LOSSES = 20;
+    private static final int KILLS = 24;
+    private static final int DEATHS = 28;
+    private static final int GAMES = 32;
+    private static final int LAST_PLAYED = 36;
+    private static final int NAME_LENGTH = 44;
+    private static final int NAME = 45;
+    
+    private final JavaPlugin plugin;
+    private final File file;
+    
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private int count;
+    // UUID → 记录序号
+    private final Map<UUID, Integer> index = new HashMap<>();
+    // 已打开的赛季文件
+    private final Map<String, MappedFileStatsStore> seasonStores = new HashMap<>();
+    
+    public MappedFileStatsStore(JavaPlugin plugin, File file) {
+        this.plugin = plugin;
+        this.file = file;
+    }
+    
+    @Override
+    public synchronized Map<UUID, PlayerStatsManager.PlayerStats> loadOrCreate(Map<UUID, String> requests) throws SQLException {
+        ensureOpen();
+        Map<UUID, PlayerStatsManager.PlayerStats> result = new LinkedHashMap<>();
+        long now = System.currentTimeMillis();
+        boolean created = false;
+        try {
+            for (Map.Entry<UUID, String> entry : requests.entrySet()) {
+                Integer slot = index.get(entry.getKey());
+                if (slot == null) {
+                    slot = append(entry.getKey(), entry.getValue(), now);
+                    created = true;
+                }
+                result.put(entry.getKey(), read(slot));
+            }
+            if (created) {
+                buffer.force();
+            }
+        } catch (IOException e) {
+            throw new SQLException("写入统计文件失败：" + file.getPath(), e);
+        }
+        return result;
+    }
+    
+    @Override
+    public synchronized Map<UUID, PlayerStatsManager.PlayerStats> loadSeasonStats(String season, Collection<UUID> uuids) throws SQLException {
+        MappedFileStatsStore seasonStore = seasonStore(season);
+        synchronized (seasonStore) {
+            seasonStore.ensureOpen();
+            Map<UUID, PlayerStatsManager.PlayerStats> result = new HashMap<>();
+            for (UUID uuid : uuids) {
+                Integer slot = seasonStore.index.get(uuid);
+                if (slot != null) {
+                    result.put(uuid, seasonStore.read(slot));
+                }
+            }
+            return result;
+        }
+    }
+    
+    @Override
+    public synchronized Map<UUID, int[]> loadRankTotals(String season) throws SQLException {
+        if (season != null) {
+            return seasonStore(season).loadRankTotals(null);
+        }
+        ensureOpen();
+        Map<UUID, int[]> data = new HashMap<>();
+        for (int slot = 0; slot < count; slot++) {
+            int base = offset(slot);
+            data.put(readUuid(base), new int[] {
+                buffer.getInt(base + WINS), buffer.getInt(base + KILLS),
+                buffer.getInt(base + DEATHS), buffer.getInt(base + GAMES)
+            });
+        }
+        return data;
+    }
+    
+    /**
+     * 全表扫描，用大小为 limit 的小顶堆保留前几名
+     */
+    @Override
+    public synchronized List<PlayerStatsManager.PlayerStats> queryTop(String season, StatsRankIndex.RankType type, int limit) throws SQLException {
+        if (season != null) {
+            return seasonStore(season).queryTop(null, type, limit);
+        }
+        ensureOpen();
+        Comparator<PlayerStatsManager.PlayerStats> order;
+        switch (type) {
+            case KILLS:
+                order = Comparator.comparingInt(PlayerStatsManager.PlayerStats::getKills);
+                break;
+            case KD:
+                order = Comparator.comparingDouble(PlayerStatsManager.PlayerStats::getKDRatio);
+                break;
+            case WINS:
+            default:
+                order = Comparator.comparingInt(PlayerStatsManager.PlayerStats::getWins);
+                break;
+        }
+        
+        PriorityQueue<PlayerStatsManager.PlayerStats> heap = new PriorityQueue<>(Math.max(1, limit) + 1, order);
+        for (int slot = 0; slot < count && limit > 0; slot++) {
+            if (type == StatsRankIndex.RankType.KD && buffer.getInt(offset(slot) + GAMES) < StatsRankIndex.MIN_KD_GAMES) {
+                continue;
+            }
+            heap.add(read(slot));
+            if (heap.size() > limit) {
+                heap.poll();
+            }
+        }
+        
+        List<PlayerStatsManager.PlayerStats> top = new ArrayList<>(heap);
+        top.sort(order.reversed());
+        return top;
+    }
+    
+    /**
+     * 先写总榜文件，再写赛季文件（两个文件分别 force，不是原子的）
+     */
+    @Override
+    public synchronized void applyDeltas(String season, Map<UUID, StatsWriteJournal.Delta> deltas) throws SQLException {
+        applyRecords(deltas);
+        if (season != null) {
+            seasonStore(season).applyRecords(deltas);
+        }
+    }
+    
+    /**
+     * 将增量累加到本文件
+     */
+    private synchronized void applyRecords(Map<UUID, StatsWriteJournal.Delta> deltas) throws SQLException {
+        ensureOpen();
+        try {
+            for (Map.Entry<UUID, StatsWriteJournal.Delta> entry : deltas.entrySet()) {
+                StatsWriteJournal.Delta delta = entry.getValue();
+                Integer slot = index.get(entry.getKey());
+                if (slot == null) {
+                    slot = append(entry.getKey(), delta.getPlayerName(), 0L);
+                }
+                
+                int base = offset(slot);
+                buffer.putInt(base + WINS, buffer.getInt(base + WINS) + delta.getWins());
+                buffer.putInt(base + LOSSES, buffer.getInt(base + LOSSES) + delta.getLosses());
+                buffer.putInt(base + KILLS, buffer.getInt(base + KILLS) + delta.getKills());
+                buffer.putInt(base + DEATHS, buffer.getInt(base + DEATHS) + delta.getDeaths());
+                buffer.putInt(base + GAMES, buffer.getInt(base + GAMES) + delta.getGamesPlayed());
+                buffer.putLong(base + LAST_PLAYED, Math.max(buffer.getLong(base + LAST_PLAYED), delta.getLastPlayed()));
+            }
+            buffer.force();
+        } catch (IOException e) {
+            throw new SQLException("写入统计文件失败：" + file.getPath(), e);
+        }
+    }
+    
+    /**
+     * 本地文件存储不记录比赛历史，只累加统计增量
+     */
+    @Override
+    public void commitMatch(String season, MatchResult match, Map<UUID, StatsWriteJournal.Delta> deltas) throws SQLException {
+        applyDeltas(season, deltas);
+    }
+    
+    @Override
+    public PlayerStatsManager.HistoryPage getPlayerHistory(UUID uuid, PlayerStatsManager.HistoryCursor after, int pageSize) {
+        return new PlayerStatsManager.HistoryPage(new ArrayList<>(), null);
+    }
+    
+    @Override
+    public PlayerStatsManager.HistoryPage getServerHistory(PlayerStatsManager.HistoryCursor after, int pageSize) {
+        return new PlayerStatsManager.HistoryPage(new ArrayList<>(), null);
+    }
+    
+    @Override
+    public synchronized void updatePlayerName(UUID uuid, String playerName) throws SQLException {
+        ensureOpen();
+        Integer slot = index.get(uuid);
+        if (slot != null) {
+            writeName(offset(slot), playerName);
+            buffer.force();
+        }
+    }
+    
+    /**
+     * 文件中没有名称索引，按记录顺序查找（同名时取最近游玩的玩家）
+     */
+    @Override
+    public synchronized UUID findPlayerByName(String playerName) throws SQLException {
+        ensureOpen();
+        UUID found = null;
+        long foundLastPlayed = -1;
+        for (int slot = 0; slot < count; slot++) {
+            int base = offset(slot);
+            long lastPlayed = buffer.getLong(base + LAST_PLAYED);
+            if (lastPlayed > foundLastPlayed && readName(base).equalsIgnoreCase(playerName)) {
+                found = readUuid(base);
+                foundLastPlayed = lastPlayed;
+            }
+        }
+        return found;
+    }
+    
+    @Override
+    public int buildNameIndex() {
+        return -1;
+    }
+    
+    /**
+     * 记录只追加不移动，按记录顺序分页
+     */
+    @Override
+    public synchronized List<PlayerStatsManager.PlayerStats> scanStats(UUID after, int limit) throws SQLException {
+        ensureOpen();
+        int from = 0;
+        if (after != null) {
+            Integer slot = index.get(after);
+            from = slot != null ? slot + 1 : count;
+        }
+        List<PlayerStatsManager.PlayerStats> page = new ArrayList<>();
+        for (int slot = from; slot < count && page.size() < limit; slot++) {
+            page.add(read(slot));
+        }
+        return page;
+    }
+    
+    @Override
+    public List<StatsTransfer.MatchRecord> scanMatches(long afterId, int limit) {
+        return new ArrayList<>();
+    }
+    
+    @Override
+    public List<PlayerStatsManager.PlayerStats> queryPeriodTop(long fromDay, long toDay, StatsRankIndex.RankType type, int limit) {
+        return new ArrayList<>();
+    }
+    
+    @Override
+    public int pruneDailyStats(long beforeDay) {
+        return 0;
+    }
+    
+    @Override
+    public synchronized void importStats(List<PlayerStatsManager.PlayerStats> batch) throws SQLException {
+        Map<UUID, StatsWriteJournal.Delta> deltas = new LinkedHashMap<>();
+        for (PlayerStatsManager.PlayerStats stats : batch) {
+            deltas.put(stats.getUuid(), StatsWriteJournal.Delta.of(stats.getPlayerName(), stats.getWins(), stats.getLosses(),
+                stats.getKills(), stats.getDeaths(), stats.getGamesPlayed(), stats.getLastPlayed()));
+        }
+        applyRecords(deltas);
+    }
+    
+    /**
+     * 本地文件存储不记录比赛历史，导入时忽略
+     */
+    @Override
+    public void importMatches(List<StatsTransfer.MatchRecord> batch) {
+    }
+    
+    @Override
+    public synchronized String getActiveSeason() throws SQLException {
+        ensureOpen();
+        int length = Math.min(buffer.get(HEADER_SEASON_LENGTH) & 0xFF, MAX_SEASON_BYTES);
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(HEADER_SEASON, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    @Override
+    public synchronized void setActiveSeason(String season) throws SQLException {
+        ensureOpen();
+        byte[] bytes = season.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_SEASON_BYTES) {
+            throw new SQLException("赛季 ID 过长：" + season);
+        }
+        buffer.put(HEADER_SEASON_LENGTH, (byte) bytes.length);
+        buffer.put(HEADER_SEASON, bytes);
+        buffer.force();
+    }
+    
+    @Override
+    public List<String> listSeasons() {
+        String prefix = seasonFilePrefix();
+        List<String> seasons = new ArrayList<>();
+        File[] files = file.getAbsoluteFile().getParentFile().listFiles();
+        if (files != null) {
+            for (File candidate : files) {
+                String name = candidate.getName();
+                if (name.startsWith(prefix) && name.endsWith(".dat")) {
+                    seasons.add(name.substring(prefix.length(), name.length() - 4));
+                }
+            }
+        }
+        Collections.sort(seasons);
+        return seasons;
+    }
+    
+    @Override
+    public boolean isLocal() {
+        return true;
+    }
+    
+    @Override
+    public synchronized void close() {
+        for (MappedFileStatsStore seasonStore : seasonStores.values()) {
+            seasonStore.close();
+        }
+        seasonStores.clear();
+        if (channel == null) {
+            return;
+        }
+        try {
+            buffer.force();
+            channel.close();
+        } catch (IOException e) {
+            plugin.getLogger().severe("关闭统计文件失败！");
+            e.printStackTrace();
+        }
+        channel = null;
+        buffer = null;
+        index.clear();
+    }
+    
+    /**
+     * 获取赛季文件的存储（调用方持有本对象的锁）
+     */
+    private MappedFileStatsStore seasonStore(String season) throws SQLException {
+        if (!season.matches("[A-Za-z0-9_-]{1,32}")) {
+            throw new SQLException("无效的赛季 ID：" + season);
+        }
+        MappedFileStatsStore seasonStore = seasonStores.get(season);
+        if (seasonStore == null) {
+            File seasonFile = new File(file.getAbsoluteFile().getParentFile(), seasonFilePrefix() + season + ".dat");
+            seasonStore = new MappedFileStatsStore(plugin, seasonFile);
+            seasonStores.put(season, seasonStore);
+        }
+        return seasonStore;
+    }
+    
+    /**
+     * 赛季文件名前缀，例如 stats.dat 的赛季文件为 stats-season-<ID>.dat
+     */
+    private String seasonFilePrefix() {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return (dot > 0 ? name.substring(0, dot) : name) + "-season-";
+    }
+    
+    /**
+     * 首次访问时打开并映射文件，扫描所有记录建立索引
+     */
+    private void ensureOpen() throws SQLException {
+        if (channel != null) {
+            return;
+        }
+        
+        try {
+            File parent = file.getAbsoluteFile().getParentFile();
+            if (parent != null && !parent.exists()) {
+                parent.mkdirs();
+            }
+            
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long size = channel.size();
+            boolean fresh = size < HEADER_SIZE;
+            capacity = fresh ? INITIAL_CAPACITY : (int) Math.max(INITIAL_CAPACITY, (size - HEADER_SIZE) / RECORD_SIZE);
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * RECORD_SIZE);
+            
+            if (fresh) {
+                buffer.putInt(HEADER_MAGIC, MAGIC);
+                buffer.putInt(HEADER_VERSION, VERSION);
+                buffer.putInt(HEADER_RECORD_SIZE, RECORD_SIZE);
+                buffer.putInt(HEADER_COUNT, 0);
+                buffer.force();
+            } else if (buffer.getInt(HEADER_MAGIC) != MAGIC || buffer.getInt(HEADER_RECORD_SIZE) != RECORD_SIZE) {
+                throw new IOException("不是有效的统计文件（文件头不匹配）");
+            }
+            
+            count = Math.min(buffer.getInt(HEADER_COUNT), capacity);
+            index.clear();
+            for (int slot = 0; slot < count; slot++) {
+                index.put(readUuid(offset(slot)), slot);
+            }
+            plugin.getLogger().info("统计文件已加载：" + count + " 名玩家（" + file.getPath() + "）");
+        } catch (IOException e) {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                }
+            }
+            channel = null;
+            buffer = null;
+            throw new SQLException("打开统计文件失败：" + file.getPath(), e);
+        }
+    }
+    
+    /**
+     * 追加一条新记录（容量不足时按两倍扩容并重新映射）
+     * @return 记录序号
+     */
+    private int append(UUID uuid, String playerName, long lastPlayed) throws IOException {
+        if (count == capacity) {
+            buffer.force();
+            capacity *= 2;
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * RECORD_SIZE);
+        }
+        
+        int slot = count;
+        int base = offset(slot);
+        for (int i = 0; i < RECORD_SIZE; i++) {
+            buffer.put(base + i, (byte) 0);
+        }
+        buffer.putLong(base + UUID_MSB, uuid.getMostSignificantBits());
+        buffer.putLong(base + UUID_LSB, uuid.getLeastSignificantBits());
+        buffer.putLong(base + LAST_PLAYED, lastPlayed);
+        if (playerName != null) {
+            writeName(base, playerName);
+        }
+        
+        // 记录写完后再更新记录数，中途崩溃时不会读到半条记录
+        count++;
+        buffer.putInt(HEADER_COUNT, count);
+        index.put(uuid, slot);
+        return slot;
+    }
+    
+    private PlayerStatsManager.PlayerStats read(int slot) {
+        int base = offset(slot);
+        PlayerStatsManager.PlayerStats stats = new PlayerStatsManager.PlayerStats(readUuid(base), readName(base));
+        stats.setWins(buffer.getInt(base + WINS));
+        stats.setLosses(buffer.getInt(base + LOSSES));
+        stats.setKills(buffer.getInt(base + KILLS));
+        stats.setDeaths(buffer.getInt(base + DEATHS));
+        stats.setGamesPlayed(buffer.getInt(base + GAMES));
+        stats.setLastPlayed(buffer.getLong(base + LAST_PLAYED));
+        return stats;
+    }
+    
+    private UUID readUuid(int base) {
+        return new UUID(buffer.getLong(base + UUID_MSB), buffer.getLong(base + UUID_LSB));
+    }
+    
+    private String readName(int base) {
+        int length = Math.min(buffer.get(base + NAME_LENGTH) & 0xFF, MAX_NAME_BYTES);
+        byte[] bytes = new byte[length];
+        buffer.get(base + NAME, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * 写入玩家名称（超出长度时按字符截断）
+     */
+    private void writeName(int base, String playerName) {
+        String name = playerName;
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        while (bytes.length > MAX_NAME_BYTES) {
+            name = name.substring(0, name.length() - 1);
+            bytes = name.getBytes(StandardCharsets.UTF_8);
+        }
+        buffer.put(base + NAME_LENGTH, (byte) bytes.length);
+        buffer.put(base + NAME, bytes);
+    }
+    
+    private static int offset(int slot) {
+        return HEADER_SIZE + slot * RECORD_SIZE;
+    }
+}
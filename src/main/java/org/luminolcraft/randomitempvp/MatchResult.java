@@ -0,0 +1,214 @@
+package org.luminolcraft.randomitempvp;
+
+import org.bukkit.entity.Player;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单局比赛结果
+ * 比赛开始时创建，比赛中累计每名玩家的击杀/死亡和战斗数据，
+ * 结束时由 PlayerStatsManager 在一个事务中提交（战斗数据每局只写入一次，不按事件写入）
+ */
+public class MatchResult {
+    
+    /**
+     * 玩家在本局中的结果
+     */
+    public enum Outcome {
+        WIN,
+        LOSS,
+        LEFT // 中途离开或比赛被中止（不计胜负和场次）
+    }
+    
+    /**
+     * 单个玩家的比赛数据
+     */
+    public static class PlayerResult {
+        private final UUID uuid;
+        private volatile String playerName;
+        private final AtomicInteger kills = new AtomicInteger();
+        private final AtomicInteger deaths = new AtomicInteger();
+        private volatile Outcome outcome = Outcome.LEFT;
+        
+        // 战斗数据：伤害事件非常频繁，使用 LongAdder 累加，避免多个区域线程竞争同一个计数器
+        // 伤害以 0.01 点为单位累加，提交时换算为整数点
+        private final LongAdder damageDealt = new LongAdder();
+        private final LongAdder damageTaken = new LongAdder();
+        private final LongAdder itemsReceived = new LongAdder();
+        private final LongAdder tntThrown = new LongAdder();
+        private final LongAdder fireballsThrown = new LongAdder();
+        private final LongAdder airdropsOpened = new LongAdder();
+        // 被淘汰（死亡或离开）的时间，0 表示存活到比赛结束
+        private volatile long eliminatedAt = 0;
+        
+        public PlayerResult(UUID uuid, String playerName) {
+            this.uuid = uuid;
+            this.playerName = playerName;
+        }
+        
+        public UUID getUuid() { return uuid; }
+        public String getPlayerName() { return playerName; }
+        public int getKills() { return kills.get(); }
+        public int getDeaths() { return deaths.get(); }
+        public Outcome getOutcome() { return outcome; }
+        public long getDamageDealt() { return Math.round(damageDealt.sum() / 100.0); }
+        public long getDamageTaken() { return Math.round(damageTaken.sum() / 100.0); }
+        public long getItemsReceived() { return itemsReceived.sum(); }
+        public long getTntThrown() { return tntThrown.sum(); }
+        public long getFireballsThrown() { return fireballsThrown.sum(); }
+        public long getAirdropsOpened() { return airdropsOpened.sum(); }
+        public long getEliminatedAt() { return eliminatedAt; }
+    }
+    
+    private final String arenaName;
+    private final String mapId;
+    private final long startedAt;
+    private long endedAt = 0;
+    private UUID winnerUuid = null;
+    private String winnerName = null;
+    
+    // 比赛事件可能来自不同区域线程
+    private final Map<UUID, PlayerResult> players = new ConcurrentHashMap<>();
+    
+    public MatchResult(String arenaName, String mapId) {
+        this.arenaName = arenaName;
+        this.mapId = mapId;
+        this.startedAt = System.currentTimeMillis();
+    }
+    
+    /**
+     * 添加参与者（重复添加无影响）
+     */
+    public PlayerResult addPlayer(Player player) {
+        PlayerResult result = players.computeIfAbsent(player.getUniqueId(), uuid -> new PlayerResult(uuid, player.getName()));
+        result.playerName = player.getName();
+        return result;
+    }
+    
+    public void recordKill(Player killer) {
+        addPlayer(killer).kills.incrementAndGet();
+    }
+    
+    public void recordDeath(Player player) {
+        addPlayer(player).deaths.incrementAndGet();
+    }
+    
+    /**
+     * 获取参与者的比赛数据（不添加新玩家，用于高频事件）
+     * @return 比赛数据，不是本局参与者时返回 null
+     */
+    private PlayerResult participant(Player player) {
+        return player != null ? players.get(player.getUniqueId()) : null;
+    }
+    
+    /**
+     * 记录一次伤害
+     * @param attacker 造成伤害的玩家，没有时为 null
+     * @param victim 受到伤害的玩家，不是玩家时为 null
+     */
+    public void recordDamage(Player attacker, Player victim, double damage) {
+        long amount = Math.round(damage * 100);
+        if (amount <= 0) {
+            return;
+        }
+        PlayerResult attackerResult = participant(attacker);
+        if (attackerResult != null && attacker != victim) {
+            attackerResult.damageDealt.add(amount);
+        }
+        PlayerResult victimResult = participant(victim);
+        if (victimResult != null) {
+            victimResult.damageTaken.add(amount);
+        }
+    }
+    
+    public void recordItemReceived(Player player) {
+        PlayerResult result = participant(player);
+        if (result != null) {
+            result.itemsReceived.increment();
+        }
+    }
+    
+    public void recordTntThrown(Player player) {
+        PlayerResult result = participant(player);
+        if (result != null) {
+            result.tntThrown.increment();
+        }
+    }
+    
+    public void recordFireballThrown(Player player) {
+        PlayerResult result = participant(player);
+        if (result != null) {
+            result.fireballsThrown.increment();
+        }
+    }
+    
+    public void recordAirdropOpened(Player player) {
+        PlayerResult result = participant(player);
+        if (result != null) {
+            result.airdropsOpened.increment();
+        }
+    }
+    
+    /**
+     * 记录玩家被淘汰（死亡或离开，只记录第一次）
+     */
+    public void recordEliminated(Player player) {
+        PlayerResult result = participant(player);
+        if (result != null && result.eliminatedAt == 0) {
+            result.eliminatedAt = System.currentTimeMillis();
+        }
+    }
+    
+    /**
+     * 获取玩家在本局中的存活时间（毫秒），存活到比赛结束的玩家按比赛时长计算
+     */
+    public long getTimeSurvived(PlayerResult result) {
+        long until = result.eliminatedAt > 0 ? Math.min(result.eliminatedAt, endedAt) : endedAt;
+        return Math.max(0L, until - startedAt);
+    }
+    
+    /**
+     * 结束比赛并设置结果
+     * @param winner 胜利者，没有胜利者时为 null
+     * @param losers 失败者（未列出的参与者视为中途离开）
+     */
+    public void finish(Player winner, Collection<Player> losers) {
+        for (Player loser : losers) {
+            addPlayer(loser).outcome = Outcome.LOSS;
+        }
+        if (winner != null) {
+            addPlayer(winner).outcome = Outcome.WIN;
+            winnerUuid = winner.getUniqueId();
+            winnerName = winner.getName();
+        }
+        endedAt = System.currentTimeMillis();
+    }
+    
+    public String getArenaName() { return arenaName; }
+    public String getMapId() { return mapId; }
+    public long getStartedAt() { return startedAt; }
+    public long getEndedAt() { return endedAt; }
+    public long getDurationMillis() { return Math.max(0L, endedAt - startedAt); }
+    public UUID getWinnerUuid() { return winnerUuid; }
+    public String getWinnerName() { return winnerName; }
+    
+    public Collection<PlayerResult> getPlayers() {
+        return Collections.unmodifiableCollection(players.values());
+    }
+    
+    /**
+     * 将某个玩家的比赛数据转换为统计增量
+     */
+    public StatsWriteJournal.Delta toDelta(PlayerResult result) {
+        StatsWriteJournal.Delta delta = new StatsWriteJournal.Delta(result.getPlayerName());
+        delta.addMatch(result.getKills(), result.getDeaths(),
+            result.getOutcome() == Outcome.WIN, result.getOutcome() == Outcome.LOSS, endedAt);
+        return delta;
+    }
+}
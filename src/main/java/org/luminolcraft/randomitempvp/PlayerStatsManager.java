@@ -1,27 +1,154 @@
 package org.luminolcraft.randomitempvp;
 
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.plugin.java.JavaPlugin;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
+import java.io.File;
+import java.io.IOException;
 import java.sql.SQLException;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 /**
  * 玩家统计数据管理器
  */
-public class PlayerStatsManager {
+public class PlayerStatsManager implements Listener {
     private final JavaPlugin plugin;
     private final DatabaseManager database;
+    // 统计数据存储后端（数据库或本地文件）
+    private final StatsStore store;
+    private final StatsWriteJournal journal;
+    // 全体玩家排名索引（rank_* 变量从这里读取）
+    private final StatsRankIndex rankIndex = new StatsRankIndex();
+    // 排行榜快照（后台定时生成，整体替换）
+    private volatile Map<StatsRankIndex.RankType, List<PlayerStats>> leaderboards = Collections.emptyMap();
+    private final int leaderboardSize;
+    private final long leaderboardRefreshSeconds;
+    // 每日汇总的保留天数（需覆盖最长的周期，即一个月）
+    private final int dailyRetentionDays;
+    private ScheduledTask leaderboardTask = null;
+    private volatile boolean shutdown = false;
     
-    public PlayerStatsManager(JavaPlugin plugin, DatabaseManager database) {
+    // 赛季：统计同时累加到当前赛季，换季只切换赛季 ID（未启用或尚未加载时为 null）
+    private final boolean seasonsEnabled;
+    private final String initialSeason;
+    private volatile String activeSeason = null;
+    private final StatsRankIndex seasonRankIndex = new StatsRankIndex();
+    private volatile Map<StatsRankIndex.RankType, List<PlayerStats>> seasonLeaderboards = Collections.emptyMap();
+    
+    // 进服时的统计加载按短时间窗口合并为批量查询
+    private final StatsBatchLoader batchLoader;
+    // 批量导入/导出（同一时间只允许一个任务）
+    private final StatsTransfer transfer;
+    private final AtomicBoolean transferRunning = new AtomicBoolean(false);
+    
+    // 在线玩家统计缓存（PAPI 变量等从这里读取，不访问数据库）
+    private final Map<UUID, PlayerStats> statsCache = new ConcurrentHashMap<>();
+    // 在线玩家当前赛季的统计缓存
+    private final Map<UUID, PlayerStats> seasonCache = new ConcurrentHashMap<>();
+    private final Set<UUID> trackedPlayers = ConcurrentHashMap.newKeySet();
+    private final Set<UUID> loadingPlayers = ConcurrentHashMap.newKeySet();
+    // 进服时的名称，加载完成后与数据库中的名称比较（只在改名时写入名称）
+    private final Map<UUID, String> nameChecks = new ConcurrentHashMap<>();
+    // 保证写回日志与缓存的更新是原子的
+    private final Object deltaLock = new Object();
+    
+    public PlayerStatsManager(JavaPlugin plugin, DatabaseManager database, ConfigManager config) {
         this.plugin = plugin;
         this.database = database;
+        this.store = database.getDatabaseType() == DatabaseManager.DatabaseType.FILE
+            ? new MappedFileStatsStore(plugin, new File(plugin.getConfig().getString("database.file.path", "plugins/RandomItemPVP/stats.dat")))
+            : new JdbcStatsStore(database);
+        
+        this.seasonsEnabled = config.isSeasonsEnabled();
+        this.initialSeason = config.getInitialSeasonId();
+        
+        // 写回日志：击杀/死亡/胜负先在内存中合并，再批量写入数据库（刷新时计入当时的赛季）
+        this.journal = new StatsWriteJournal(plugin, database, store, () -> activeSeason,
+            config.getWriteBehindFlushDelay(), config.getWriteBehindMaxBatchSize());
+        this.leaderboardSize = Math.max(1, config.getLeaderboardSize());
+        this.leaderboardRefreshSeconds = config.getLeaderboardRefreshInterval();
+        this.dailyRetentionDays = Math.max(31, config.getDailyStatsRetentionDays());
+        this.batchLoader = new StatsBatchLoader(plugin, database,
+            config.getStatsLoadBatchWindow(), config.getStatsLoadMaxBatchSize(), this::loadStatsBatch);
+        this.transfer = new StatsTransfer(plugin, store, journal.getFlushLock(),
+            config.getStatsTransferBatchSize(), config.getStatsTransferProgressInterval());
+        
+        // 数据库在后台连接：连接完成后再启动写回日志和定时任务（在启动缓冲中的任务之前执行）
+        database.onReady(connected -> {
+            if (shutdown) {
+                return; // 连接完成前插件已被禁用
+            }
+            // 先确定当前赛季，再开始刷新写回日志（就绪回调执行时 isReady() 尚未返回 true）
+            if (seasonsEnabled && connected) {
+                loadActiveSeason();
+            }
+            journal.start();
+            
+            // 按配置将 player_stats 的 UUID 在线迁移为二进制存储（本地文件存储不适用）
+            if (store.isLocal()) {
+                // 本地文件中的 UUID 本身就是二进制存储
+            } else if (database.isBinaryUuidRequested() && !database.isBinaryUuids()) {
+                UuidStorageMigration migration = new UuidStorageMigration(plugin, database, journal.getFlushLock(),
+                    config.getUuidMigrationChunkSize(), config.getUuidMigrationChunkDelay());
+                Bukkit.getAsyncScheduler().runNow(plugin, task -> migration.run());
+            } else if (!database.isBinaryUuidRequested() && database.isBinaryUuids()) {
+                plugin.getLogger().warning("player_stats 已使用二进制 UUID 存储，不支持转换回文本存储，将继续使用二进制存储");
+            }
+            
+            startLeaderboardTask();
+            pruneDailyStats();
+            buildNameIndex();
+        });
+        
+        // 连接完成前进入数据库的启动缓冲
+        loadRankIndex();
+    }
+    
+    /**
+     * 读取当前赛季 ID，尚未设置时使用配置中的初始赛季
+     */
+    private void loadActiveSeason() {
+        try {
+            String season = store.getActiveSeason();
+            if (season == null) {
+                season = initialSeason;
+                store.setActiveSeason(season);
+                plugin.getLogger().info("已开始第一个赛季：" + season);
+            }
+            activeSeason = season;
+        } catch (SQLException e) {
+            database.logFailure("读取当前赛季失败，本次运行期间赛季统计不会更新！", e);
+        }
+    }
+    
+    /**
+     * 数据库是否已就绪（未就绪时统计数据、排名和排行榜为空，相关操作在就绪后执行）
+     */
+    public boolean isDatabaseReady() {
+        return database.isReady();
     }
     
     /**
@@ -36,6 +163,14 @@ public class PlayerStatsManager {
         private int deaths;
         private int gamesPlayed;
         private long lastPlayed;
+        // 战斗数据（只有总榜记录，赛季和周期排行榜中为 0）
+        private long damageDealt;
+        private long damageTaken;
+        private long itemsReceived;
+        private long tntThrown;
+        private long fireballsThrown;
+        private long airdropsOpened;
+        private long timeSurvived; // 秒
         
         public PlayerStats(UUID uuid, String playerName) {
             this.uuid = uuid;
@@ -57,6 +192,20 @@ public class PlayerStatsManager {
         public void setGamesPlayed(int games) { this.gamesPlayed = games; }
         public long getLastPlayed() { return lastPlayed; }
         public void setLastPlayed(long time) { this.lastPlayed = time; }
+        public long getDamageDealt() { return damageDealt; }
+        public void setDamageDealt(long damage) { this.damageDealt = damage; }
+        public long getDamageTaken() { return damageTaken; }
+        public void setDamageTaken(long damage) { this.damageTaken = damage; }
+        public long getItemsReceived() { return itemsReceived; }
+        public void setItemsReceived(long items) { this.itemsReceived = items; }
+        public long getTntThrown() { return tntThrown; }
+        public void setTntThrown(long count) { this.tntThrown = count; }
+        public long getFireballsThrown() { return fireballsThrown; }
+        public void setFireballsThrown(long count) { this.fireballsThrown = count; }
+        public long getAirdropsOpened() { return airdropsOpened; }
+        public void setAirdropsOpened(long count) { this.airdropsOpened = count; }
+        public long getTimeSurvived() { return timeSurvived; }
+        public void setTimeSurvived(long seconds) { this.timeSurvived = seconds; }
         
         /**
          * 计算 KD 比率
@@ -77,317 +226,895 @@ public class PlayerStatsManager {
             }
             return (double) wins / gamesPlayed * 100;
         }
+        
+        /**
+         * 叠加一局比赛的战斗数据
+         */
+        public void applyCombat(MatchResult match, MatchResult.PlayerResult result) {
+            this.damageDealt += result.getDamageDealt();
+            this.damageTaken += result.getDamageTaken();
+            this.itemsReceived += result.getItemsReceived();
+            this.tntThrown += result.getTntThrown();
+            this.fireballsThrown += result.getFireballsThrown();
+            this.airdropsOpened += result.getAirdropsOpened();
+            this.timeSurvived += match.getTimeSurvived(result) / 1000;
+        }
+        
+        /**
+         * 叠加一个统计增量
+         */
+        public void apply(StatsWriteJournal.Delta delta) {
+            if (delta.getPlayerName() != null) {
+                this.playerName = delta.getPlayerName();
+            }
+            this.wins += delta.getWins();
+            this.losses += delta.getLosses();
+            this.kills += delta.getKills();
+            this.deaths += delta.getDeaths();
+            this.gamesPlayed += delta.getGamesPlayed();
+            this.lastPlayed = Math.max(this.lastPlayed, delta.getLastPlayed());
+        }
+    }
+    
+    /**
+     * 比赛记录条目
+     */
+    public static class MatchHistoryEntry {
+        private final long matchId;
+        private final String arenaName;
+        private final String mapId;
+        private final String winnerName;
+        private final int playerCount;
+        private final long endedAt;
+        private final long duration;
+        // 以下字段仅在查询某个玩家的记录时有效
+        private final int kills;
+        private final int deaths;
+        private final MatchResult.Outcome outcome;
+        
+        public MatchHistoryEntry(long matchId, String arenaName, String mapId, String winnerName, int playerCount,
+                                 long endedAt, long duration, int kills, int deaths, MatchResult.Outcome outcome) {
+            this.matchId = matchId;
+            this.arenaName = arenaName;
+            this.mapId = mapId;
+            this.winnerName = winnerName;
+            this.playerCount = playerCount;
+            this.endedAt = endedAt;
+            this.duration = duration;
+            this.kills = kills;
+            this.deaths = deaths;
+            this.outcome = outcome;
+        }
+        
+        public long getMatchId() { return matchId; }
+        public String getArenaName() { return arenaName; }
+        public String getMapId() { return mapId; }
+        public String getWinnerName() { return winnerName; }
+        public int getPlayerCount() { return playerCount; }
+        public long getEndedAt() { return endedAt; }
+        public long getDuration() { return duration; }
+        public int getKills() { return kills; }
+        public int getDeaths() { return deaths; }
+        public MatchResult.Outcome getOutcome() { return outcome; }
+    }
+    
+    /**
+     * 比赛记录分页游标（上一页最后一条记录的结束时间和比赛 ID）
+     */
+    public static class HistoryCursor {
+        private final long endedAt;
+        private final long matchId;
+        
+        public HistoryCursor(long endedAt, long matchId) {
+            this.endedAt = endedAt;
+            this.matchId = matchId;
+        }
+        
+        public long getEndedAt() { return endedAt; }
+        public long getMatchId() { return matchId; }
+    }
+    
+    /**
+     * 一页比赛记录
+     */
+    public static class HistoryPage {
+        private final List<MatchHistoryEntry> entries;
+        private final HistoryCursor nextCursor;
+        
+        public HistoryPage(List<MatchHistoryEntry> entries, HistoryCursor nextCursor) {
+            this.entries = entries;
+            this.nextCursor = nextCursor;
+        }
+        
+        public List<MatchHistoryEntry> getEntries() { return entries; }
+        /** 下一页的游标，没有更多记录时为 null */
+        public HistoryCursor getNextCursor() { return nextCursor; }
+        public boolean hasMore() { return nextCursor != null; }
+        
+        /**
+         * 截取一页数据，并根据多查出的一条生成下一页游标
+         */
+        public static HistoryPage of(List<MatchHistoryEntry> entries, int pageSize) {
+            if (entries.size() <= pageSize) {
+                return new HistoryPage(entries, null);
+            }
+            List<MatchHistoryEntry> page = new ArrayList<>(entries.subList(0, pageSize));
+            MatchHistoryEntry last = page.get(page.size() - 1);
+            return new HistoryPage(page, new HistoryCursor(last.getEndedAt(), last.getMatchId()));
+        }
     }
     
     /**
      * 获取玩家统计数据（异步）
+     * 在线玩家直接返回缓存中的数据，不访问数据库
      */
     public CompletableFuture<PlayerStats> getPlayerStats(UUID uuid, String playerName) {
-        return CompletableFuture.supplyAsync(() -> {
-            String selectSql = "SELECT * FROM player_stats WHERE uuid = ?";
-            String insertSql = "INSERT INTO player_stats (uuid, player_name, last_played) VALUES (?, ?, ?)";
-            
-            try (Connection conn = database.getConnection();
-                 PreparedStatement stmt = conn.prepareStatement(selectSql)) {
-                
-                stmt.setString(1, uuid.toString());
+        PlayerStats cached = statsCache.get(uuid);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        
+        return batchLoader.load(uuid, playerName);
+    }
+    
+    /**
+     * 按名称获取玩家统计数据（异步，用于查询离线玩家）
+     * 通过名称索引查找 UUID，不区分大小写
+     * @return 统计数据，找不到该玩家时为 null
+     */
+    public CompletableFuture<PlayerStats> getPlayerStatsByName(String playerName) {
+        return database.supplyAsync(() -> {
+            try {
+                return store.findPlayerByName(playerName);
+            } catch (SQLException e) {
+                database.logFailure("按名称查找玩家失败: " + playerName, e);
+                return null;
+            }
+        }).thenCompose(uuid -> uuid == null
+            ? CompletableFuture.completedFuture(null)
+            : getPlayerStats(uuid, playerName));
+    }
+    
+    /**
+     * 获取缓存中的玩家统计数据（不阻塞，不访问数据库）
+     * @return 统计数据，如果玩家不在线或尚未加载完成则返回 null
+     */
+    public PlayerStats getCachedStats(UUID uuid) {
+        return statsCache.get(uuid);
+    }
+    
+    /**
+     * 异步加载玩家统计数据到缓存（玩家加入时调用）
+     */
+    public void loadIntoCache(UUID uuid, String playerName) {
+        trackedPlayers.add(uuid);
+        if (statsCache.containsKey(uuid) || !loadingPlayers.add(uuid)) {
+            return; // 已缓存或正在加载
+        }
+        
+        // 加载完成后由 loadStatsBatch 放入缓存
+        batchLoader.load(uuid, playerName)
+            .whenComplete((result, error) -> loadingPlayers.remove(uuid)); // 包括任务被拒绝的情况
+    }
+    
+    /**
+     * 为所有在线玩家加载缓存（插件启用或重载时调用）
+     */
+    public void loadOnlinePlayers() {
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            loadIntoCache(player.getUniqueId(), player.getName());
+        }
+    }
+    
+    /**
+     * 异步加载全体玩家的排名索引（启动时调用一次，之后只做增量更新）
+     * 读取期间持有日志的刷新锁，并叠加尚未写入的增量
+     */
+    public void loadRankIndex() {
+        database.runAsync(() -> {
+            journal.getFlushLock().lock();
+            try {
+                Map<UUID, int[]> data = store.loadRankTotals(null);
                 
-                try (ResultSet rs = stmt.executeQuery()) {
-                    PlayerStats stats = new PlayerStats(uuid, playerName);
-                    
-                    if (rs.next()) {
-                        // 玩家数据存在，读取
-                        stats.setPlayerName(rs.getString("player_name"));
-                        stats.setWins(rs.getInt("wins"));
-                        stats.setLosses(rs.getInt("losses"));
-                        stats.setKills(rs.getInt("kills"));
-                        stats.setDeaths(rs.getInt("deaths"));
-                        stats.setGamesPlayed(rs.getInt("games_played"));
-                        stats.setLastPlayed(rs.getLong("last_played"));
-                    } else {
-                        // 新玩家，直接在当前连接中初始化数据（避免嵌套异步导致死锁）
-                        try (PreparedStatement insertStmt = conn.prepareStatement(insertSql)) {
-                            insertStmt.setString(1, uuid.toString());
-                            insertStmt.setString(2, playerName);
-                            insertStmt.setLong(3, System.currentTimeMillis());
-                            insertStmt.executeUpdate();
-                        }
-                    }
-                    
-                    return stats;
+                synchronized (deltaLock) {
+                    overlayPending(data);
+                    rankIndex.load(data);
                 }
+                plugin.getLogger().info("排名索引已加载：" + data.size() + " 名玩家");
                 
+                String season = activeSeason;
+                if (season != null) {
+                    loadSeasonRankIndex(season);
+                }
             } catch (SQLException e) {
-                plugin.getLogger().severe("获取玩家统计数据失败：" + uuid);
-                e.printStackTrace();
-                return new PlayerStats(uuid, playerName);
+                database.logFailure("加载排名索引失败！", e);
+            } finally {
+                journal.getFlushLock().unlock();
             }
         });
     }
     
     /**
-     * 创建玩家统计数据
+     * 加载当前赛季的排名索引（调用方持有日志的刷新锁）
      */
-    private CompletableFuture<Void> createPlayerStats(UUID uuid, String playerName) {
-        String sql = "INSERT INTO player_stats (uuid, player_name, last_played) VALUES (?, ?, ?)";
-        return database.executeAsync(sql, uuid.toString(), playerName, System.currentTimeMillis());
+    private void loadSeasonRankIndex(String season) throws SQLException {
+        Map<UUID, int[]> data = store.loadRankTotals(season);
+        synchronized (deltaLock) {
+            if (!season.equals(activeSeason)) {
+                return; // 加载期间已换季
+            }
+            overlayPending(data);
+            seasonRankIndex.load(data);
+        }
     }
     
     /**
-     * 更新玩家名称
+     * 把写回日志中尚未写入的增量叠加到排名数据上（调用方持有 deltaLock）
      */
-    public CompletableFuture<Void> updatePlayerName(UUID uuid, String playerName) {
-        String sql = "UPDATE player_stats SET player_name = ? WHERE uuid = ?";
-        return database.executeAsync(sql, playerName, uuid.toString());
+    private void overlayPending(Map<UUID, int[]> data) {
+        for (Map.Entry<UUID, StatsWriteJournal.Delta> entry : journal.getPendingSnapshot().entrySet()) {
+            StatsWriteJournal.Delta delta = entry.getValue();
+            int[] values = data.computeIfAbsent(entry.getKey(), key -> new int[4]);
+            values[0] += delta.getWins();
+            values[1] += delta.getKills();
+            values[2] += delta.getDeaths();
+            values[3] += delta.getGamesPlayed();
+        }
     }
     
     /**
-     * 记录玩家胜利
+     * 获取玩家排名（不阻塞，不访问数据库）
+     * @return 排名（从 1 开始），如果玩家未上榜或索引尚未加载则返回 0
      */
-    public CompletableFuture<Void> recordWin(Player player) {
-        return CompletableFuture.runAsync(() -> {
-            UUID uuid = player.getUniqueId();
-            String playerName = player.getName();
-            long now = System.currentTimeMillis();
-            
-            // 使用 UPSERT 确保数据存在（直接在当前连接中执行）
-            String sql;
-            if (database.getDatabaseType() == DatabaseManager.DatabaseType.SQLITE) {
-                sql = "INSERT INTO player_stats (uuid, player_name, wins, games_played, last_played) VALUES (?, ?, 1, 1, ?) " +
-                      "ON CONFLICT(uuid) DO UPDATE SET wins = wins + 1, games_played = games_played + 1, player_name = ?, last_played = ?";
-            } else {
-                sql = "INSERT INTO player_stats (uuid, player_name, wins, games_played, last_played) VALUES (?, ?, 1, 1, ?) " +
-                      "ON DUPLICATE KEY UPDATE wins = wins + 1, games_played = games_played + 1, player_name = ?, last_played = ?";
+    public int getRank(UUID uuid, StatsRankIndex.RankType type) {
+        return rankIndex.getRank(uuid, type);
+    }
+    
+    /**
+     * 获取玩家在当前赛季的排名（不阻塞，不访问数据库）
+     * @return 排名（从 1 开始），如果玩家未上榜、未启用赛季或索引尚未加载则返回 0
+     */
+    public int getSeasonRank(UUID uuid, StatsRankIndex.RankType type) {
+        return seasonRankIndex.getRank(uuid, type);
+    }
+    
+    /**
+     * 获取当前赛季 ID
+     * @return 赛季 ID，未启用赛季或尚未加载时返回 null
+     */
+    public String getActiveSeason() {
+        return activeSeason;
+    }
+    
+    /**
+     * 从缓存获取玩家当前赛季的统计数据（不阻塞）
+     * @return 赛季统计数据，如果不在缓存中或未启用赛季则返回 null
+     */
+    public PlayerStats getCachedSeasonStats(UUID uuid) {
+        return seasonCache.get(uuid);
+    }
+    
+    @EventHandler
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        Player player = event.getPlayer();
+        nameChecks.put(player.getUniqueId(), player.getName());
+        loadIntoCache(player.getUniqueId(), player.getName());
+    }
+    
+    @EventHandler
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        UUID uuid = event.getPlayer().getUniqueId();
+        // 玩家离开后移出缓存（未写入的增量仍保留在写回日志中）
+        nameChecks.remove(uuid);
+        synchronized (deltaLock) {
+            trackedPlayers.remove(uuid);
+            statsCache.remove(uuid);
+            seasonCache.remove(uuid);
+        }
+    }
+    
+    /**
+     * 玩家进服时的名称与数据库中的不同时（改名后第一次进服），更新名称和名称索引
+     * 由 loadStatsBatch 在持有刷新锁时调用
+     */
+    private void updateChangedNames(Collection<PlayerStats> loaded) {
+        for (PlayerStats stats : loaded) {
+            String joinName = nameChecks.remove(stats.getUuid());
+            if (joinName == null || joinName.equals(stats.getPlayerName())) {
+                continue;
             }
-            
-            try (Connection conn = database.getConnection();
-                 PreparedStatement stmt = conn.prepareStatement(sql)) {
-                stmt.setString(1, uuid.toString());
-                stmt.setString(2, playerName);
-                stmt.setLong(3, now);
-                stmt.setString(4, playerName);
-                stmt.setLong(5, now);
-                stmt.executeUpdate();
+            try {
+                store.updatePlayerName(stats.getUuid(), joinName);
+                stats.setPlayerName(joinName);
             } catch (SQLException e) {
-                plugin.getLogger().severe("记录玩家胜利失败：" + playerName);
-                e.printStackTrace();
+                database.logFailure("更新玩家名称失败: " + joinName, e);
+            }
+        }
+    }
+    
+    /**
+     * 为引入名称索引之前的玩家补齐名称索引（后台执行，完成后不再执行）
+     */
+    private void buildNameIndex() {
+        database.runAsync(() -> {
+            try {
+                int indexed = store.buildNameIndex();
+                if (indexed >= 0) {
+                    plugin.getLogger().info("玩家名称索引已建立：" + indexed + " 名玩家");
+                }
+            } catch (SQLException e) {
+                database.logFailure("建立玩家名称索引失败，离线玩家查询可能找不到旧玩家", e);
             }
         });
     }
     
     /**
-     * 记录玩家失败
+     * 批量读取统计数据，并叠加写回日志中尚未写入的增量（由 StatsBatchLoader 调用）
+     * 读取期间持有日志的刷新锁，避免同一增量被重复计算或遗漏；在线玩家的数据放入缓存
+     * @return 每名玩家的统计数据，读取失败时返回空数据（不放入缓存）
      */
-    public CompletableFuture<Void> recordLoss(Player player) {
-        return CompletableFuture.runAsync(() -> {
-            UUID uuid = player.getUniqueId();
-            String playerName = player.getName();
-            long now = System.currentTimeMillis();
+    private Map<UUID, PlayerStats> loadStatsBatch(Map<UUID, String> requests) {
+        journal.getFlushLock().lock();
+        try {
+            Map<UUID, PlayerStats> loaded = store.loadOrCreate(requests);
+            String season = activeSeason;
+            Map<UUID, PlayerStats> seasonLoaded = season != null
+                ? store.loadSeasonStats(season, requests.keySet()) : Collections.emptyMap();
+            updateChangedNames(loaded.values());
             
-            String sql;
-            if (database.getDatabaseType() == DatabaseManager.DatabaseType.SQLITE) {
-                sql = "INSERT INTO player_stats (uuid, player_name, losses, games_played, last_played) VALUES (?, ?, 1, 1, ?) " +
-                      "ON CONFLICT(uuid) DO UPDATE SET losses = losses + 1, games_played = games_played + 1, player_name = ?, last_played = ?";
-            } else {
-                sql = "INSERT INTO player_stats (uuid, player_name, losses, games_played, last_played) VALUES (?, ?, 1, 1, ?) " +
-                      "ON DUPLICATE KEY UPDATE losses = losses + 1, games_played = games_played + 1, player_name = ?, last_played = ?";
+            synchronized (deltaLock) {
+                for (PlayerStats stats : loaded.values()) {
+                    UUID uuid = stats.getUuid();
+                    StatsWriteJournal.Delta unflushed = journal.getPending(uuid);
+                    if (unflushed != null) {
+                        stats.apply(unflushed);
+                    }
+                    if (trackedPlayers.contains(uuid)) {
+                        statsCache.put(uuid, stats);
+                    }
+                    
+                    // 本赛季还没有记录的玩家从零开始
+                    if (season == null || !season.equals(activeSeason)) {
+                        continue;
+                    }
+                    PlayerStats seasonStats = seasonLoaded.get(uuid);
+                    if (seasonStats == null) {
+                        seasonStats = new PlayerStats(uuid, stats.getPlayerName());
+                    }
+                    if (unflushed != null) {
+                        seasonStats.apply(unflushed);
+                    }
+                    if (trackedPlayers.contains(uuid)) {
+                        seasonCache.put(uuid, seasonStats);
+                    }
+                }
             }
-            
-            try (Connection conn = database.getConnection();
-                 PreparedStatement stmt = conn.prepareStatement(sql)) {
-                stmt.setString(1, uuid.toString());
-                stmt.setString(2, playerName);
-                stmt.setLong(3, now);
-                stmt.setString(4, playerName);
-                stmt.setLong(5, now);
-                stmt.executeUpdate();
+            return loaded;
+        } catch (SQLException e) {
+            database.logFailure("加载玩家统计数据失败（" + requests.size() + " 名玩家）", e);
+            Map<UUID, PlayerStats> empty = new HashMap<>();
+            requests.forEach((uuid, name) -> empty.put(uuid, new PlayerStats(uuid, name)));
+            return empty;
+        } finally {
+            journal.getFlushLock().unlock();
+        }
+    }
+    
+    /**
+     * 更新玩家名称
+     */
+    public CompletableFuture<Void> updatePlayerName(UUID uuid, String playerName) {
+        return database.runAsync(() -> {
+            try {
+                store.updatePlayerName(uuid, playerName);
             } catch (SQLException e) {
-                plugin.getLogger().severe("记录玩家失败失败：" + playerName);
-                e.printStackTrace();
+                database.logFailure("更新玩家名称失败：" + uuid, e);
             }
         });
     }
     
+    /**
+     * 记录玩家胜利
+     */
+    public CompletableFuture<Void> recordWin(Player player) {
+        applyDelta(player.getUniqueId(), StatsWriteJournal.Delta.win(player.getName()));
+        return CompletableFuture.completedFuture(null);
+    }
+    
+    /**
+     * 记录玩家失败
+     */
+    public CompletableFuture<Void> recordLoss(Player player) {
+        applyDelta(player.getUniqueId(), StatsWriteJournal.Delta.loss(player.getName()));
+        return CompletableFuture.completedFuture(null);
+    }
+    
     /**
      * 记录玩家击杀
      */
     public CompletableFuture<Void> recordKill(Player player) {
-        return CompletableFuture.runAsync(() -> {
-            UUID uuid = player.getUniqueId();
-            String playerName = player.getName();
-            long now = System.currentTimeMillis();
-            
-            String sql;
-            if (database.getDatabaseType() == DatabaseManager.DatabaseType.SQLITE) {
-                sql = "INSERT INTO player_stats (uuid, player_name, kills, last_played) VALUES (?, ?, 1, ?) " +
-                      "ON CONFLICT(uuid) DO UPDATE SET kills = kills + 1, player_name = ?, last_played = ?";
+        applyDelta(player.getUniqueId(), StatsWriteJournal.Delta.kill(player.getName()));
+        return CompletableFuture.completedFuture(null);
+    }
+    
+    /**
+     * 记录玩家死亡
+     */
+    public CompletableFuture<Void> recordDeath(Player player) {
+        applyDelta(player.getUniqueId(), StatsWriteJournal.Delta.death(player.getName()));
+        return CompletableFuture.completedFuture(null);
+    }
+    
+    /**
+     * 记录增量：写入写回日志，同时更新在线玩家的缓存
+     */
+    private void applyDelta(UUID uuid, StatsWriteJournal.Delta delta) {
+        synchronized (deltaLock) {
+            applyToCaches(uuid, delta);
+            journal.record(uuid, delta);
+        }
+    }
+    
+    /**
+     * 把增量应用到缓存和排名索引（调用方持有 deltaLock）
+     */
+    private void applyToCaches(UUID uuid, StatsWriteJournal.Delta delta) {
+        PlayerStats cached = statsCache.get(uuid);
+        if (cached != null) {
+            cached.apply(delta);
+        }
+        rankIndex.apply(uuid, delta);
+        if (activeSeason != null) {
+            PlayerStats seasonStats = seasonCache.get(uuid);
+            if (seasonStats != null) {
+                seasonStats.apply(delta);
+            }
+            seasonRankIndex.apply(uuid, delta);
+        }
+    }
+    
+    /**
+     * 提交一局比赛的结果（异步）
+     * player_stats 的累加（包括本局的战斗数据）和 match_history/match_players 的插入在同一个事务中完成，
+     * 提交期间持有日志的刷新锁，成功后再更新缓存和排名索引
+     */
+    public CompletableFuture<Void> commitMatch(MatchResult match) {
+        Map<UUID, StatsWriteJournal.Delta> deltas = new LinkedHashMap<>();
+        for (MatchResult.PlayerResult result : match.getPlayers()) {
+            deltas.put(result.getUuid(), match.toDelta(result));
+        }
+        // 增量是否已经处理（已提交到数据库或已转入写回日志），防止失败处理时重复累加
+        AtomicBoolean handled = new AtomicBoolean(false);
+        
+        return database.runAsync(() -> {
+            journal.getFlushLock().lock();
+            try {
+                // 本地暂存中还有未重放的数据时先重放，保证统计按顺序写入
+                if (journal.hasSpooled()) {
+                    journal.flush();
+                }
+                if (journal.hasSpooled()) {
+                    plugin.getLogger().warning("数据库暂时不可用，比赛记录（房间 " + match.getArenaName() + "）未保存，统计数据已转入本地暂存");
+                    handled.set(true);
+                    deltas.forEach(this::applyDelta);
+                    return;
+                }
+                store.commitMatch(activeSeason, match, deltas);
+                handled.set(true);
+                synchronized (deltaLock) {
+                    deltas.forEach(this::applyToCaches);
+                    // 本地文件存储不保存战斗数据
+                    if (!store.isLocal()) {
+                        for (MatchResult.PlayerResult result : match.getPlayers()) {
+                            PlayerStats cached = statsCache.get(result.getUuid());
+                            if (cached != null) {
+                                cached.applyCombat(match, result);
+                            }
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                database.logFailure("提交比赛结果失败（房间 " + match.getArenaName() + "），统计数据将转入写回日志重试", e);
+                handled.set(true);
+                deltas.forEach(this::applyDelta);
+            } finally {
+                journal.getFlushLock().unlock();
+            }
+        }).exceptionally(error -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (handled.compareAndSet(false, true)) {
+                // 数据库队列已满或提交时出现其他异常，统计数据转入写回日志（比赛记录不保存）
+                if (!(cause instanceof RejectedExecutionException)) {
+                    plugin.getLogger().severe("提交比赛结果失败（房间 " + match.getArenaName() + "），统计数据将转入写回日志重试");
+                    cause.printStackTrace();
+                }
+                deltas.forEach(this::applyDelta);
             } else {
-                sql = "INSERT INTO player_stats (uuid, player_name, kills, last_played) VALUES (?, ?, 1, ?) " +
-                      "ON DUPLICATE KEY UPDATE kills = kills + 1, player_name = ?, last_played = ?";
+                // 统计数据已经写入数据库或写回日志，只有之后的缓存更新失败
+                plugin.getLogger().severe("比赛统计已保存，但更新统计缓存失败（房间 " + match.getArenaName() + "）");
+                cause.printStackTrace();
             }
-            
-            try (Connection conn = database.getConnection();
-                 PreparedStatement stmt = conn.prepareStatement(sql)) {
-                stmt.setString(1, uuid.toString());
-                stmt.setString(2, playerName);
-                stmt.setLong(3, now);
-                stmt.setString(4, playerName);
-                stmt.setLong(5, now);
-                stmt.executeUpdate();
+            return null;
+        });
+    }
+    
+    /**
+     * 分页查询某个玩家的比赛记录（按结束时间倒序，异步）
+     * 使用 (uuid, ended_at, match_id) 键集分页，不使用 OFFSET
+     * @param after 上一页返回的游标，第一页传 null
+     */
+    public CompletableFuture<HistoryPage> getPlayerHistory(UUID uuid, HistoryCursor after, int pageSize) {
+        return database.supplyAsync(() -> {
+            try {
+                return store.getPlayerHistory(uuid, after, pageSize);
             } catch (SQLException e) {
-                plugin.getLogger().severe("记录玩家击杀失败：" + playerName);
-                e.printStackTrace();
+                database.logFailure("查询玩家比赛记录失败：" + uuid, e);
+                return new HistoryPage(new ArrayList<>(), null);
             }
         });
     }
     
     /**
-     * 记录玩家死亡
+     * 分页查询全服比赛记录（按结束时间倒序，异步）
+     * 使用 (ended_at, id) 键集分页，不使用 OFFSET
+     * @param after 上一页返回的游标，第一页传 null
      */
-    public CompletableFuture<Void> recordDeath(Player player) {
-        return CompletableFuture.runAsync(() -> {
-            UUID uuid = player.getUniqueId();
-            String playerName = player.getName();
-            long now = System.currentTimeMillis();
-            
-            String sql;
-            if (database.getDatabaseType() == DatabaseManager.DatabaseType.SQLITE) {
-                sql = "INSERT INTO player_stats (uuid, player_name, deaths, last_played) VALUES (?, ?, 1, ?) " +
-                      "ON CONFLICT(uuid) DO UPDATE SET deaths = deaths + 1, player_name = ?, last_played = ?";
-            } else {
-                sql = "INSERT INTO player_stats (uuid, player_name, deaths, last_played) VALUES (?, ?, 1, ?) " +
-                      "ON DUPLICATE KEY UPDATE deaths = deaths + 1, player_name = ?, last_played = ?";
+    public CompletableFuture<HistoryPage> getServerHistory(HistoryCursor after, int pageSize) {
+        return database.supplyAsync(() -> {
+            try {
+                return store.getServerHistory(after, pageSize);
+            } catch (SQLException e) {
+                database.logFailure("查询全服比赛记录失败！", e);
+                return new HistoryPage(new ArrayList<>(), null);
             }
+        });
+    }
+    
+    /**
+     * 导出全部统计数据和比赛记录到文件（在异步线程中执行）
+     * 导出前先刷新写回日志；导出期间产生的新数据不包含在文件中
+     * @param progress 进度消息（在异步线程中调用）
+     */
+    public CompletableFuture<StatsTransfer.Result> exportStats(File file, Consumer<String> progress) {
+        return runTransfer(() -> {
+            journal.flush();
+            return transfer.exportTo(file, progress);
+        }, "导出统计数据失败：" + file.getPath());
+    }
+    
+    /**
+     * 从文件导入统计数据和比赛记录（在异步线程中执行，累加到已有数据上）
+     * 完成后重新加载排名索引、在线玩家缓存和排行榜
+     * @param progress 进度消息（在异步线程中调用）
+     */
+    public CompletableFuture<StatsTransfer.Result> importStats(File file, Consumer<String> progress) {
+        return runTransfer(() -> {
+            StatsTransfer.Result result = transfer.importFrom(file, progress);
             
-            try (Connection conn = database.getConnection();
-                 PreparedStatement stmt = conn.prepareStatement(sql)) {
-                stmt.setString(1, uuid.toString());
-                stmt.setString(2, playerName);
-                stmt.setLong(3, now);
-                stmt.setString(4, playerName);
-                stmt.setLong(5, now);
-                stmt.executeUpdate();
+            loadRankIndex();
+            List<PlayerStats> cached;
+            synchronized (deltaLock) {
+                cached = new ArrayList<>(statsCache.values());
+                statsCache.clear();
+                seasonCache.clear();
+            }
+            for (PlayerStats stats : cached) {
+                loadIntoCache(stats.getUuid(), stats.getPlayerName());
+            }
+            if (leaderboardTask != null) {
+                refreshLeaderboards();
+            }
+            return result;
+        }, "导入统计数据失败：" + file.getPath());
+    }
+    
+    /**
+     * 导入/导出任务
+     */
+    private interface TransferTask {
+        StatsTransfer.Result run() throws IOException, SQLException;
+    }
+    
+    private CompletableFuture<StatsTransfer.Result> runTransfer(TransferTask task, String failureMessage) {
+        CompletableFuture<StatsTransfer.Result> future = new CompletableFuture<>();
+        if (!database.isReady()) {
+            future.completeExceptionally(new IllegalStateException("数据库尚未就绪"));
+            return future;
+        }
+        if (!transferRunning.compareAndSet(false, true)) {
+            future.completeExceptionally(new IllegalStateException("已有导入或导出任务正在执行"));
+            return future;
+        }
+        
+        Bukkit.getAsyncScheduler().runNow(plugin, scheduled -> {
+            try {
+                future.complete(task.run());
             } catch (SQLException e) {
-                plugin.getLogger().severe("记录玩家死亡失败：" + playerName);
+                database.logFailure(failureMessage, e);
+                future.completeExceptionally(e);
+            } catch (IOException | RuntimeException e) {
+                plugin.getLogger().severe(failureMessage);
                 e.printStackTrace();
+                future.completeExceptionally(e);
+            } finally {
+                transferRunning.set(false);
             }
         });
+        return future;
+    }
+    
+    /**
+     * 关闭统计管理器，将写回日志中剩余的数据同步写入数据库
+     */
+    public void shutdown() {
+        shutdown = true;
+        if (leaderboardTask != null) {
+            leaderboardTask.cancel();
+            leaderboardTask = null;
+        }
+        journal.shutdown();
+        store.close();
+    }
+    
+    /**
+     * 获取本地暂存中等待重放的统计增量条数
+     */
+    public long getSpooledCount() {
+        return journal.getSpooledCount();
     }
     
     /**
      * 获取排行榜（按胜利次数）
      */
     public CompletableFuture<List<PlayerStats>> getTopWins(int limit) {
-        return CompletableFuture.supplyAsync(() -> {
-            String sql = "SELECT * FROM player_stats ORDER BY wins DESC LIMIT ?";
-            List<PlayerStats> topPlayers = new ArrayList<>();
-            
-            try (Connection conn = database.getConnection();
-                 PreparedStatement stmt = conn.prepareStatement(sql)) {
-                
-                stmt.setInt(1, limit);
-                
-                try (ResultSet rs = stmt.executeQuery()) {
-                    while (rs.next()) {
-                        UUID uuid = UUID.fromString(rs.getString("uuid"));
-                        String name = rs.getString("player_name");
-                        PlayerStats stats = new PlayerStats(uuid, name);
-                        stats.setWins(rs.getInt("wins"));
-                        stats.setLosses(rs.getInt("losses"));
-                        stats.setKills(rs.getInt("kills"));
-                        stats.setDeaths(rs.getInt("deaths"));
-                        stats.setGamesPlayed(rs.getInt("games_played"));
-                        stats.setLastPlayed(rs.getLong("last_played"));
-                        topPlayers.add(stats);
-                    }
+        return database.supplyAsync(() -> queryTopSafely(StatsRankIndex.RankType.WINS, limit));
+    }
+    
+    /**
+     * 获取排行榜（按击杀数）
+     */
+    public CompletableFuture<List<PlayerStats>> getTopKills(int limit) {
+        return database.supplyAsync(() -> queryTopSafely(StatsRankIndex.RankType.KILLS, limit));
+    }
+    
+    /**
+     * 获取排行榜（按KD比率）
+     */
+    public CompletableFuture<List<PlayerStats>> getTopKD(int limit) {
+        return database.supplyAsync(() -> queryTopSafely(StatsRankIndex.RankType.KD, limit));
+    }
+    
+    /**
+     * 获取排行榜快照（不阻塞，不访问数据库）
+     * @return 排行榜前 N 名，快照尚未生成时返回空列表
+     */
+    public List<PlayerStats> getLeaderboard(StatsRankIndex.RankType type) {
+        return leaderboards.getOrDefault(type, Collections.emptyList());
+    }
+    
+    /**
+     * 排行榜快照是否已生成
+     */
+    public boolean isLeaderboardReady() {
+        return !leaderboards.isEmpty();
+    }
+    
+    /**
+     * 启动排行榜快照的定时刷新任务
+     */
+    private void startLeaderboardTask() {
+        long interval = Math.max(5L, leaderboardRefreshSeconds);
+        leaderboardTask = Bukkit.getAsyncScheduler().runAtFixedRate(plugin, task -> refreshLeaderboards(),
+            1L, interval, TimeUnit.SECONDS);
+    }
+    
+    /**
+     * 重新生成所有排行榜快照，生成完成后整体替换
+     * 先刷新写回日志，使快照包含最近的对局数据
+     */
+    public void refreshLeaderboards() {
+        journal.flush();
+        
+        Map<StatsRankIndex.RankType, List<PlayerStats>> snapshot = new EnumMap<>(StatsRankIndex.RankType.class);
+        try {
+            for (StatsRankIndex.RankType type : StatsRankIndex.RankType.values()) {
+                snapshot.put(type, Collections.unmodifiableList(store.queryTop(null, type, leaderboardSize)));
+            }
+        } catch (SQLException e) {
+            database.logFailure("刷新排行榜失败，继续使用上一次的数据！", e);
+            return;
+        }
+        leaderboards = Collections.unmodifiableMap(snapshot);
+        
+        if (seasonsEnabled && activeSeason != null) {
+            refreshSeasonLeaderboards();
+        }
+    }
+    
+    /**
+     * 重新生成当前赛季的排行榜快照
+     * 同时检查其他服务器是否已切换赛季（多服共用数据库时）
+     */
+    private void refreshSeasonLeaderboards() {
+        Map<StatsRankIndex.RankType, List<PlayerStats>> snapshot = new EnumMap<>(StatsRankIndex.RankType.class);
+        try {
+            String season = store.getActiveSeason();
+            if (season != null && !season.equals(activeSeason)) {
+                plugin.getLogger().info("检测到赛季已切换：" + activeSeason + " -> " + season);
+                journal.getFlushLock().lock();
+                try {
+                    flushAndSwitchSeason(season, false);
+                    loadSeasonRankIndex(season);
+                } finally {
+                    journal.getFlushLock().unlock();
                 }
-                
+            }
+            for (StatsRankIndex.RankType type : StatsRankIndex.RankType.values()) {
+                snapshot.put(type, Collections.unmodifiableList(store.queryTop(activeSeason, type, leaderboardSize)));
+            }
+        } catch (SQLException e) {
+            database.logFailure("刷新赛季排行榜失败，继续使用上一次的数据！", e);
+            return;
+        }
+        seasonLeaderboards = Collections.unmodifiableMap(snapshot);
+    }
+    
+    /**
+     * 获取当前赛季的排行榜快照（不阻塞，不访问数据库）
+     * @return 排行榜前 N 名，快照尚未生成或未启用赛季时返回空列表
+     */
+    public List<PlayerStats> getSeasonLeaderboard(StatsRankIndex.RankType type) {
+        return seasonLeaderboards.getOrDefault(type, Collections.emptyList());
+    }
+    
+    /**
+     * 查询任意赛季的排行榜（异步，用于查看往届赛季）
+     */
+    public CompletableFuture<List<PlayerStats>> getSeasonTop(String season, StatsRankIndex.RankType type, int limit) {
+        return database.supplyAsync(() -> {
+            try {
+                return store.queryTop(season, type, limit);
             } catch (SQLException e) {
-                plugin.getLogger().severe("获取排行榜失败！");
-                e.printStackTrace();
+                database.logFailure("获取赛季排行榜失败：" + season, e);
+                return new ArrayList<>();
             }
-            
-            return topPlayers;
         });
     }
     
     /**
-     * 获取排行榜（按击杀数）
+     * 列出所有有统计数据的赛季（异步）
      */
-    public CompletableFuture<List<PlayerStats>> getTopKills(int limit) {
-        return CompletableFuture.supplyAsync(() -> {
-            String sql = "SELECT * FROM player_stats ORDER BY kills DESC LIMIT ?";
-            List<PlayerStats> topPlayers = new ArrayList<>();
-            
-            try (Connection conn = database.getConnection();
-                 PreparedStatement stmt = conn.prepareStatement(sql)) {
-                
-                stmt.setInt(1, limit);
-                
-                try (ResultSet rs = stmt.executeQuery()) {
-                    while (rs.next()) {
-                        UUID uuid = UUID.fromString(rs.getString("uuid"));
-                        String name = rs.getString("player_name");
-                        PlayerStats stats = new PlayerStats(uuid, name);
-                        stats.setWins(rs.getInt("wins"));
-                        stats.setLosses(rs.getInt("losses"));
-                        stats.setKills(rs.getInt("kills"));
-                        stats.setDeaths(rs.getInt("deaths"));
-                        stats.setGamesPlayed(rs.getInt("games_played"));
-                        stats.setLastPlayed(rs.getLong("last_played"));
-                        topPlayers.add(stats);
-                    }
+    public CompletableFuture<List<String>> listSeasons() {
+        return database.supplyAsync(() -> {
+            try {
+                return store.listSeasons();
+            } catch (SQLException e) {
+                database.logFailure("获取赛季列表失败！", e);
+                return new ArrayList<>();
+            }
+        });
+    }
+    
+    /**
+     * 开始新赛季（异步）
+     * 只切换赛季 ID：往届赛季的数据原样保留，新赛季的记录在玩家第一次产生统计时创建。
+     * 切换前先把写回日志写入旧赛季；本地暂存中还有数据时拒绝切换，避免旧赛季的数据计入新赛季
+     */
+    public CompletableFuture<Void> rolloverSeason(String season) {
+        if (!seasonsEnabled) {
+            return CompletableFuture.failedFuture(new IllegalStateException("赛季功能未启用"));
+        }
+        if (!season.matches("[A-Za-z0-9_-]{1,32}")) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("赛季 ID 只能包含字母、数字、下划线和连字符（最多 32 个字符）"));
+        }
+        if (!database.isReady()) {
+            return CompletableFuture.failedFuture(new IllegalStateException("数据库尚未就绪"));
+        }
+        
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        database.runAsync(() -> {
+            journal.getFlushLock().lock();
+            try {
+                if (season.equals(activeSeason)) {
+                    throw new IllegalStateException("当前已经是赛季 " + season);
                 }
-                
+                String previous = activeSeason;
+                if (!flushAndSwitchSeason(season, true)) {
+                    throw new IllegalStateException("本地暂存中还有未写入的统计数据，请在数据库恢复后再切换赛季");
+                }
+                plugin.getLogger().info("赛季已切换：" + previous + " -> " + season);
+                future.complete(null);
             } catch (SQLException e) {
-                plugin.getLogger().severe("获取排行榜失败！");
-                e.printStackTrace();
+                database.logFailure("切换赛季失败！", e);
+                future.completeExceptionally(e);
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            } finally {
+                journal.getFlushLock().unlock();
             }
-            
-            return topPlayers;
+        }).exceptionally(error -> {
+            future.completeExceptionally(error);
+            return null;
         });
+        return future;
     }
     
     /**
-     * 获取排行榜（按KD比率）
+     * 写入旧赛季的增量并切换到新赛季（调用方持有日志的刷新锁）
+     * deltaLock 内只封存旧赛季的增量并切换内存中的赛季，不访问数据库，不阻塞记录击杀/胜负的线程；
+     * 封存的增量之后按旧赛季写入（失败时保留在日志中或转入本地暂存，仍按旧赛季重试）
+     * @param persist 是否把新赛季写入数据库（其他服务器已切换时为 false）
+     * @return 是否已切换（主动切换时本地暂存中还有未写入的数据则不切换）
      */
-    public CompletableFuture<List<PlayerStats>> getTopKD(int limit) {
-        return CompletableFuture.supplyAsync(() -> {
-            // 需要至少10场游戏才能上榜（避免只打1场就上榜）
-            String sql = "SELECT * FROM player_stats WHERE games_played >= 10 ORDER BY (CAST(kills AS REAL) / NULLIF(deaths, 0)) DESC LIMIT ?";
-            if (database.getDatabaseType() == DatabaseManager.DatabaseType.MYSQL) {
-                sql = "SELECT * FROM player_stats WHERE games_played >= 10 ORDER BY (kills / NULLIF(deaths, 0)) DESC LIMIT ?";
+    private boolean flushAndSwitchSeason(String season, boolean persist) throws SQLException {
+        journal.flush();
+        if (persist) {
+            if (journal.hasSpooled()) {
+                return false;
             }
-            
-            List<PlayerStats> topPlayers = new ArrayList<>();
-            
-            try (Connection conn = database.getConnection();
-                 PreparedStatement stmt = conn.prepareStatement(sql)) {
-                
-                stmt.setInt(1, limit);
-                
-                try (ResultSet rs = stmt.executeQuery()) {
-                    while (rs.next()) {
-                        UUID uuid = UUID.fromString(rs.getString("uuid"));
-                        String name = rs.getString("player_name");
-                        PlayerStats stats = new PlayerStats(uuid, name);
-                        stats.setWins(rs.getInt("wins"));
-                        stats.setLosses(rs.getInt("losses"));
-                        stats.setKills(rs.getInt("kills"));
-                        stats.setDeaths(rs.getInt("deaths"));
-                        stats.setGamesPlayed(rs.getInt("games_played"));
-                        stats.setLastPlayed(rs.getLong("last_played"));
-                        topPlayers.add(stats);
-                    }
+            store.setActiveSeason(season);
+        }
+        synchronized (deltaLock) {
+            journal.seal(activeSeason);
+            switchSeason(season);
+        }
+        journal.flush();
+        return true;
+    }
+    
+    /**
+     * 在本地切换到新赛季：赛季缓存和排名索引从零开始（调用方持有日志的刷新锁）
+     */
+    private void switchSeason(String season) {
+        synchronized (deltaLock) {
+            activeSeason = season;
+            for (Map.Entry<UUID, PlayerStats> entry : seasonCache.entrySet()) {
+                entry.setValue(new PlayerStats(entry.getKey(), entry.getValue().getPlayerName()));
+            }
+            seasonRankIndex.load(new HashMap<>());
+        }
+        seasonLeaderboards = Collections.emptyMap();
+    }
+    
+    /**
+     * 查询周期排行榜（今日 / 本周 / 本月，异步）
+     * 由周期内的每日汇总相加得到，不扫描比赛记录；本地文件存储没有每日汇总，返回空列表
+     */
+    public CompletableFuture<List<PlayerStats>> getPeriodTop(StatsPeriod period, StatsRankIndex.RankType type, int limit) {
+        LocalDate today = LocalDate.now();
+        return database.supplyAsync(() -> {
+            try {
+                return store.queryPeriodTop(period.getStartDay(today), today.toEpochDay(), type, limit);
+            } catch (SQLException e) {
+                database.logFailure("获取" + period.getDisplayName() + "排行榜失败！", e);
+                return new ArrayList<>();
+            }
+        });
+    }
+    
+    /**
+     * 删除超过保留天数的每日汇总（启动时执行一次）
+     */
+    private void pruneDailyStats() {
+        long beforeDay = LocalDate.now().minusDays(dailyRetentionDays).toEpochDay();
+        database.runAsync(() -> {
+            try {
+                int removed = store.pruneDailyStats(beforeDay);
+                if (removed > 0) {
+                    plugin.getLogger().info("已清理 " + removed + " 条过期的每日统计汇总");
                 }
-                
             } catch (SQLException e) {
-                plugin.getLogger().severe("获取排行榜失败！");
-                e.printStackTrace();
+                database.logFailure("清理每日统计汇总失败！", e);
             }
-            
-            return topPlayers;
         });
     }
+    
+    private List<PlayerStats> queryTopSafely(StatsRankIndex.RankType type, int limit) {
+        try {
+            return store.queryTop(null, type, limit);
+        } catch (SQLException e) {
+            database.logFailure("获取排行榜失败！", e);
+            return new ArrayList<>();
+        }
+    }
 }
-
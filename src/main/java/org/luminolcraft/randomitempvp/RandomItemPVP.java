@@ -15,6 +15,7 @@ public final class RandomItemPVP extends JavaPlugin {
     private DatabaseManager databaseManager;
     private PlayerStatsManager playerStatsManager;
     private MapVoteManager mapVoteManager;
+    private ItemDistributor itemDistributor;
     private RandomItemPVPExpansion placeholderExpansion;
 
     @Override
@@ -25,13 +26,16 @@ public final class RandomItemPVP extends JavaPlugin {
         configManager = new ConfigManager(this);
         configManager.loadConfig();
 
-        // 初始化数据库管理器
+        // 初始化数据库管理器（在后台连接，不阻塞服务器启动；连接完成前的数据库任务进入启动缓冲）
         databaseManager = new DatabaseManager(this, configManager);
-        databaseManager.connect();
+        databaseManager.connectAsync();
         
         // 初始化玩家统计管理器
-        playerStatsManager = new PlayerStatsManager(this, databaseManager);
+        playerStatsManager = new PlayerStatsManager(this, databaseManager, configManager);
 
+        // 初始化物品发放调度器（所有房间共用，把发放分散到整个间隔内）
+        itemDistributor = new ItemDistributor(this, configManager);
+        
         // 初始化游戏管理器（传入配置和统计管理器）
         gameManager = new GameManager(this, configManager, playerStatsManager);
         
@@ -59,6 +63,10 @@ public final class RandomItemPVP extends JavaPlugin {
         Bukkit.getPluginManager().registerEvents(itemAbilityManager, this);
         Bukkit.getPluginManager().registerEvents(rewardManager, this);
         Bukkit.getPluginManager().registerEvents(airdropManager, this);
+        Bukkit.getPluginManager().registerEvents(playerStatsManager, this);
+        
+        // 为已在线的玩家加载统计缓存（插件重载时）
+        playerStatsManager.loadOnlinePlayers();
 
         // 注册命令（/ripvp）
         PluginCommand ripvpCmd = getCommand("ripvp");
@@ -109,11 +117,31 @@ public final class RandomItemPVP extends JavaPlugin {
             gameManager.stopGame(false);
         }
         
+        // 提交各房间进行中比赛的统计（必须在统计管理器关闭之前）
+        if (arenaManager != null) {
+            arenaManager.commitRunningMatches();
+        }
+        
+        // 停止物品发放调度器
+        if (itemDistributor != null) {
+            itemDistributor.shutdown();
+        }
+        
         // 注销 PlaceholderAPI 扩展
         if (placeholderExpansion != null) {
             placeholderExpansion.unregister();
         }
         
+        // 先等待已提交的数据库任务（如比赛结果）执行完毕，失败的统计数据会转入写回日志
+        if (databaseManager != null) {
+            databaseManager.drainTasks();
+        }
+        
+        // 写入统计数据写回日志中剩余的数据
+        if (playerStatsManager != null) {
+            playerStatsManager.shutdown();
+        }
+        
         // 关闭数据库连接
         if (databaseManager != null) {
             databaseManager.disconnect();
@@ -157,4 +185,8 @@ public final class RandomItemPVP extends JavaPlugin {
     public MapVoteManager getMapVoteManager() {
         return mapVoteManager;
     }
+    
+    public ItemDistributor getItemDistributor() {
+        return itemDistributor;
+    }
 }
@@ -5,6 +5,8 @@ import org.bukkit.OfflinePlayer;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.List;
+
 /**
  * PlaceholderAPI 扩展 - 提供玩家统计数据变量
  */
@@ -43,99 +45,220 @@ public class RandomItemPVPExpansion extends PlaceholderExpansion {
     @Override
     @Nullable
     public String onRequest(OfflinePlayer player, @NotNull String params) {
+        String key = params.toLowerCase();
+        
+        // 排行榜变量与玩家无关：top_<wins|kills|kd>_<名次>_<name|value>
+        if (key.startsWith("top_")) {
+            return getLeaderboardPlaceholder(key, false);
+        }
+        
+        // 赛季变量：season、season_top_...、season_<统计项>
+        if (key.equals("season")) {
+            String season = statsManager.getActiveSeason();
+            return season != null ? season : "N/A";
+        }
+        boolean season = key.startsWith("season_");
+        if (season) {
+            key = key.substring("season_".length());
+            if (key.startsWith("top_")) {
+                return getLeaderboardPlaceholder(key, true);
+            }
+        }
+        
         if (player == null) {
             return "";
         }
         
-        // 异步获取数据可能导致延迟，这里使用缓存或同步方式
-        // 为了性能，我们提供一个同步的获取方式
+        // 从内存缓存读取（不阻塞、不访问数据库）
         try {
-            PlayerStatsManager.PlayerStats stats = statsManager.getPlayerStats(
-                player.getUniqueId(), 
-                player.getName() != null ? player.getName() : "Unknown"
-            ).get(); // 同步等待结果
-            
-            switch (params.toLowerCase()) {
-                // 基础统计
-                case "wins":
-                    return String.valueOf(stats.getWins());
-                
-                case "losses":
-                    return String.valueOf(stats.getLosses());
-                
-                case "kills":
-                    return String.valueOf(stats.getKills());
-                
-                case "deaths":
-                    return String.valueOf(stats.getDeaths());
-                
-                case "games":
-                case "games_played":
-                    return String.valueOf(stats.getGamesPlayed());
-                
-                // 计算值
-                case "kd":
-                case "kdratio":
-                    return String.format("%.2f", stats.getKDRatio());
-                
-                case "winrate":
-                case "win_rate":
-                    return String.format("%.1f", stats.getWinRate());
-                
-                case "winrate_percent":
-                    return String.format("%.1f%%", stats.getWinRate());
-                
-                // 带格式的显示
-                case "kd_formatted":
-                    double kd = stats.getKDRatio();
-                    if (kd >= 2.0) {
-                        return "§a" + String.format("%.2f", kd); // 绿色（优秀）
-                    } else if (kd >= 1.0) {
-                        return "§e" + String.format("%.2f", kd); // 黄色（良好）
-                    } else {
-                        return "§c" + String.format("%.2f", kd); // 红色（较低）
-                    }
-                
-                case "winrate_formatted":
-                    double winRate = stats.getWinRate();
-                    if (winRate >= 50.0) {
-                        return "§a" + String.format("%.1f%%", winRate); // 绿色
-                    } else if (winRate >= 30.0) {
-                        return "§e" + String.format("%.1f%%", winRate); // 黄色
-                    } else {
-                        return "§c" + String.format("%.1f%%", winRate); // 红色
-                    }
-                
-                // 战绩汇总
-                case "record":
-                    return stats.getWins() + "胜" + stats.getLosses() + "负";
-                
-                case "record_en":
-                    return stats.getWins() + "W " + stats.getLosses() + "L";
-                
-                case "kill_death":
-                    return stats.getKills() + "/" + stats.getDeaths();
-                
-                // 排名相关（需要额外查询，这里先返回占位符）
-                case "rank_wins":
-                    return "N/A"; // 可以后续实现排名缓存
-                
-                case "rank_kills":
-                    return "N/A";
-                
-                case "rank_kd":
-                    return "N/A";
-                
-                default:
-                    return null; // 未知变量
+            PlayerStatsManager.PlayerStats stats = season
+                ? statsManager.getCachedSeasonStats(player.getUniqueId())
+                : statsManager.getCachedStats(player.getUniqueId());
+            if (stats == null) {
+                // 尚未加载完成（或玩家不在线）：在线玩家触发后台加载，先返回空数据
+                // 数据库尚未就绪时不重复提交（进服时的加载已在启动缓冲中）
+                String name = player.getName() != null ? player.getName() : "Unknown";
+                if (player.isOnline() && statsManager.isDatabaseReady() && statsManager.getCachedStats(player.getUniqueId()) == null) {
+                    statsManager.loadIntoCache(player.getUniqueId(), name);
+                }
+                stats = new PlayerStatsManager.PlayerStats(player.getUniqueId(), name);
             }
             
+            return formatStat(player, stats, key, season);
+            
         } catch (Exception e) {
             plugin.getLogger().warning("获取 PAPI 变量失败: " + params + " for player " + player.getName());
             e.printStackTrace();
             return "§c错误";
         }
     }
+    
+    /**
+     * 格式化一项统计（总榜和赛季共用）
+     * @param season 是否为赛季统计（排名从赛季排名索引读取）
+     */
+    private String formatStat(OfflinePlayer player, PlayerStatsManager.PlayerStats stats, String key, boolean season) {
+        switch (key) {
+            // 基础统计
+            case "wins":
+                return String.valueOf(stats.getWins());
+            
+            case "losses":
+                return String.valueOf(stats.getLosses());
+            
+            case "kills":
+                return String.valueOf(stats.getKills());
+            
+            case "deaths":
+                return String.valueOf(stats.getDeaths());
+            
+            case "games":
+            case "games_played":
+                return String.valueOf(stats.getGamesPlayed());
+            
+            // 计算值
+            case "kd":
+            case "kdratio":
+                return String.format("%.2f", stats.getKDRatio());
+            
+            case "winrate":
+            case "win_rate":
+                return String.format("%.1f", stats.getWinRate());
+            
+            case "winrate_percent":
+                return String.format("%.1f%%", stats.getWinRate());
+            
+            // 带格式的显示
+            case "kd_formatted":
+                double kd = stats.getKDRatio();
+                if (kd >= 2.0) {
+                    return "§a" + String.format("%.2f", kd); // 绿色（优秀）
+                } else if (kd >= 1.0) {
+                    return "§e" + String.format("%.2f", kd); // 黄色（良好）
+                } else {
+                    return "§c" + String.format("%.2f", kd); // 红色（较低）
+                }
+            
+            case "winrate_formatted":
+                double winRate = stats.getWinRate();
+                if (winRate >= 50.0) {
+                    return "§a" + String.format("%.1f%%", winRate); // 绿色
+                } else if (winRate >= 30.0) {
+                    return "§e" + String.format("%.1f%%", winRate); // 黄色
+                } else {
+                    return "§c" + String.format("%.1f%%", winRate); // 红色
+                }
+            
+            // 战绩汇总
+            case "record":
+                return stats.getWins() + "胜" + stats.getLosses() + "负";
+            
+            case "record_en":
+                return stats.getWins() + "W " + stats.getLosses() + "L";
+            
+            case "kill_death":
+                return stats.getKills() + "/" + stats.getDeaths();
+            
+            // 战斗数据（每局结束时累计，赛季变量中为 0）
+            case "damage_dealt":
+                return String.valueOf(stats.getDamageDealt());
+            
+            case "damage_taken":
+                return String.valueOf(stats.getDamageTaken());
+            
+            case "items_received":
+                return String.valueOf(stats.getItemsReceived());
+            
+            case "tnt_thrown":
+                return String.valueOf(stats.getTntThrown());
+            
+            case "fireballs_thrown":
+                return String.valueOf(stats.getFireballsThrown());
+            
+            case "airdrops_opened":
+                return String.valueOf(stats.getAirdropsOpened());
+            
+            case "time_survived":
+                return String.valueOf(stats.getTimeSurvived());
+            
+            // 排名相关（从内存排名索引读取，不访问数据库）
+            case "rank_wins":
+                return formatRank(player, StatsRankIndex.RankType.WINS, season);
+            
+            case "rank_kills":
+                return formatRank(player, StatsRankIndex.RankType.KILLS, season);
+            
+            case "rank_kd":
+                return formatRank(player, StatsRankIndex.RankType.KD, season);
+            
+            default:
+                return null; // 未知变量
+        }
+    }
+    
+    /**
+     * 读取排行榜快照中的某个名次（不访问数据库）
+     * 例如 top_wins_3_name、top_kills_1_value
+     * @param season 是否读取当前赛季的排行榜
+     */
+    private String getLeaderboardPlaceholder(String params, boolean season) {
+        String[] parts = params.split("_");
+        if (parts.length != 4) {
+            return null;
+        }
+        
+        StatsRankIndex.RankType type;
+        switch (parts[1]) {
+            case "wins": type = StatsRankIndex.RankType.WINS; break;
+            case "kills": type = StatsRankIndex.RankType.KILLS; break;
+            case "kd": type = StatsRankIndex.RankType.KD; break;
+            default: return null;
+        }
+        
+        int position;
+        try {
+            position = Integer.parseInt(parts[2]);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        
+        List<PlayerStatsManager.PlayerStats> leaderboard = season
+            ? statsManager.getSeasonLeaderboard(type) : statsManager.getLeaderboard(type);
+        boolean present = position >= 1 && position <= leaderboard.size();
+        PlayerStatsManager.PlayerStats stats = present ? leaderboard.get(position - 1) : null;
+        
+        switch (parts[3]) {
+            case "name":
+                return stats != null ? stats.getPlayerName() : "---";
+            case "value":
+                if (stats == null) {
+                    return "0";
+                }
+                switch (type) {
+                    case WINS: return String.valueOf(stats.getWins());
+                    case KILLS: return String.valueOf(stats.getKills());
+                    default: return String.format("%.2f", stats.getKDRatio());
+                }
+            default:
+                return null;
+        }
+    }
+    
+    /**
+     * 读取并格式化排名
+     */
+    private String formatRank(OfflinePlayer player, StatsRankIndex.RankType type, boolean season) {
+        return formatRank(season
+            ? statsManager.getSeasonRank(player.getUniqueId(), type)
+            : statsManager.getRank(player.getUniqueId(), type));
+    }
+    
+    /**
+     * 格式化排名（未上榜或索引尚未加载时显示 N/A）
+     */
+    private String formatRank(int rank) {
+        return rank > 0 ? String.valueOf(rank) : "N/A";
+    }
 }
 
 
@@ -0,0 +1,196 @@
+package org.luminolcraft.randomitempvp;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * MySQL 只读副本路由
+ * 每个副本一个连接池，定时查询复制延迟；可容忍延迟的查询（排行榜、比赛记录）
+ * 轮流使用延迟在容忍范围内的副本，没有可用副本时由调用方回退到主库
+ */
+public class ReadReplicaRouter {
+    
+    /**
+     * 一个只读副本
+     */
+    public static class Replica {
+        private final String name;
+        private final HikariDataSource dataSource;
+        // 复制延迟（秒），-1 表示未知
+        private volatile long lagSeconds = -1;
+        private volatile boolean usable = false;
+        private volatile boolean checked = false;
+        // SHOW REPLICA STATUS 需要 MySQL 8.0.22+ / MariaDB 10.5.1+，旧版本使用 SHOW SLAVE STATUS
+        private volatile String statusQuery = "SHOW REPLICA STATUS";
+        
+        public Replica(String name, HikariDataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+        
+        public String getName() { return name; }
+        public long getLagSeconds() { return lagSeconds; }
+        public boolean isUsable() { return usable; }
+    }
+    
+    private final JavaPlugin plugin;
+    private final List<Replica> replicas;
+    private final long maxStalenessSeconds;
+    private final long checkIntervalSeconds;
+    private final AtomicInteger next = new AtomicInteger();
+    private ScheduledTask checkTask;
+    
+    /**
+     * @param maxStalenessSeconds 可容忍的复制延迟（秒），超过时不再使用该副本
+     * @param checkIntervalSeconds 查询复制延迟的间隔（秒）
+     */
+    public ReadReplicaRouter(JavaPlugin plugin, List<Replica> replicas, long maxStalenessSeconds, long checkIntervalSeconds) {
+        this.plugin = plugin;
+        this.replicas = new ArrayList<>(replicas);
+        this.maxStalenessSeconds = Math.max(0, maxStalenessSeconds);
+        this.checkIntervalSeconds = Math.max(1, checkIntervalSeconds);
+    }
+    
+    /**
+     * 立即检查一次所有副本，之后定时检查
+     */
+    public void start() {
+        checkAll();
+        checkTask = Bukkit.getAsyncScheduler().runAtFixedRate(plugin, task -> checkAll(),
+            checkIntervalSeconds, checkIntervalSeconds, TimeUnit.SECONDS);
+    }
+    
+    /**
+     * 从可用副本中轮流获取连接（副本连接失败时标记为不可用，直到下一次检查）
+     * @return 连接，没有可用副本时返回 null
+     */
+    public Connection getConnection() {
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (!replica.usable) {
+                continue;
+            }
+            try {
+                return replica.dataSource.getConnection();
+            } catch (SQLException e) {
+                replica.usable = false;
+                plugin.getLogger().warning("只读副本 " + replica.name + " 连接失败，查询回退到主库：" + e.getMessage());
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * 检查所有副本的复制延迟（第一次检查和可用状态变化时输出日志）
+     */
+    private void checkAll() {
+        for (Replica replica : replicas) {
+            long lag = -1;
+            String problem;
+            try {
+                lag = queryLag(replica);
+                problem = lag < 0 ? "未配置复制或复制已停止"
+                    : lag > maxStalenessSeconds ? "复制延迟 " + lag + " 秒，超过容忍的 " + maxStalenessSeconds + " 秒"
+                    : null;
+            } catch (SQLException e) {
+                problem = "无法查询复制状态（需要 REPLICATION CLIENT 权限）：" + e.getMessage();
+            }
+            replica.lagSeconds = lag;
+            
+            boolean usable = problem == null;
+            if (usable && (!replica.usable || !replica.checked)) {
+                plugin.getLogger().info("只读副本 " + replica.name + " 可用（复制延迟 " + lag + " 秒）");
+            } else if (!usable && (replica.usable || !replica.checked)) {
+                plugin.getLogger().warning("只读副本 " + replica.name + " 不可用，查询使用主库：" + problem);
+            }
+            replica.usable = usable;
+            replica.checked = true;
+        }
+    }
+    
+    /**
+     * 查询副本的复制延迟
+     * @return 延迟秒数，未配置复制或复制线程已停止时返回 -1
+     */
+    private long queryLag(Replica replica) throws SQLException {
+        try (Connection conn = replica.dataSource.getConnection();
+             Statement stmt = conn.createStatement()) {
+            ResultSet rs;
+            try {
+                rs = stmt.executeQuery(replica.statusQuery);
+            } catch (SQLException e) {
+                if (!"SHOW REPLICA STATUS".equals(replica.statusQuery)) {
+                    throw e;
+                }
+                replica.statusQuery = "SHOW SLAVE STATUS";
+                rs = stmt.executeQuery(replica.statusQuery);
+            }
+            try (ResultSet status = rs) {
+                if (!status.next()) {
+                    return -1;
+                }
+                Object lag = readLagColumn(status);
+                // 复制线程停止时延迟为 NULL
+                return lag == null ? -1 : ((Number) lag).longValue();
+            }
+        }
+    }
+    
+    /**
+     * MySQL 8.0.22+ 的列名为 Seconds_Behind_Source，旧版本和 MariaDB 为 Seconds_Behind_Master
+     */
+    private static Object readLagColumn(ResultSet rs) throws SQLException {
+        try {
+            return rs.getObject(rs.findColumn("Seconds_Behind_Source"));
+        } catch (SQLException e) {
+            return rs.getObject(rs.findColumn("Seconds_Behind_Master"));
+        }
+    }
+    
+    /**
+     * 获取所有副本（用于显示状态）
+     */
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+    
+    /**
+     * 所有副本的连接池最大连接数之和
+     */
+    public int getTotalPoolSize() {
+        int total = 0;
+        for (Replica replica : replicas) {
+            total += replica.dataSource.getMaximumPoolSize();
+        }
+        return total;
+    }
+    
+    /**
+     * 停止检查并关闭所有副本的连接池
+     */
+    public void close() {
+        if (checkTask != null) {
+            checkTask.cancel();
+            checkTask = null;
+        }
+        for (Replica replica : replicas) {
+            replica.usable = false;
+            if (!replica.dataSource.isClosed()) {
+                replica.dataSource.close();
+            }
+        }
+    }
+}
@@ -2,6 +2,7 @@ package org.luminolcraft.randomitempvp;
 
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
+import org.bukkit.OfflinePlayer;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
@@ -10,17 +11,45 @@ import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class RipvpCommand implements CommandExecutor, TabCompleter {
     private final GameManager gameManager;
     private final ArenaManager arenaManager;
     private final ConfigManager configManager;
     private final PlayerStatsManager statsManager;
+    
+    // 比赛记录每页条数
+    private static final int HISTORY_PAGE_SIZE = 8;
+    // 每个玩家正在浏览的比赛记录（用于 /ripvp history next 翻页）
+    private final Map<UUID, HistoryView> historyViews = new ConcurrentHashMap<>();
+    
+    /**
+     * 正在浏览的比赛记录
+     */
+    private static class HistoryView {
+        private final UUID target; // null 表示全服记录
+        private final String title;
+        private final PlayerStatsManager.HistoryCursor nextCursor;
+        
+        HistoryView(UUID target, String title, PlayerStatsManager.HistoryCursor nextCursor) {
+            this.target = target;
+            this.title = title;
+            this.nextCursor = nextCursor;
+        }
+    }
 
     public RipvpCommand(GameManager gameManager, ArenaManager arenaManager, ConfigManager configManager, PlayerStatsManager statsManager) {
         this.gameManager = gameManager;
@@ -37,14 +66,16 @@ public class RipvpCommand implements CommandExecutor, TabCompleter {
             return true;
         }
 
-        // 控制台可执行的命令：status, create, delete, list, reload
+        // 控制台可执行的命令：status, create, delete, list, reload, stats export/import, season
         boolean consoleAllowed = args.length >= 1 && (
             args[0].equalsIgnoreCase("status") ||
             args[0].equalsIgnoreCase("create") ||
             args[0].equalsIgnoreCase("delete") ||
             args[0].equalsIgnoreCase("list") ||
             args[0].equalsIgnoreCase("arenas") ||
-            args[0].equalsIgnoreCase("reload")
+            args[0].equalsIgnoreCase("reload") ||
+            args[0].equalsIgnoreCase("season") ||
+            isStatsTransfer(args)
         );
         
         // 仅玩家可执行（除了控制台允许的命令）
@@ -156,6 +187,31 @@ public class RipvpCommand implements CommandExecutor, TabCompleter {
                     sender.sendMessage(ChatColor.AQUA + "===== 游戏状态 =====");
                     sender.sendMessage(ChatColor.WHITE + "是否运行：" + (gameManager.isRunning() ? ChatColor.GREEN + "是" : ChatColor.RED + "否"));
                     sender.sendMessage(ChatColor.WHITE + "存活玩家：" + ChatColor.YELLOW + gameManager.getAliveCount());
+                    DatabaseManager databaseManager = RandomItemPVP.getInstance().getDatabaseManager();
+                    if (databaseManager != null) {
+                        sender.sendMessage(ChatColor.WHITE + "数据库队列：" + ChatColor.YELLOW + databaseManager.getQueueDepth() + 
+                            ChatColor.GRAY + "（已拒绝 " + databaseManager.getRejectedCount() + "）");
+                        if (!databaseManager.getReadyFuture().isDone()) {
+                            sender.sendMessage(ChatColor.WHITE + "数据库状态：" + ChatColor.YELLOW + "连接中" + 
+                                ChatColor.GRAY + "（缓冲 " + databaseManager.getStartupBufferSize() + " 个任务）");
+                        } else if (!databaseManager.isReady()) {
+                            sender.sendMessage(ChatColor.WHITE + "数据库状态：" + ChatColor.RED + "连接失败");
+                        } else {
+                            sender.sendMessage(ChatColor.WHITE + "数据库状态：" + (databaseManager.isAvailable()
+                                ? ChatColor.GREEN + "正常" : ChatColor.RED + "熔断中（" + databaseManager.getCircuitState().name() + "）"));
+                        }
+                        if (databaseManager.getReplicaRouter() != null) {
+                            for (ReadReplicaRouter.Replica replica : databaseManager.getReplicaRouter().getReplicas()) {
+                                sender.sendMessage(ChatColor.WHITE + "只读副本 " + replica.getName() + "：" + (replica.isUsable()
+                                    ? ChatColor.GREEN + "可用（延迟 " + replica.getLagSeconds() + " 秒）"
+                                    : ChatColor.RED + "未使用" + (replica.getLagSeconds() >= 0 ? "（延迟 " + replica.getLagSeconds() + " 秒）" : "")));
+                            }
+                        }
+                    }
+                    if (statsManager != null && statsManager.getSpooledCount() > 0) {
+                        sender.sendMessage(ChatColor.WHITE + "本地暂存：" + ChatColor.YELLOW + statsManager.getSpooledCount() + 
+                            ChatColor.GRAY + " 条统计数据等待写回");
+                    }
                     sender.sendMessage(ChatColor.AQUA + "===================");
                     return true;
 
@@ -513,28 +569,76 @@ public class RipvpCommand implements CommandExecutor, TabCompleter {
                     return true;
                 
                 case "stats":
+                    // 批量导入/导出：/ripvp stats export|import <文件>
+                    if (isStatsTransfer(args)) {
+                        if (!sender.hasPermission("ripvp.admin")) {
+                            sender.sendMessage(ChatColor.RED + "你没有权限使用此命令！");
+                            return true;
+                        }
+                        runStatsTransfer(sender, args[1].toLowerCase(), args[2]);
+                        return true;
+                    }
                     if (player == null) return true;
                     // 查看自己的统计或指定玩家的统计
                     if (args.length == 1) {
                         // 查看自己的统计
-                        showPlayerStats(player, player);
+                        showPlayerStats(player, statsManager.getPlayerStats(player.getUniqueId(), player.getName()));
                     } else {
-                        // 查看指定玩家的统计
-                        Player target = Bukkit.getPlayer(args[1]);
+                        // 查看指定玩家的统计：在线玩家读缓存，离线玩家通过名称索引查找
+                        Player target = Bukkit.getPlayerExact(args[1]);
+                        showPlayerStats(player, target != null
+                            ? statsManager.getPlayerStats(target.getUniqueId(), target.getName())
+                            : statsManager.getPlayerStatsByName(args[1]));
+                    }
+                    return true;
+                
+                case "history":
+                    if (player == null) return true;
+                    // 比赛记录：自己、指定玩家、全服（server），next 翻到下一页
+                    if (args.length == 1) {
+                        showHistory(player, player.getUniqueId(), player.getName(), null);
+                    } else if (args[1].equalsIgnoreCase("next")) {
+                        HistoryView view = historyViews.get(player.getUniqueId());
+                        if (view == null || view.nextCursor == null) {
+                            player.sendMessage(ChatColor.RED + "没有更多比赛记录了！");
+                            return true;
+                        }
+                        showHistory(player, view.target, view.title, view.nextCursor);
+                    } else if (args[1].equalsIgnoreCase("server")) {
+                        showHistory(player, null, "全服", null);
+                    } else {
+                        OfflinePlayer target = Bukkit.getPlayerExact(args[1]);
+                        if (target == null) {
+                            target = Bukkit.getOfflinePlayerIfCached(args[1]);
+                        }
                         if (target == null) {
-                            player.sendMessage(ChatColor.RED + "玩家不在线！");
+                            player.sendMessage(ChatColor.RED + "找不到该玩家！");
                             return true;
                         }
-                        showPlayerStats(player, target);
+                        showHistory(player, target.getUniqueId(), target.getName() != null ? target.getName() : args[1], null);
                     }
                     return true;
                 
                 case "top":
                     if (player == null) return true;
-                    // 排行榜类型：wins（胜利）、kills（击杀）、kd（KD比率）
+                    // 排行榜类型：wins（胜利）、kills（击杀）、kd（KD比率）；可选周期：today、week、month
                     String rankType = args.length >= 2 ? args[1].toLowerCase() : "wins";
+                    if (args.length >= 3) {
+                        StatsPeriod period = StatsPeriod.parse(args[2]);
+                        if (period == null) {
+                            player.sendMessage(ChatColor.RED + "无效的周期！可用: today, week, month");
+                            return true;
+                        }
+                        showPeriodLeaderboard(player, rankType, period);
+                        return true;
+                    }
                     showLeaderboard(player, rankType);
                     return true;
+                
+                case "season":
+                    // 赛季：查看当前赛季、列出赛季、查看往届排行榜、开始新赛季
+                    handleSeason(sender, args);
+                    return true;
 
                 default:
                     sendHelp(sender);
@@ -549,7 +653,11 @@ public class RipvpCommand implements CommandExecutor, TabCompleter {
     @Override
     public List<String> onTabComplete(@NotNull CommandSender sender, @NotNull Command command, @NotNull String alias, @NotNull String[] args) {
         if (args.length == 1) {
-            return Arrays.asList("start", "stop", "join", "leave", "cancel", "create", "delete", "list", "setspawn", "status", "reload", "stats", "top", "vote", "remap");
+            return Arrays.asList("start", "stop", "join", "leave", "cancel", "create", "delete", "list", "setspawn", "status", "reload", "stats", "history", "top", "season", "vote", "remap");
+        } else if (args.length == 3 && args[0].equalsIgnoreCase("top")) {
+            return Arrays.asList("today", "week", "month");
+        } else if (args.length == 4 && args[0].equalsIgnoreCase("season") && args[1].equalsIgnoreCase("top")) {
+            return Arrays.asList("wins", "kills", "kd");
         } else if (args.length == 2) {
             switch (args[0].toLowerCase()) {
                 case "start":
@@ -579,6 +687,27 @@ public class RipvpCommand implements CommandExecutor, TabCompleter {
                     return null;
                 case "top":
                     return Arrays.asList("wins", "kills", "kd");
+                case "season":
+                    List<String> seasonOptions = new ArrayList<>(Arrays.asList("list", "top"));
+                    if (sender.hasPermission("ripvp.admin")) {
+                        seasonOptions.add("rollover");
+                    }
+                    return seasonOptions;
+                case "stats":
+                    List<String> statsOptions = new ArrayList<>();
+                    if (sender.hasPermission("ripvp.admin")) {
+                        statsOptions.addAll(Arrays.asList("export", "import"));
+                    }
+                    for (Player online : Bukkit.getOnlinePlayers()) {
+                        statsOptions.add(online.getName());
+                    }
+                    return statsOptions;
+                case "history":
+                    List<String> historyOptions = new ArrayList<>(Arrays.asList("next", "server"));
+                    for (Player online : Bukkit.getOnlinePlayers()) {
+                        historyOptions.add(online.getName());
+                    }
+                    return historyOptions;
                 case "remap":
                     // 如果玩家在房间中，返回可用地图列表
                     if (sender instanceof Player) {
@@ -626,7 +755,9 @@ public class RipvpCommand implements CommandExecutor, TabCompleter {
         sender.sendMessage(ChatColor.WHITE + "  /ripvp vote <地图名> - 投票选择地图（在房间中时）");
         sender.sendMessage(ChatColor.WHITE + "  /ripvp status - 查看游戏状态");
         sender.sendMessage(ChatColor.WHITE + "  /ripvp stats [玩家] - 查看统计数据");
-        sender.sendMessage(ChatColor.WHITE + "  /ripvp top [wins|kills|kd] - 查看排行榜");
+        sender.sendMessage(ChatColor.WHITE + "  /ripvp top [wins|kills|kd] [today|week|month] - 查看排行榜（可按今日/本周/本月）");
+        sender.sendMessage(ChatColor.WHITE + "  /ripvp history [玩家|server|next] - 查看比赛记录");
+        sender.sendMessage(ChatColor.WHITE + "  /ripvp season [list|top <赛季> [wins|kills|kd]] - 查看赛季统计和往届排行榜");
         
         if (isAdmin) {
             sender.sendMessage(ChatColor.RED + "管理员命令：");
@@ -637,6 +768,8 @@ public class RipvpCommand implements CommandExecutor, TabCompleter {
             sender.sendMessage(ChatColor.WHITE + "  /ripvp stop - 强制停止当前游戏");
             sender.sendMessage(ChatColor.WHITE + "  /ripvp cancel - 取消准备中的游戏");
             sender.sendMessage(ChatColor.WHITE + "  /ripvp reload - 热加载配置文件（控制台可用）");
+            sender.sendMessage(ChatColor.WHITE + "  /ripvp stats export|import <文件> - 批量导出/导入统计数据（控制台可用）");
+            sender.sendMessage(ChatColor.WHITE + "  /ripvp season rollover <赛季> - 结束当前赛季并开始新赛季（控制台可用）");
         }
         
         sender.sendMessage(ChatColor.YELLOW + "==========================");
@@ -644,12 +777,17 @@ public class RipvpCommand implements CommandExecutor, TabCompleter {
     
     /**
      * 显示玩家统计数据
+     * @param future 统计数据，为 null 时表示找不到该玩家
      */
-    private void showPlayerStats(Player viewer, Player target) {
+    private void showPlayerStats(Player viewer, CompletableFuture<PlayerStatsManager.PlayerStats> future) {
         viewer.sendMessage(ChatColor.AQUA + "正在加载统计数据...");
         
-        statsManager.getPlayerStats(target.getUniqueId(), target.getName()).thenAccept(stats -> {
+        future.thenAccept(stats -> {
             Bukkit.getScheduler().runTask(RandomItemPVP.getInstance(), () -> {
+                if (stats == null) {
+                    viewer.sendMessage(ChatColor.RED + "找不到该玩家！");
+                    return;
+                }
                 viewer.sendMessage(ChatColor.GOLD + "========== " + stats.getPlayerName() + " 的统计 ==========");
                 viewer.sendMessage(ChatColor.YELLOW + "胜利次数：" + ChatColor.GREEN + stats.getWins());
                 viewer.sendMessage(ChatColor.YELLOW + "失败次数：" + ChatColor.RED + stats.getLosses());
@@ -658,72 +796,279 @@ public class RipvpCommand implements CommandExecutor, TabCompleter {
                 viewer.sendMessage(ChatColor.YELLOW + "击杀数：" + ChatColor.GREEN + stats.getKills());
                 viewer.sendMessage(ChatColor.YELLOW + "死亡数：" + ChatColor.RED + stats.getDeaths());
                 viewer.sendMessage(ChatColor.YELLOW + "KD比率：" + ChatColor.GOLD + String.format("%.2f", stats.getKDRatio()));
+                viewer.sendMessage(ChatColor.YELLOW + "造成/承受伤害：" + ChatColor.GREEN + stats.getDamageDealt() + 
+                    ChatColor.GRAY + " / " + ChatColor.RED + stats.getDamageTaken());
+                viewer.sendMessage(ChatColor.YELLOW + "获得物品：" + ChatColor.WHITE + stats.getItemsReceived() + 
+                    ChatColor.YELLOW + "  打开空投：" + ChatColor.WHITE + stats.getAirdropsOpened());
+                viewer.sendMessage(ChatColor.YELLOW + "投掷 TNT/火焰弹：" + ChatColor.WHITE + stats.getTntThrown() + " / " + stats.getFireballsThrown());
+                viewer.sendMessage(ChatColor.YELLOW + "累计存活时间：" + ChatColor.AQUA + (stats.getTimeSurvived() / 60) + " 分钟");
                 viewer.sendMessage(ChatColor.GOLD + "=========================================");
             });
         });
     }
     
     /**
-     * 显示排行榜
+     * 处理 /ripvp season 子命令
      */
-    private void showLeaderboard(Player player, String type) {
-        player.sendMessage(ChatColor.AQUA + "正在加载排行榜...");
+    private void handleSeason(CommandSender sender, String[] args) {
+        String current = statsManager.getActiveSeason();
+        if (current == null) {
+            sender.sendMessage(ChatColor.RED + "赛季功能未启用或数据库尚未就绪！");
+            return;
+        }
         
-        switch (type) {
-            case "wins":
-                statsManager.getTopWins(10).thenAccept(topPlayers -> {
-                    Bukkit.getScheduler().runTask(RandomItemPVP.getInstance(), () -> {
-                        player.sendMessage(ChatColor.GOLD + "========== 胜利排行榜 TOP 10 ==========");
-                        int rank = 1;
-                        for (PlayerStatsManager.PlayerStats stats : topPlayers) {
-                            String medal = getMedalForRank(rank);
-                            player.sendMessage(ChatColor.YELLOW + "#" + rank + " " + medal + " " + 
-                                ChatColor.WHITE + stats.getPlayerName() + " - " + 
-                                ChatColor.GREEN + stats.getWins() + " 胜 " + 
-                                ChatColor.GRAY + "(" + stats.getGamesPlayed() + " 场)");
-                            rank++;
-                        }
-                        player.sendMessage(ChatColor.GOLD + "=========================================");
-                    });
+        String action = args.length >= 2 ? args[1].toLowerCase() : "";
+        switch (action) {
+            case "":
+                sender.sendMessage(ChatColor.GOLD + "当前赛季：" + ChatColor.WHITE + current);
+                if (sender instanceof Player) {
+                    PlayerStatsManager.PlayerStats stats = statsManager.getCachedSeasonStats(((Player) sender).getUniqueId());
+                    if (stats != null) {
+                        sender.sendMessage(ChatColor.YELLOW + "本赛季：" + 
+                            ChatColor.GREEN + stats.getWins() + " 胜 " + 
+                            ChatColor.RED + stats.getLosses() + " 负 " + 
+                            ChatColor.WHITE + stats.getKills() + "/" + stats.getDeaths() + " " + 
+                            ChatColor.GOLD + "KD " + String.format("%.2f", stats.getKDRatio()));
+                    }
+                }
+                break;
+            
+            case "list":
+                statsManager.listSeasons().thenAccept(seasons -> notify(sender, 
+                    ChatColor.GOLD + "赛季列表：" + ChatColor.WHITE + (seasons.isEmpty() ? current : String.join(", ", seasons)) + 
+                    ChatColor.GRAY + "（当前：" + current + "）"));
+                break;
+            
+            case "top": {
+                if (args.length < 3) {
+                    sender.sendMessage(ChatColor.RED + "用法：/ripvp season top <赛季> [wins|kills|kd]");
+                    return;
+                }
+                String type = args.length >= 4 ? args[3].toLowerCase() : "wins";
+                StatsRankIndex.RankType rankType;
+                switch (type) {
+                    case "wins": rankType = StatsRankIndex.RankType.WINS; break;
+                    case "kills": rankType = StatsRankIndex.RankType.KILLS; break;
+                    case "kd": rankType = StatsRankIndex.RankType.KD; break;
+                    default:
+                        sender.sendMessage(ChatColor.RED + "无效的排行榜类型！可用: wins, kills, kd");
+                        return;
+                }
+                String season = args[2];
+                statsManager.getSeasonTop(season, rankType, 10).thenAccept(top -> {
+                    notify(sender, ChatColor.GOLD + "========== 赛季 " + season + " 排行榜（" + type + "） ==========");
+                    if (top.isEmpty()) {
+                        notify(sender, ChatColor.GRAY + "该赛季暂无数据");
+                    }
+                    int rank = 1;
+                    for (PlayerStatsManager.PlayerStats stats : top) {
+                        String value = rankType == StatsRankIndex.RankType.WINS ? stats.getWins() + " 胜"
+                            : rankType == StatsRankIndex.RankType.KILLS ? stats.getKills() + " 击杀"
+                            : String.format("%.2f", stats.getKDRatio()) + " KD";
+                        notify(sender, ChatColor.YELLOW + "#" + rank + " " + getMedalForRank(rank) + " " + 
+                            ChatColor.WHITE + stats.getPlayerName() + " - " + ChatColor.GREEN + value);
+                        rank++;
+                    }
                 });
                 break;
+            }
             
-            case "kills":
-                statsManager.getTopKills(10).thenAccept(topPlayers -> {
-                    Bukkit.getScheduler().runTask(RandomItemPVP.getInstance(), () -> {
-                        player.sendMessage(ChatColor.GOLD + "========== 击杀排行榜 TOP 10 ==========");
-                        int rank = 1;
-                        for (PlayerStatsManager.PlayerStats stats : topPlayers) {
-                            String medal = getMedalForRank(rank);
-                            player.sendMessage(ChatColor.YELLOW + "#" + rank + " " + medal + " " + 
-                                ChatColor.WHITE + stats.getPlayerName() + " - " + 
-                                ChatColor.RED + stats.getKills() + " 击杀 " + 
-                                ChatColor.GRAY + "(KD: " + String.format("%.2f", stats.getKDRatio()) + ")");
-                            rank++;
-                        }
-                        player.sendMessage(ChatColor.GOLD + "=========================================");
-                    });
+            case "rollover": {
+                if (!sender.hasPermission("ripvp.admin")) {
+                    sender.sendMessage(ChatColor.RED + "你没有权限使用此命令！");
+                    return;
+                }
+                if (args.length < 3) {
+                    sender.sendMessage(ChatColor.RED + "用法：/ripvp season rollover <新赛季>");
+                    return;
+                }
+                String season = args[2];
+                sender.sendMessage(ChatColor.AQUA + "正在切换到赛季 " + season + "...");
+                statsManager.rolloverSeason(season).whenComplete((result, error) -> {
+                    if (error != null) {
+                        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                        notify(sender, ChatColor.RED + "切换赛季失败：" + cause.getMessage());
+                    } else {
+                        notify(sender, ChatColor.GREEN + "✓ 赛季 " + current + " 已结束，当前赛季：" + season);
+                    }
                 });
                 break;
+            }
+            
+            default:
+                sender.sendMessage(ChatColor.RED + "用法：/ripvp season [list|top <赛季> [wins|kills|kd]|rollover <新赛季>]");
+                break;
+        }
+    }
+    
+    /**
+     * 是否为 /ripvp stats export|import <文件>
+     */
+    private boolean isStatsTransfer(String[] args) {
+        return args.length >= 3 && args[0].equalsIgnoreCase("stats") &&
+            (args[1].equalsIgnoreCase("export") || args[1].equalsIgnoreCase("import"));
+    }
+    
+    /**
+     * 在后台执行统计数据的导出或导入，并向发送者报告进度
+     * 文件路径相对于插件目录，不允许指向插件目录之外
+     */
+    private void runStatsTransfer(CommandSender sender, String action, String fileName) {
+        RandomItemPVP plugin = RandomItemPVP.getInstance();
+        File file = new File(plugin.getDataFolder(), fileName);
+        try {
+            if (!file.getCanonicalPath().startsWith(plugin.getDataFolder().getCanonicalPath() + File.separator)) {
+                sender.sendMessage(ChatColor.RED + "文件必须位于插件目录中！");
+                return;
+            }
+        } catch (IOException e) {
+            sender.sendMessage(ChatColor.RED + "无效的文件路径：" + fileName);
+            return;
+        }
+        
+        boolean export = action.equals("export");
+        if (!export && !file.isFile()) {
+            sender.sendMessage(ChatColor.RED + "找不到文件：" + file.getPath());
+            return;
+        }
+        
+        sender.sendMessage(ChatColor.AQUA + (export ? "开始导出统计数据到 " : "开始从以下文件导入统计数据：") + file.getPath());
+        (export
+            ? statsManager.exportStats(file, message -> notify(sender, ChatColor.GRAY + message))
+            : statsManager.importStats(file, message -> notify(sender, ChatColor.GRAY + message))
+        ).whenComplete((result, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                notify(sender, ChatColor.RED + (export ? "导出失败：" : "导入失败：") + cause.getMessage());
+            } else {
+                notify(sender, ChatColor.GREEN + (export ? "✓ 导出完成：" : "✓ 导入完成：") + 
+                    result.getPlayers() + " 名玩家，" + result.getMatches() + " 场比赛");
+            }
+        });
+    }
+    
+    /**
+     * 从异步线程向命令发送者发送消息（玩家在其所在区域线程中发送）
+     */
+    private void notify(CommandSender sender, String message) {
+        if (sender instanceof Player) {
+            Player player = (Player) sender;
+            player.getScheduler().run(RandomItemPVP.getInstance(), task -> player.sendMessage(message), null);
+        } else {
+            sender.sendMessage(message);
+        }
+    }
+    
+    /**
+     * 显示一页比赛记录
+     * @param target 玩家 UUID，null 表示全服记录
+     * @param cursor 分页游标，第一页为 null
+     */
+    private void showHistory(Player viewer, UUID target, String title, PlayerStatsManager.HistoryCursor cursor) {
+        viewer.sendMessage(ChatColor.AQUA + "正在加载比赛记录...");
+        
+        (target != null
+            ? statsManager.getPlayerHistory(target, cursor, HISTORY_PAGE_SIZE)
+            : statsManager.getServerHistory(cursor, HISTORY_PAGE_SIZE)
+        ).thenAccept(page -> {
+            historyViews.put(viewer.getUniqueId(), new HistoryView(target, title, page.getNextCursor()));
             
-            case "kd":
-                statsManager.getTopKD(10).thenAccept(topPlayers -> {
-                    Bukkit.getScheduler().runTask(RandomItemPVP.getInstance(), () -> {
-                        player.sendMessage(ChatColor.GOLD + "========== KD比率排行榜 TOP 10 ==========");
-                        player.sendMessage(ChatColor.GRAY + "（需要至少 10 场游戏才能上榜）");
-                        int rank = 1;
-                        for (PlayerStatsManager.PlayerStats stats : topPlayers) {
-                            String medal = getMedalForRank(rank);
-                            player.sendMessage(ChatColor.YELLOW + "#" + rank + " " + medal + " " + 
-                                ChatColor.WHITE + stats.getPlayerName() + " - " + 
-                                ChatColor.GOLD + String.format("%.2f", stats.getKDRatio()) + " KD " + 
-                                ChatColor.GRAY + "(" + stats.getKills() + "/" + stats.getDeaths() + ")");
-                            rank++;
+            viewer.getScheduler().run(RandomItemPVP.getInstance(), task -> {
+                SimpleDateFormat dateFormat = new SimpleDateFormat("MM-dd HH:mm");
+                viewer.sendMessage(ChatColor.GOLD + "========== " + title + " 的比赛记录 ==========");
+                if (page.getEntries().isEmpty()) {
+                    viewer.sendMessage(ChatColor.GRAY + "暂无比赛记录");
+                }
+                for (PlayerStatsManager.MatchHistoryEntry entry : page.getEntries()) {
+                    String time = dateFormat.format(new Date(entry.getEndedAt()));
+                    String duration = String.format("%d:%02d", entry.getDuration() / 60000, entry.getDuration() / 1000 % 60);
+                    String map = entry.getMapId() != null ? entry.getMapId() : entry.getArenaName();
+                    
+                    if (entry.getOutcome() != null) {
+                        // 玩家记录：显示胜负和击杀/死亡
+                        String result;
+                        switch (entry.getOutcome()) {
+                            case WIN: result = ChatColor.GREEN + "胜利"; break;
+                            case LOSS: result = ChatColor.RED + "失败"; break;
+                            default: result = ChatColor.GRAY + "离开"; break;
                         }
-                        player.sendMessage(ChatColor.GOLD + "=========================================");
-                    });
-                });
+                        viewer.sendMessage(ChatColor.GRAY + time + " " + result + " " + 
+                            ChatColor.WHITE + map + " " + 
+                            ChatColor.YELLOW + entry.getKills() + "/" + entry.getDeaths() + " " + 
+                            ChatColor.GRAY + "(" + duration + ", " + entry.getPlayerCount() + " 人)");
+                    } else {
+                        // 全服记录：显示胜利者
+                        String winner = entry.getWinnerName() != null ? entry.getWinnerName() : "无";
+                        viewer.sendMessage(ChatColor.GRAY + time + " " + 
+                            ChatColor.WHITE + map + " " + 
+                            ChatColor.GOLD + "胜利者：" + winner + " " + 
+                            ChatColor.GRAY + "(" + duration + ", " + entry.getPlayerCount() + " 人)");
+                    }
+                }
+                if (page.hasMore()) {
+                    viewer.sendMessage(ChatColor.YELLOW + "使用 /ripvp history next 查看下一页");
+                }
+                viewer.sendMessage(ChatColor.GOLD + "=========================================");
+            }, null);
+        });
+    }
+    
+    /**
+     * 显示排行榜
+     */
+    private void showLeaderboard(Player player, String type) {
+        // 从排行榜快照读取（后台定时生成，不访问数据库）
+        if (!statsManager.isLeaderboardReady()) {
+            player.sendMessage(ChatColor.YELLOW + "排行榜正在生成，请稍后再试！");
+            return;
+        }
+        
+        switch (type) {
+            case "wins": {
+                player.sendMessage(ChatColor.GOLD + "========== 胜利排行榜 TOP 10 ==========");
+                int rank = 1;
+                for (PlayerStatsManager.PlayerStats stats : statsManager.getLeaderboard(StatsRankIndex.RankType.WINS)) {
+                    String medal = getMedalForRank(rank);
+                    player.sendMessage(ChatColor.YELLOW + "#" + rank + " " + medal + " " + 
+                        ChatColor.WHITE + stats.getPlayerName() + " - " + 
+                        ChatColor.GREEN + stats.getWins() + " 胜 " + 
+                        ChatColor.GRAY + "(" + stats.getGamesPlayed() + " 场)");
+                    rank++;
+                }
+                player.sendMessage(ChatColor.GOLD + "=========================================");
                 break;
+            }
+            
+            case "kills": {
+                player.sendMessage(ChatColor.GOLD + "========== 击杀排行榜 TOP 10 ==========");
+                int rank = 1;
+                for (PlayerStatsManager.PlayerStats stats : statsManager.getLeaderboard(StatsRankIndex.RankType.KILLS)) {
+                    String medal = getMedalForRank(rank);
+                    player.sendMessage(ChatColor.YELLOW + "#" + rank + " " + medal + " " + 
+                        ChatColor.WHITE + stats.getPlayerName() + " - " + 
+                        ChatColor.RED + stats.getKills() + " 击杀 " + 
+                        ChatColor.GRAY + "(KD: " + String.format("%.2f", stats.getKDRatio()) + ")");
+                    rank++;
+                }
+                player.sendMessage(ChatColor.GOLD + "=========================================");
+                break;
+            }
+            
+            case "kd": {
+                player.sendMessage(ChatColor.GOLD + "========== KD比率排行榜 TOP 10 ==========");
+                player.sendMessage(ChatColor.GRAY + "（需要至少 10 场游戏才能上榜）");
+                int rank = 1;
+                for (PlayerStatsManager.PlayerStats stats : statsManager.getLeaderboard(StatsRankIndex.RankType.KD)) {
+                    String medal = getMedalForRank(rank);
+                    player.sendMessage(ChatColor.YELLOW + "#" + rank + " " + medal + " " + 
+                        ChatColor.WHITE + stats.getPlayerName() + " - " + 
+                        ChatColor.GOLD + String.format("%.2f", stats.getKDRatio()) + " KD " + 
+                        ChatColor.GRAY + "(" + stats.getKills() + "/" + stats.getDeaths() + ")");
+                    rank++;
+                }
+                player.sendMessage(ChatColor.GOLD + "=========================================");
+                break;
+            }
             
             default:
                 player.sendMessage(ChatColor.RED + "无效的排行榜类型！可用: wins, kills, kd");
@@ -731,6 +1076,44 @@ public class RipvpCommand implements CommandExecutor, TabCompleter {
         }
     }
     
+    /**
+     * 显示周期排行榜（今日 / 本周 / 本月，异步查询每日汇总）
+     */
+    private void showPeriodLeaderboard(Player player, String type, StatsPeriod period) {
+        StatsRankIndex.RankType rankType;
+        switch (type) {
+            case "wins": rankType = StatsRankIndex.RankType.WINS; break;
+            case "kills": rankType = StatsRankIndex.RankType.KILLS; break;
+            case "kd": rankType = StatsRankIndex.RankType.KD; break;
+            default:
+                player.sendMessage(ChatColor.RED + "无效的排行榜类型！可用: wins, kills, kd");
+                return;
+        }
+        
+        player.sendMessage(ChatColor.AQUA + "正在加载排行榜...");
+        statsManager.getPeriodTop(period, rankType, 10).thenAccept(top -> {
+            player.getScheduler().run(RandomItemPVP.getInstance(), task -> {
+                String title = rankType == StatsRankIndex.RankType.WINS ? "胜利"
+                    : rankType == StatsRankIndex.RankType.KILLS ? "击杀" : "KD比率";
+                player.sendMessage(ChatColor.GOLD + "========== " + period.getDisplayName() + title + "排行榜 TOP 10 ==========");
+                if (top.isEmpty()) {
+                    player.sendMessage(ChatColor.GRAY + "暂无数据");
+                }
+                int rank = 1;
+                for (PlayerStatsManager.PlayerStats stats : top) {
+                    String value = rankType == StatsRankIndex.RankType.WINS ? ChatColor.GREEN + "" + stats.getWins() + " 胜"
+                        : rankType == StatsRankIndex.RankType.KILLS ? ChatColor.RED + "" + stats.getKills() + " 击杀"
+                        : ChatColor.GOLD + String.format("%.2f", stats.getKDRatio()) + " KD";
+                    player.sendMessage(ChatColor.YELLOW + "#" + rank + " " + getMedalForRank(rank) + " " + 
+                        ChatColor.WHITE + stats.getPlayerName() + " - " + value + " " + 
+                        ChatColor.GRAY + "(" + stats.getGamesPlayed() + " 场)");
+                    rank++;
+                }
+                player.sendMessage(ChatColor.GOLD + "=========================================");
+            }, null);
+        });
+    }
+    
     /**
      * 获取排名对应的奖牌
      */
@@ -0,0 +1,370 @@
+package org.luminolcraft.randomitempvp;
+
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 数据库结构迁移
+ * 当前版本记录在 schema_version 表中，启动时按顺序执行尚未执行的迁移。
+ * 新的表结构变更只需在末尾追加一个迁移，不要修改已发布的迁移
+ */
+public class SchemaMigrator {
+    private final JavaPlugin plugin;
+    private final DatabaseManager.DatabaseType databaseType;
+    private final List<Migration> migrations = new ArrayList<>();
+    
+    /**
+     * 单个迁移：版本号、说明，以及 SQLite / MySQL 各自的语句
+     */
+    private static class Migration {
+        private final int version;
+        private final String description;
+        private final String[] sqliteStatements;
+        private final String[] mysqlStatements;
+        
+        Migration(int version, String description, String[] sqliteStatements, String[] mysqlStatements) {
+            this.version = version;
+            this.description = description;
+            this.sqliteStatements = sqliteStatements;
+            this.mysqlStatements = mysqlStatements;
+        }
+    }
+    
+    public SchemaMigrator(JavaPlugin plugin, DatabaseManager.DatabaseType databaseType) {
+        this.plugin = plugin;
+        this.databaseType = databaseType;
+        registerMigrations();
+    }
+    
+    /**
+     * 注册所有迁移（版本号必须递增）
+     */
+    private void registerMigrations() {
+        // 版本 1：基础数据表（使用 IF NOT EXISTS，兼容引入迁移前创建的数据库）
+        migrations.add(new Migration(1, "创建基础数据表",
+            new String[] {
+                """
+                CREATE TABLE IF NOT EXISTS player_stats (
+                    uuid TEXT PRIMARY KEY,
+                    player_name TEXT NOT NULL,
+                    wins INTEGER DEFAULT 0,
+                    losses INTEGER DEFAULT 0,
+                    kills INTEGER DEFAULT 0,
+                    deaths INTEGER DEFAULT 0,
+                    games_played INTEGER DEFAULT 0,
+                    last_played INTEGER DEFAULT 0
+                )
+                """,
+                """
+                CREATE TABLE IF NOT EXISTS match_history (
+                    id INTEGER PRIMARY KEY AUTOINCREMENT,
+                    arena TEXT NOT NULL,
+                    map_id TEXT,
+                    winner_uuid TEXT,
+                    winner_name TEXT,
+                    player_count INTEGER DEFAULT 0,
+                    started_at INTEGER DEFAULT 0,
+                    ended_at INTEGER DEFAULT 0,
+                    duration INTEGER DEFAULT 0
+                )
+                """,
+                """
+                CREATE TABLE IF NOT EXISTS match_players (
+                    match_id INTEGER NOT NULL,
+                    uuid TEXT NOT NULL,
+                    player_name TEXT NOT NULL,
+                    kills INTEGER DEFAULT 0,
+                    deaths INTEGER DEFAULT 0,
+                    result TEXT NOT NULL,
+                    ended_at INTEGER DEFAULT 0,
+                    PRIMARY KEY (match_id, uuid)
+                )
+                """,
+                "CREATE INDEX IF NOT EXISTS idx_match_history_ended ON match_history (ended_at, id)",
+                "CREATE INDEX IF NOT EXISTS idx_match_players_player ON match_players (uuid, ended_at, match_id)"
+            },
+            new String[] {
+                """
+                CREATE TABLE IF NOT EXISTS player_stats (
+                    uuid VARCHAR(36) PRIMARY KEY,
+                    player_name VARCHAR(16) NOT NULL,
+                    wins INT DEFAULT 0,
+                    losses INT DEFAULT 0,
+                    kills INT DEFAULT 0,
+                    deaths INT DEFAULT 0,
+                    games_played INT DEFAULT 0,
+                    last_played BIGINT DEFAULT 0,
+                    INDEX idx_wins (wins),
+                    INDEX idx_kills (kills)
+                ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
+                """,
+                """
+                CREATE TABLE IF NOT EXISTS match_history (
+                    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+                    arena VARCHAR(64) NOT NULL,
+                    map_id VARCHAR(64),
+                    winner_uuid VARCHAR(36),
+                    winner_name VARCHAR(16),
+                    player_count INT DEFAULT 0,
+                    started_at BIGINT DEFAULT 0,
+                    ended_at BIGINT DEFAULT 0,
+                    duration BIGINT DEFAULT 0,
+                    INDEX idx_match_history_ended (ended_at, id)
+                ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
+                """,
+                """
+                CREATE TABLE IF NOT EXISTS match_players (
+                    match_id BIGINT NOT NULL,
+                    uuid VARCHAR(36) NOT NULL,
+                    player_name VARCHAR(16) NOT NULL,
+                    kills INT DEFAULT 0,
+                    deaths INT DEFAULT 0,
+                    result VARCHAR(8) NOT NULL,
+                    ended_at BIGINT DEFAULT 0,
+                    PRIMARY KEY (match_id, uuid),
+                    INDEX idx_match_players_player (uuid, ended_at, match_id)
+                ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
+                """
+            }));
+        
+        // 版本 2：胜利/击杀排行榜索引（MySQL 的 player_stats 建表时已包含）
+        migrations.add(new Migration(2, "胜利/击杀排行榜索引",
+            new String[] {
+                "CREATE INDEX IF NOT EXISTS idx_wins ON player_stats (wins)",
+                "CREATE INDEX IF NOT EXISTS idx_kills ON player_stats (kills)"
+            },
+            new String[0]));
+        
+        // 版本 3：KD 生成列及索引（无死亡时 KD 等于击杀数，与 PlayerStats.getKDRatio 一致）
+        // SQLite 使用部分索引，只包含满足上榜条件（至少 10 场）的玩家
+        migrations.add(new Migration(3, "KD 生成列及索引",
+            new String[] {
+                "ALTER TABLE player_stats ADD COLUMN kd_ratio REAL GENERATED ALWAYS AS " +
+                    "(CASE WHEN deaths = 0 THEN CAST(kills AS REAL) ELSE CAST(kills AS REAL) / deaths END) VIRTUAL",
+                "CREATE INDEX IF NOT EXISTS idx_kd ON player_stats (kd_ratio) WHERE games_played >= 10"
+            },
+            new String[] {
+                "ALTER TABLE player_stats ADD COLUMN kd_ratio DOUBLE AS " +
+                    "(IF(deaths = 0, kills, kills / deaths)) STORED, ADD INDEX idx_kd (kd_ratio)"
+            }));
+        
+        // 版本 4：插件元数据（记录 UUID 存储格式等运行时状态）
+        migrations.add(new Migration(4, "插件元数据表",
+            new String[] {
+                "CREATE TABLE IF NOT EXISTS plugin_meta (meta_key TEXT PRIMARY KEY, meta_value TEXT)"
+            },
+            new String[] {
+                "CREATE TABLE IF NOT EXISTS plugin_meta (meta_key VARCHAR(64) PRIMARY KEY, meta_value VARCHAR(255)) " +
+                    "ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci"
+            }));
+        
+        // 版本 5：赛季统计（按赛季 ID 分区，换季只切换当前赛季 ID，旧赛季数据保留可查）
+        // uuid 始终以文本存储，不参与 player_stats 的二进制 UUID 迁移
+        migrations.add(new Migration(5, "赛季统计表",
+            new String[] {
+                """
+                CREATE TABLE IF NOT EXISTS season_stats (
+                    season_id TEXT NOT NULL,
+                    uuid TEXT NOT NULL,
+                    player_name TEXT NOT NULL,
+                    wins INTEGER DEFAULT 0,
+                    losses INTEGER DEFAULT 0,
+                    kills INTEGER DEFAULT 0,
+                    deaths INTEGER DEFAULT 0,
+                    games_played INTEGER DEFAULT 0,
+                    last_played INTEGER DEFAULT 0,
+                    kd_ratio REAL GENERATED ALWAYS AS
+                        (CASE WHEN deaths = 0 THEN CAST(kills AS REAL) ELSE CAST(kills AS REAL) / deaths END) VIRTUAL,
+                    PRIMARY KEY (season_id, uuid)
+                )
+                """,
+                "CREATE INDEX IF NOT EXISTS idx_season_wins ON season_stats (season_id, wins)",
+                "CREATE INDEX IF NOT EXISTS idx_season_kills ON season_stats (season_id, kills)",
+                "CREATE INDEX IF NOT EXISTS idx_season_kd ON season_stats (season_id, kd_ratio) WHERE games_played >= 10"
+            },
+            new String[] {
+                """
+                CREATE TABLE IF NOT EXISTS season_stats (
+                    season_id VARCHAR(32) NOT NULL,
+                    uuid VARCHAR(36) NOT NULL,
+                    player_name VARCHAR(16) NOT NULL,
+                    wins INT DEFAULT 0,
+                    losses INT DEFAULT 0,
+                    kills INT DEFAULT 0,
+                    deaths INT DEFAULT 0,
+                    games_played INT DEFAULT 0,
+                    last_played BIGINT DEFAULT 0,
+                    kd_ratio DOUBLE AS (IF(deaths = 0, kills, kills / deaths)) STORED,
+                    PRIMARY KEY (season_id, uuid),
+                    INDEX idx_season_wins (season_id, wins),
+                    INDEX idx_season_kills (season_id, kills),
+                    INDEX idx_season_kd (season_id, kd_ratio)
+                ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
+                """
+            }));
+        
+        // 版本 6：每日汇总（写入统计时按自然日累加，周期排行榜只需对少量每日汇总行求和）
+        migrations.add(new Migration(6, "每日统计汇总表",
+            new String[] {
+                """
+                CREATE TABLE IF NOT EXISTS daily_stats (
+                    day INTEGER NOT NULL,
+                    uuid TEXT NOT NULL,
+                    player_name TEXT NOT NULL,
+                    wins INTEGER DEFAULT 0,
+                    losses INTEGER DEFAULT 0,
+                    kills INTEGER DEFAULT 0,
+                    deaths INTEGER DEFAULT 0,
+                    games_played INTEGER DEFAULT 0,
+                    last_played INTEGER DEFAULT 0,
+                    PRIMARY KEY (day, uuid)
+                )
+                """
+            },
+            new String[] {
+                """
+                CREATE TABLE IF NOT EXISTS daily_stats (
+                    day INT NOT NULL,
+                    uuid VARCHAR(36) NOT NULL,
+                    player_name VARCHAR(16) NOT NULL,
+                    wins INT DEFAULT 0,
+                    losses INT DEFAULT 0,
+                    kills INT DEFAULT 0,
+                    deaths INT DEFAULT 0,
+                    games_played INT DEFAULT 0,
+                    last_played BIGINT DEFAULT 0,
+                    PRIMARY KEY (day, uuid)
+                ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
+                """
+            }));
+        
+        // 版本 7：战斗数据（每局比赛结束时随比赛结果写入一次：match_players 记录单局，player_stats 累计）
+        migrations.add(new Migration(7, "战斗数据列",
+            new String[] {
+                "ALTER TABLE match_players ADD COLUMN damage_dealt INTEGER DEFAULT 0",
+                "ALTER TABLE match_players ADD COLUMN damage_taken INTEGER DEFAULT 0",
+                "ALTER TABLE match_players ADD COLUMN items_received INTEGER DEFAULT 0",
+                "ALTER TABLE match_players ADD COLUMN tnt_thrown INTEGER DEFAULT 0",
+                "ALTER TABLE match_players ADD COLUMN fireballs_thrown INTEGER DEFAULT 0",
+                "ALTER TABLE match_players ADD COLUMN airdrops_opened INTEGER DEFAULT 0",
+                "ALTER TABLE match_players ADD COLUMN time_survived INTEGER DEFAULT 0",
+                "ALTER TABLE player_stats ADD COLUMN damage_dealt INTEGER DEFAULT 0",
+                "ALTER TABLE player_stats ADD COLUMN damage_taken INTEGER DEFAULT 0",
+                "ALTER TABLE player_stats ADD COLUMN items_received INTEGER DEFAULT 0",
+                "ALTER TABLE player_stats ADD COLUMN tnt_thrown INTEGER DEFAULT 0",
+                "ALTER TABLE player_stats ADD COLUMN fireballs_thrown INTEGER DEFAULT 0",
+                "ALTER TABLE player_stats ADD COLUMN airdrops_opened INTEGER DEFAULT 0",
+                "ALTER TABLE player_stats ADD COLUMN time_survived INTEGER DEFAULT 0"
+            },
+            new String[] {
+                "ALTER TABLE match_players " +
+                    "ADD COLUMN damage_dealt BIGINT DEFAULT 0, " +
+                    "ADD COLUMN damage_taken BIGINT DEFAULT 0, " +
+                    "ADD COLUMN items_received BIGINT DEFAULT 0, " +
+                    "ADD COLUMN tnt_thrown BIGINT DEFAULT 0, " +
+                    "ADD COLUMN fireballs_thrown BIGINT DEFAULT 0, " +
+                    "ADD COLUMN airdrops_opened BIGINT DEFAULT 0, " +
+                    "ADD COLUMN time_survived BIGINT DEFAULT 0",
+                "ALTER TABLE player_stats " +
+                    "ADD COLUMN damage_dealt BIGINT DEFAULT 0, " +
+                    "ADD COLUMN damage_taken BIGINT DEFAULT 0, " +
+                    "ADD COLUMN items_received BIGINT DEFAULT 0, " +
+                    "ADD COLUMN tnt_thrown BIGINT DEFAULT 0, " +
+                    "ADD COLUMN fireballs_thrown BIGINT DEFAULT 0, " +
+                    "ADD COLUMN airdrops_opened BIGINT DEFAULT 0, " +
+                    "ADD COLUMN time_survived BIGINT DEFAULT 0"
+            }));
+        
+        // 版本 8：名称索引（小写名称 -> UUID，只在玩家改名时写入，用于按名称查询离线玩家）
+        // 已有玩家的名称由 JdbcStatsStore.buildNameIndex 在启动后分批补齐
+        migrations.add(new Migration(8, "玩家名称索引表",
+            new String[] {
+                """
+                CREATE TABLE IF NOT EXISTS player_names (
+                    name_lower TEXT PRIMARY KEY,
+                    uuid TEXT NOT NULL,
+                    player_name TEXT NOT NULL,
+                    last_seen INTEGER DEFAULT 0
+                )
+                """,
+                "CREATE INDEX IF NOT EXISTS idx_player_names_uuid ON player_names (uuid)"
+            },
+            new String[] {
+                """
+                CREATE TABLE IF NOT EXISTS player_names (
+                    name_lower VARCHAR(16) PRIMARY KEY,
+                    uuid VARCHAR(36) NOT NULL,
+                    player_name VARCHAR(16) NOT NULL,
+                    last_seen BIGINT DEFAULT 0,
+                    INDEX idx_player_names_uuid (uuid)
+                ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
+                """
+            }));
+    }
+    
+    /**
+     * 执行所有尚未执行的迁移
+     * SQLite 中每个迁移在一个事务中执行；MySQL 的 DDL 会隐式提交，失败后需要人工检查
+     * @return 迁移后的版本号
+     */
+    public int migrate(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS schema_version (version INT PRIMARY KEY, description VARCHAR(128), applied_at BIGINT)");
+        }
+        
+        int currentVersion = getCurrentVersion(conn);
+        for (Migration migration : migrations) {
+            if (migration.version <= currentVersion) {
+                continue;
+            }
+            
+            String[] statements = databaseType == DatabaseManager.DatabaseType.SQLITE
+                ? migration.sqliteStatements : migration.mysqlStatements;
+            
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                try (Statement stmt = conn.createStatement()) {
+                    for (String sql : statements) {
+                        stmt.execute(sql);
+                    }
+                }
+                try (PreparedStatement stmt = conn.prepareStatement(
+                        "INSERT INTO schema_version (version, description, applied_at) VALUES (?, ?, ?)")) {
+                    stmt.setInt(1, migration.version);
+                    stmt.setString(2, migration.description);
+                    stmt.setLong(3, System.currentTimeMillis());
+                    stmt.executeUpdate();
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                plugin.getLogger().severe("数据库迁移失败（版本 " + migration.version + "：" + migration.description + "）");
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+            
+            currentVersion = migration.version;
+            plugin.getLogger().info("数据库结构已升级到版本 " + currentVersion + "：" + migration.description);
+        }
+        return currentVersion;
+    }
+    
+    /**
+     * 获取当前数据库结构版本（未执行过任何迁移时为 0）
+     */
+    private int getCurrentVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT MAX(version) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package org.luminolcraft.randomitempvp;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 玩家统计批量加载器
+ * 在一个短时间窗口内收集统计查询请求，合并成一次批量加载（一条 IN 查询 + 一条多行插入），
+ * 再完成所有等待中的 Future。大量玩家同时进服（重启、代理重连）时，
+ * 数据库只需执行少量查询，而不是每名玩家一次
+ */
+public class StatsBatchLoader {
+    
+    /**
+     * 批量加载处理器（在数据库线程中调用）
+     */
+    public interface BatchHandler {
+        /**
+         * @param requests 本批次请求的玩家 UUID 和名称（按请求顺序）
+         * @return 每名玩家的统计数据（缺失的玩家视为加载失败）
+         */
+        Map<UUID, PlayerStatsManager.PlayerStats> load(Map<UUID, String> requests);
+    }
+    
+    /**
+     * 同一批次中同一玩家的请求共用一个 Future
+     */
+    private static class Request {
+        private String playerName;
+        private final CompletableFuture<PlayerStatsManager.PlayerStats> future = new CompletableFuture<>();
+        
+        Request(String playerName) {
+            this.playerName = playerName;
+        }
+    }
+    
+    private final JavaPlugin plugin;
+    private final DatabaseManager database;
+    private final BatchHandler handler;
+    private final long windowMillis;
+    private final int maxBatchSize;
+    
+    // 当前窗口内收集的请求（按请求顺序）
+    private Map<UUID, Request> queue = new LinkedHashMap<>();
+    private boolean dispatchScheduled = false;
+    
+    public StatsBatchLoader(JavaPlugin plugin, DatabaseManager database, long windowMillis, int maxBatchSize, BatchHandler handler) {
+        this.plugin = plugin;
+        this.database = database;
+        this.handler = handler;
+        this.windowMillis = Math.max(1L, windowMillis);
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+    }
+    
+    /**
+     * 请求加载一名玩家的统计数据
+     * 第一个请求开启收集窗口，窗口结束或请求数达到上限时统一加载
+     */
+    public CompletableFuture<PlayerStatsManager.PlayerStats> load(UUID uuid, String playerName) {
+        Map<UUID, Request> full = null;
+        Request request;
+        synchronized (this) {
+            request = queue.get(uuid);
+            if (request != null) {
+                request.playerName = playerName; // 使用最新的名称
+                return request.future;
+            }
+            
+            request = new Request(playerName);
+            queue.put(uuid, request);
+            if (queue.size() >= maxBatchSize) {
+                full = takeQueue();
+            } else if (!dispatchScheduled) {
+                dispatchScheduled = true;
+                Bukkit.getAsyncScheduler().runDelayed(plugin, task -> dispatchQueue(), windowMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+        
+        if (full != null) {
+            dispatch(full);
+        }
+        return request.future;
+    }
+    
+    /**
+     * 窗口结束：加载收集到的所有请求
+     */
+    private void dispatchQueue() {
+        Map<UUID, Request> batch;
+        synchronized (this) {
+            dispatchScheduled = false;
+            batch = takeQueue();
+        }
+        dispatch(batch);
+    }
+    
+    /**
+     * 取出当前队列（调用方持有锁）
+     * 已调度的窗口任务仍会执行，届时队列为空或只包含之后的新请求
+     */
+    private Map<UUID, Request> takeQueue() {
+        Map<UUID, Request> batch = queue;
+        queue = new LinkedHashMap<>();
+        return batch;
+    }
+    
+    /**
+     * 在数据库线程中加载一个批次并完成所有 Future
+     */
+    private void dispatch(Map<UUID, Request> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        
+        Map<UUID, String> requests = new LinkedHashMap<>();
+        for (Map.Entry<UUID, Request> entry : batch.entrySet()) {
+            requests.put(entry.getKey(), entry.getValue().playerName);
+        }
+        
+        database.supplyAsync(() -> handler.load(requests)).whenComplete((results, error) -> {
+            for (Map.Entry<UUID, Request> entry : batch.entrySet()) {
+                PlayerStatsManager.PlayerStats stats = results != null ? results.get(entry.getKey()) : null;
+                if (stats != null) {
+                    entry.getValue().future.complete(stats);
+                } else if (error != null) {
+                    entry.getValue().future.completeExceptionally(error);
+                } else {
+                    entry.getValue().future.completeExceptionally(
+                        new IllegalStateException("未能加载玩家统计数据：" + entry.getKey()));
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,68 @@
+package org.luminolcraft.randomitempvp;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+/**
+ * 周期排行榜的统计周期
+ * 统计按服务器时区的自然日汇总到 daily_stats（每名玩家每天一行），
+ * 本周 / 本月的数据由周期内最多 7 / 31 行每日汇总相加得到
+ */
+public enum StatsPeriod {
+    DAY("今日"),
+    WEEK("本周"),
+    MONTH("本月");
+    
+    private final String displayName;
+    
+    StatsPeriod(String displayName) {
+        this.displayName = displayName;
+    }
+    
+    public String getDisplayName() {
+        return displayName;
+    }
+    
+    /**
+     * 获取周期的第一天（从 1970-01-01 起的天数）
+     * @param today 今天
+     */
+    public long getStartDay(LocalDate today) {
+        switch (this) {
+            case WEEK:
+                return today.with(DayOfWeek.MONDAY).toEpochDay();
+            case MONTH:
+                return today.withDayOfMonth(1).toEpochDay();
+            case DAY:
+            default:
+                return today.toEpochDay();
+        }
+    }
+    
+    /**
+     * 把时间戳换算为服务器时区的日期（从 1970-01-01 起的天数）
+     */
+    public static long epochDay(long millis) {
+        return Instant.ofEpochMilli(millis).atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay();
+    }
+    
+    /**
+     * 按名称解析周期（today / day / week / month）
+     * @return 周期，无法识别时返回 null
+     */
+    public static StatsPeriod parse(String name) {
+        switch (name.toLowerCase()) {
+            case "today":
+            case "day":
+                return DAY;
+            case "week":
+                return WEEK;
+            case "month":
+                return MONTH;
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package org.luminolcraft.randomitempvp;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 玩家排名索引
+ * 每种排名使用一棵按分数分桶的树状数组（Fenwick tree），
+ * 查询排名只需统计分数更高的玩家数量，复杂度 O(log n)，不需要 SQL
+ */
+public class StatsRankIndex {
+    
+    /**
+     * 排名类型
+     */
+    public enum RankType {
+        WINS,
+        KILLS,
+        KD
+    }
+    
+    // KD 按两位小数分桶（与显示精度一致）
+    private static final int KD_SCALE = 100;
+    // KD 排名需要的最少场次（与 KD 排行榜一致）
+    public static final int MIN_KD_GAMES = 10;
+    // 单个分数的上限（超出的分数按上限计算，避免数组无限增长）
+    private static final int MAX_SCORE = (1 << 20) - 1;
+    
+    // 每个玩家的累计数据：[胜利, 击杀, 死亡, 场次]
+    private final Map<UUID, int[]> totals = new HashMap<>();
+    private final ScoreTree winsTree = new ScoreTree();
+    private final ScoreTree killsTree = new ScoreTree();
+    private final ScoreTree kdTree = new ScoreTree();
+    private volatile boolean loaded = false;
+    
+    /**
+     * 用完整的数据初始化索引（启动时调用一次）
+     * @param data 每个玩家的 [胜利, 击杀, 死亡, 场次]
+     */
+    public synchronized void load(Map<UUID, int[]> data) {
+        totals.clear();
+        winsTree.clear();
+        killsTree.clear();
+        kdTree.clear();
+        
+        for (Map.Entry<UUID, int[]> entry : data.entrySet()) {
+            int[] values = entry.getValue().clone();
+            totals.put(entry.getKey(), values);
+            insert(values);
+        }
+        loaded = true;
+    }
+    
+    /**
+     * 索引是否已加载完成
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+    
+    /**
+     * 增量更新一个玩家的数据（未加载完成时忽略，加载时会包含这些增量）
+     */
+    public synchronized void apply(UUID uuid, StatsWriteJournal.Delta delta) {
+        if (!loaded) {
+            return;
+        }
+        
+        int[] values = totals.get(uuid);
+        if (values == null) {
+            values = new int[4];
+            totals.put(uuid, values);
+        } else {
+            remove(values);
+        }
+        
+        values[0] += delta.getWins();
+        values[1] += delta.getKills();
+        values[2] += delta.getDeaths();
+        values[3] += delta.getGamesPlayed();
+        insert(values);
+    }
+    
+    /**
+     * 获取玩家排名（并列时名次相同）
+     * @return 排名（从 1 开始），如果玩家未上榜或索引未加载则返回 0
+     */
+    public synchronized int getRank(UUID uuid, RankType type) {
+        if (!loaded) {
+            return 0;
+        }
+        
+        int[] values = totals.get(uuid);
+        if (values == null) {
+            return 0;
+        }
+        
+        switch (type) {
+            case WINS:
+                return winsTree.countGreater(clamp(values[0])) + 1;
+            case KILLS:
+                return killsTree.countGreater(clamp(values[1])) + 1;
+            case KD:
+                if (values[3] < MIN_KD_GAMES) {
+                    return 0;
+                }
+                return kdTree.countGreater(kdScore(values)) + 1;
+            default:
+                return 0;
+        }
+    }
+    
+    /**
+     * 获取参与某种排名的玩家总数
+     */
+    public synchronized int getRankedCount(RankType type) {
+        switch (type) {
+            case WINS:
+                return winsTree.size();
+            case KILLS:
+                return killsTree.size();
+            case KD:
+                return kdTree.size();
+            default:
+                return 0;
+        }
+    }
+    
+    private void insert(int[] values) {
+        winsTree.add(clamp(values[0]), 1);
+        killsTree.add(clamp(values[1]), 1);
+        if (values[3] >= MIN_KD_GAMES) {
+            kdTree.add(kdScore(values), 1);
+        }
+    }
+    
+    private void remove(int[] values) {
+        winsTree.add(clamp(values[0]), -1);
+        killsTree.add(clamp(values[1]), -1);
+        if (values[3] >= MIN_KD_GAMES) {
+            kdTree.add(kdScore(values), -1);
+        }
+    }
+    
+    /**
+     * KD 分数（与 PlayerStats.getKDRatio 一致：无死亡时按击杀数计算）
+     */
+    private static int kdScore(int[] values) {
+        int kills = values[1];
+        int deaths = values[2];
+        double kd = deaths == 0 ? kills : (double) kills / deaths;
+        return clamp((int) Math.round(kd * KD_SCALE));
+    }
+    
+    private static int clamp(int score) {
+        return Math.max(0, Math.min(MAX_SCORE, score));
+    }
+    
+    /**
+     * 按分数分桶的树状数组，容量不足时按 2 的幂扩容
+     */
+    private static class ScoreTree {
+        private int[] tree = new int[65]; // 1-based，容量 64
+        private int capacity = 64;
+        private int size = 0;
+        
+        void clear() {
+            tree = new int[65];
+            capacity = 64;
+            size = 0;
+        }
+        
+        int size() {
+            return size;
+        }
+        
+        void add(int score, int count) {
+            ensureCapacity(score + 1);
+            size += count;
+            for (int i = score + 1; i <= capacity; i += i & -i) {
+                tree[i] += count;
+            }
+        }
+        
+        /**
+         * 统计分数严格大于 score 的数量
+         */
+        int countGreater(int score) {
+            return size - prefix(Math.min(score + 1, capacity));
+        }
+        
+        /**
+         * 统计分数位于 [0, index) 的数量
+         */
+        private int prefix(int index) {
+            int sum = 0;
+            for (int i = index; i > 0; i -= i & -i) {
+                sum += tree[i];
+            }
+            return sum;
+        }
+        
+        /**
+         * 扩容：容量翻倍时，原有节点不变，新区间的节点为 0，
+         * 只有新的最高节点覆盖全部区间，等于当前总数
+         */
+        private void ensureCapacity(int required) {
+            while (required > capacity) {
+                int newCapacity = capacity << 1;
+                int[] newTree = new int[newCapacity + 1];
+                System.arraycopy(tree, 0, newTree, 0, capacity + 1);
+                newTree[newCapacity] = size;
+                tree = newTree;
+                capacity = newCapacity;
+            }
+        }
+    }
+}
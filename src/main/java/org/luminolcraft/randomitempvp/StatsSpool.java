@@ -0,0 +1,575 @@
+package org.luminolcraft.randomitempvp;
+
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 统计数据本地暂存（数据库不可用时使用）
+ * 增量以追加方式写入本地分段文件，每批写入后执行一次 fsync；
+ * 数据库恢复后按写入顺序重放，每批重放与重放位置（plugin_meta）在同一个事务中提交，
+ * 中途失败或重启后从上次提交的位置继续，不会重复累加；
+ * 因数据本身的问题（约束冲突、数据错误等）无法写入的记录原样移入 quarantine.log 并跳过
+ *
+ * 文件格式：每行一条增量
+ * uuid \t 胜利 \t 失败 \t 击杀 \t 死亡 \t 场次 \t 最后游戏时间 \t 玩家名 \t 赛季 ID
+ * （赛季 ID 为空表示未启用赛季；旧版本写入的行没有赛季字段）
+ * 只处理以换行结尾的完整行（写入过程中崩溃留下的半行会被忽略）
+ *
+ * 除 getSpooled / getSpooledPlayers / getSpooledRecords 外，所有方法都应在写回日志的刷新锁内调用
+ */
+public class StatsSpool {
+    private static final String SEGMENT_PREFIX = "spool-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    // 重放位置按服务器实例分别保存（多个服务器共用数据库时互不覆盖），键为 "stats_spool_offset:<实例 ID>"
+    private static final String OFFSET_META_KEY = "stats_spool_offset";
+    private static final String INSTANCE_FILE = "instance.id";
+    private static final String QUARANTINE_FILE = "quarantine.log";
+    
+    private final JavaPlugin plugin;
+    private final DatabaseManager database;
+    private final File directory;
+    // 本服务器实例的重放位置键（首次使用时从暂存目录中的实例 ID 生成）
+    private String offsetKey = null;
+    
+    // 当前追加写入的分段（每次暂存开始时创建新分段，不向旧文件追加）
+    private FileChannel currentChannel = null;
+    private long lastSegmentId = 0;
+    // 各分段已重放到的位置（字节偏移）
+    private final Map<String, Long> replayedOffsets = new HashMap<>();
+    // 尚未重放的增量（按 UUID 合并，用于缓存加载时叠加）
+    private final Map<UUID, StatsWriteJournal.Delta> spooled = new ConcurrentHashMap<>();
+    private volatile long spooledRecords = 0;
+    // 是否存在分段文件（包括只剩无效行、尚未删除的分段）
+    private volatile boolean hasSegments = false;
+    
+    public StatsSpool(JavaPlugin plugin, DatabaseManager database, File directory) {
+        this.plugin = plugin;
+        this.database = database;
+        this.directory = directory;
+    }
+    
+    /**
+     * 加载上次运行遗留的暂存数据（启动时调用）
+     */
+    public void open() {
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+        
+        List<File> segments = listSegments();
+        if (segments.isEmpty()) {
+            return;
+        }
+        
+        // 读取已提交的重放位置（数据库不可用时从头计算，重放时会再次读取）
+        try (Connection conn = database.getConnection()) {
+            String[] offset = parseOffset(readOffset(conn));
+            if (offset != null) {
+                replayedOffsets.put(offset[0], Long.parseLong(offset[1]));
+            }
+        } catch (SQLException | NumberFormatException e) {
+            plugin.getLogger().warning("读取暂存重放位置失败：" + e.getMessage());
+        }
+        
+        reloadSpooled();
+        plugin.getLogger().info("发现 " + segments.size() + " 个统计暂存文件（" + spooledRecords + " 条增量），将在数据库可用时重放");
+    }
+    
+    /**
+     * 是否有尚未重放的暂存数据
+     */
+    public boolean isEmpty() {
+        return !hasSegments;
+    }
+    
+    /**
+     * 获取尚未重放的增量条数
+     */
+    public long getSpooledRecords() {
+        return spooledRecords;
+    }
+    
+    /**
+     * 获取某个玩家尚未重放的增量副本
+     * @return 增量副本，如果没有则返回 null
+     */
+    public StatsWriteJournal.Delta getSpooled(UUID uuid) {
+        StatsWriteJournal.Delta copy = new StatsWriteJournal.Delta(null);
+        StatsWriteJournal.Delta existing = spooled.computeIfPresent(uuid, (key, delta) -> {
+            copy.add(delta);
+            return delta;
+        });
+        return existing != null ? copy : null;
+    }
+    
+    /**
+     * 获取有暂存数据的玩家
+     */
+    public Iterable<UUID> getSpooledPlayers() {
+        return spooled.keySet();
+    }
+    
+    /**
+     * 追加一批增量，写完后执行一次 fsync
+     * @param season 增量所属的赛季 ID，null 表示未启用赛季
+     */
+    public void append(Map<UUID, StatsWriteJournal.Delta> batch, String season) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        
+        StringBuilder builder = new StringBuilder(batch.size() * 96);
+        for (Map.Entry<UUID, StatsWriteJournal.Delta> entry : batch.entrySet()) {
+            StatsWriteJournal.Delta delta = entry.getValue();
+            builder.append(entry.getKey()).append('\t')
+                .append(delta.getWins()).append('\t')
+                .append(delta.getLosses()).append('\t')
+                .append(delta.getKills()).append('\t')
+                .append(delta.getDeaths()).append('\t')
+                .append(delta.getGamesPlayed()).append('\t')
+                .append(delta.getLastPlayed()).append('\t')
+                .append(delta.getPlayerName() != null ? delta.getPlayerName() : "").append('\t')
+                .append(season != null ? season : "")
+                .append('\n');
+        }
+        
+        if (currentChannel == null) {
+            if (!directory.exists()) {
+                directory.mkdirs();
+            }
+            currentChannel = FileChannel.open(newSegment().toPath(),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            hasSegments = true;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(builder.toString().getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            currentChannel.write(buffer);
+        }
+        currentChannel.force(false);
+        
+        for (Map.Entry<UUID, StatsWriteJournal.Delta> entry : batch.entrySet()) {
+            mergeSpooled(entry.getKey(), entry.getValue());
+        }
+        spooledRecords += batch.size();
+    }
+    
+    /**
+     * 按写入顺序将暂存数据重放到数据库
+     * 重放开始时关闭当前分段，之后的暂存写入新分段；重放完成的分段会被删除
+     * @param batchSize 每个事务最多包含的增量条数
+     * @return 重放的增量条数
+     */
+    public long replay(int batchSize) throws SQLException, IOException {
+        // 先确认数据库可用（不可用时继续向当前分段追加，不产生大量小文件）
+        String[] committed;
+        try (Connection conn = database.getConnection()) {
+            committed = parseOffset(readOffset(conn));
+        }
+        if (committed != null) {
+            try {
+                replayedOffsets.merge(committed[0], Long.parseLong(committed[1]), Math::max);
+            } catch (NumberFormatException e) {
+                plugin.getLogger().warning("暂存重放位置无效：" + committed[1]);
+            }
+        }
+        closeChannel();
+        
+        long replayed = 0;
+        try {
+            for (File segment : listSegments()) {
+                replayed += replaySegment(segment, Math.max(1, batchSize));
+                replayedOffsets.remove(segment.getName());
+                if (!segment.delete()) {
+                    throw new IOException("无法删除已重放的暂存文件：" + segment.getName());
+                }
+            }
+        } finally {
+            reloadSpooled();
+        }
+        return replayed;
+    }
+    
+    /**
+     * 关闭当前分段（插件关闭时调用）
+     */
+    public void close() {
+        try {
+            closeChannel();
+        } catch (IOException e) {
+            plugin.getLogger().severe("关闭统计暂存文件失败！");
+            e.printStackTrace();
+        }
+    }
+    
+    /**
+     * 重放单个分段（从已提交的位置开始）
+     */
+    private long replaySegment(File segment, int batchSize) throws SQLException, IOException {
+        long offset = replayedOffsets.getOrDefault(segment.getName(), 0L);
+        long replayed = 0;
+        try (SegmentReader reader = new SegmentReader(segment, offset)) {
+            List<Record> batch = new ArrayList<>();
+            long position = reader.position();
+            Record record;
+            while ((record = reader.next()) != null) {
+                if (record.delta != null) {
+                    // 同一批只包含同一个赛季的增量，赛季变化时先提交之前的部分
+                    if (!batch.isEmpty() && !Objects.equals(batch.get(0).season, record.season)) {
+                        replayed += writeRecords(batch, segment.getName(), position);
+                        batch.clear();
+                    }
+                    batch.add(record);
+                }
+                position = reader.position();
+                if (batch.size() >= batchSize) {
+                    replayed += writeRecords(batch, segment.getName(), position);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty() || position > offset) {
+                replayed += writeRecords(batch, segment.getName(), position);
+            }
+        }
+        return replayed;
+    }
+    
+    /**
+     * 在一个事务中写入一批记录（同一赛季）并记录重放位置
+     * 非连接问题导致整批失败时逐条重试，仍然失败的记录移入隔离文件并跳过，
+     * 避免一条坏数据阻塞之后所有的重放
+     * @return 写入的记录条数
+     */
+    private int writeRecords(List<Record> records, String segmentName, long offset) throws SQLException, IOException {
+        String season = records.isEmpty() ? null : records.get(0).season;
+        try {
+            writeBatch(merge(records), season, segmentName, offset);
+            return records.size();
+        } catch (SQLException e) {
+            if (!isRecordFailure(e) || records.isEmpty()) {
+                throw e;
+            }
+        }
+        
+        int written = 0;
+        for (Record record : records) {
+            try {
+                writeBatch(merge(Collections.singletonList(record)), season, segmentName, record.end);
+                written++;
+            } catch (SQLException e) {
+                if (!isRecordFailure(e)) {
+                    throw e;
+                }
+                quarantine(segmentName, record, e);
+                // 单独提交跳过该记录后的位置
+                writeBatch(Collections.emptyMap(), season, segmentName, record.end);
+            }
+        }
+        // 批次末尾可能还有无法解析的行
+        writeBatch(Collections.emptyMap(), season, segmentName, offset);
+        return written;
+    }
+    
+    /**
+     * 是否为记录本身的问题（约束冲突、数据错误等），连接问题、熔断和死锁等可重试的异常返回 false
+     */
+    private static boolean isRecordFailure(SQLException e) {
+        return !(e instanceof DatabaseCircuitBreaker.CircuitOpenException)
+            && !(e instanceof SQLTransientException)
+            && !DatabaseCircuitBreaker.isConnectionFailure(e);
+    }
+    
+    private static Map<UUID, StatsWriteJournal.Delta> merge(List<Record> records) {
+        Map<UUID, StatsWriteJournal.Delta> batch = new LinkedHashMap<>();
+        for (Record record : records) {
+            StatsWriteJournal.Delta copy = new StatsWriteJournal.Delta(null);
+            copy.add(record.delta);
+            batch.merge(record.uuid, copy, (existing, added) -> {
+                existing.add(added);
+                return existing;
+            });
+        }
+        return batch;
+    }
+    
+    /**
+     * 将无法写入的记录原样追加到隔离文件（写完后 fsync），可在修正后手动处理
+     */
+    private void quarantine(String segmentName, Record record, SQLException e) throws IOException {
+        File file = new File(directory, QUARANTINE_FILE);
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap((record.text + "\n").getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+        plugin.getLogger().severe("暂存记录无法写入数据库，已移入 " + QUARANTINE_FILE + " 并跳过（" + segmentName + "）："
+            + record.text + "，原因：" + e.getMessage());
+    }
+    
+    /**
+     * 在一个事务中写入一批增量并记录重放位置
+     */
+    private void writeBatch(Map<UUID, StatsWriteJournal.Delta> batch, String season, String segmentName, long offset) throws SQLException {
+        try (Connection conn = database.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                JdbcStatsStore.writeDeltas(database, conn, season, batch);
+                database.setMeta(conn, offsetKey(), segmentName + ":" + offset);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        }
+        replayedOffsets.put(segmentName, offset);
+    }
+    
+    /**
+     * 根据剩余的分段重新计算尚未重放的增量
+     */
+    private void reloadSpooled() {
+        spooled.clear();
+        long records = 0;
+        List<File> segments = listSegments();
+        for (File segment : segments) {
+            try (SegmentReader reader = new SegmentReader(segment, replayedOffsets.getOrDefault(segment.getName(), 0L))) {
+                Record record;
+                while ((record = reader.next()) != null) {
+                    if (record.delta != null) {
+                        mergeSpooled(record.uuid, record.delta);
+                        records++;
+                    }
+                }
+            } catch (IOException e) {
+                plugin.getLogger().severe("读取统计暂存文件失败：" + segment.getName());
+                e.printStackTrace();
+            }
+        }
+        spooledRecords = records;
+        hasSegments = currentChannel != null || !segments.isEmpty();
+    }
+    
+    private void mergeSpooled(UUID uuid, StatsWriteJournal.Delta delta) {
+        StatsWriteJournal.Delta copy = new StatsWriteJournal.Delta(null);
+        copy.add(delta);
+        spooled.merge(uuid, copy, (existing, added) -> {
+            existing.add(added);
+            return existing;
+        });
+    }
+    
+    private void closeChannel() throws IOException {
+        if (currentChannel != null) {
+            try {
+                currentChannel.force(false);
+                currentChannel.close();
+            } finally {
+                currentChannel = null;
+            }
+        }
+    }
+    
+    /**
+     * 按创建顺序列出所有分段
+     */
+    private List<File> listSegments() {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (files == null) {
+            return new ArrayList<>();
+        }
+        Arrays.sort(files, (a, b) -> a.getName().compareTo(b.getName()));
+        return new ArrayList<>(Arrays.asList(files));
+    }
+    
+    /**
+     * 创建新的分段文件（文件名按创建时间递增，字典序即写入顺序）
+     */
+    private File newSegment() {
+        long id = Math.max(System.currentTimeMillis(), lastSegmentId + 1);
+        for (File segment : listSegments()) {
+            id = Math.max(id, segmentId(segment) + 1);
+        }
+        lastSegmentId = id;
+        return new File(directory, String.format("%s%015d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+    }
+    
+    private static long segmentId(File segment) {
+        String name = segment.getName();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+    
+    /**
+     * 读取本实例已提交的重放位置
+     * 没有本实例的记录时读取旧版本使用的全局键（只有分段文件名与本地分段一致时才会生效）
+     */
+    private String readOffset(Connection conn) throws SQLException {
+        String value = database.getMeta(conn, offsetKey());
+        return value != null ? value : database.getMeta(conn, OFFSET_META_KEY);
+    }
+    
+    /**
+     * 本服务器实例的重放位置键
+     * 实例 ID 保存在暂存目录中（首次使用时随机生成），重启后保持不变
+     */
+    private String offsetKey() {
+        if (offsetKey != null) {
+            return offsetKey;
+        }
+        File file = new File(directory, INSTANCE_FILE);
+        String instanceId = null;
+        try {
+            if (file.exists()) {
+                instanceId = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).trim();
+            }
+            if (instanceId == null || instanceId.isEmpty()) {
+                if (!directory.exists()) {
+                    directory.mkdirs();
+                }
+                instanceId = UUID.randomUUID().toString();
+                Files.write(file.toPath(), instanceId.getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (IOException e) {
+            // 无法保存实例 ID 时本次运行使用临时 ID（重启后从分段开头重放的风险与旧版本相同）
+            plugin.getLogger().severe("读取或保存暂存实例 ID 失败：" + e.getMessage());
+            instanceId = UUID.randomUUID().toString();
+        }
+        offsetKey = OFFSET_META_KEY + ":" + instanceId;
+        return offsetKey;
+    }
+    
+    /**
+     * 解析重放位置（"分段文件名:偏移"）
+     */
+    private static String[] parseOffset(String value) {
+        if (value == null) {
+            return null;
+        }
+        int separator = value.lastIndexOf(':');
+        if (separator <= 0) {
+            return null;
+        }
+        return new String[] { value.substring(0, separator), value.substring(separator + 1) };
+    }
+    
+    /**
+     * 暂存文件中的一行（无法解析的行 delta 为 null，跳过但仍推进位置）
+     */
+    private static class Record {
+        private final UUID uuid;
+        private final StatsWriteJournal.Delta delta;
+        private final String season;
+        // 原始文本和该行结束后的位置（用于隔离无法写入的记录）
+        private final String text;
+        private final long end;
+        
+        Record(UUID uuid, StatsWriteJournal.Delta delta, String season, String text, long end) {
+            this.uuid = uuid;
+            this.delta = delta;
+            this.season = season;
+            this.text = text;
+            this.end = end;
+        }
+    }
+    
+    /**
+     * 按行读取分段，记录已读取完整行的字节位置
+     */
+    private class SegmentReader implements AutoCloseable {
+        private final File segment;
+        private final InputStream input;
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+        private long position;
+        
+        SegmentReader(File segment, long offset) throws IOException {
+            this.segment = segment;
+            this.input = new BufferedInputStream(new FileInputStream(segment), 64 * 1024);
+            long skipped = 0;
+            while (skipped < offset) {
+                long n = input.skip(offset - skipped);
+                if (n <= 0) {
+                    break;
+                }
+                skipped += n;
+            }
+            this.position = skipped;
+        }
+        
+        /**
+         * 读取下一条完整的记录
+         * @return 记录，读到文件末尾（或末尾的半行）时返回 null
+         */
+        Record next() throws IOException {
+            line.reset();
+            int b;
+            while ((b = input.read()) != -1) {
+                if (b == '\n') {
+                    position += line.size() + 1;
+                    return parse(line.toString(StandardCharsets.UTF_8), position);
+                }
+                line.write(b);
+            }
+            return null;
+        }
+        
+        long position() {
+            return position;
+        }
+        
+        private Record parse(String text, long end) {
+            String[] fields = text.split("\t", -1);
+            if (fields.length != 8 && fields.length != 9) {
+                plugin.getLogger().warning("跳过无法解析的暂存记录（" + segment.getName() + "）：" + text);
+                return new Record(null, null, null, text, end);
+            }
+            try {
+                UUID uuid = UUID.fromString(fields[0]);
+                StatsWriteJournal.Delta delta = StatsWriteJournal.Delta.of(fields[7].isEmpty() ? null : fields[7],
+                    Integer.parseInt(fields[1]), Integer.parseInt(fields[2]), Integer.parseInt(fields[3]),
+                    Integer.parseInt(fields[4]), Integer.parseInt(fields[5]), Long.parseLong(fields[6]));
+                String season = fields.length == 9 && !fields[8].isEmpty() ? fields[8] : null;
+                return new Record(uuid, delta, season, text, end);
+            } catch (IllegalArgumentException e) {
+                plugin.getLogger().warning("跳过无法解析的暂存记录（" + segment.getName() + "）：" + text);
+                return new Record(null, null, null, text, end);
+            }
+        }
+        
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+    }
+}
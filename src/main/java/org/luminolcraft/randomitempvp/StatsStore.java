@@ -0,0 +1,146 @@
+package org.luminolcraft.randomitempvp;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 统计数据存储后端
+ * PlayerStatsManager 和写回日志只通过此接口读写统计数据，不直接拼接 SQL。
+ * 所有方法都是阻塞的，应在数据库线程池中调用；调用方持有写回日志的刷新锁时才会写入。
+ * 统计分为总榜（player_stats）和赛季榜：写入时同时累加到 season 指定的赛季，season 为 null 表示未启用赛季；
+ * 同时按增量的游玩时间累加到当天的每日汇总
+ */
+public interface StatsStore {
+    
+    /**
+     * 批量读取玩家统计数据，不存在的玩家初始化一条空记录
+     * @param requests 玩家 UUID 和名称
+     * @return 每名玩家的统计数据
+     */
+    Map<UUID, PlayerStatsManager.PlayerStats> loadOrCreate(Map<UUID, String> requests) throws SQLException;
+    
+    /**
+     * 读取某个赛季的玩家统计（不存在的玩家不包含在结果中，不创建记录）
+     */
+    Map<UUID, PlayerStatsManager.PlayerStats> loadSeasonStats(String season, Collection<UUID> uuids) throws SQLException;
+    
+    /**
+     * 读取全体玩家用于排名的累计数据
+     * @param season 赛季 ID，null 表示总榜
+     * @return 每名玩家的 [胜利, 击杀, 死亡, 场次]
+     */
+    Map<UUID, int[]> loadRankTotals(String season) throws SQLException;
+    
+    /**
+     * 查询排行榜前 limit 名（KD 排行榜只包含至少 StatsRankIndex.MIN_KD_GAMES 场的玩家）
+     * @param season 赛季 ID，null 表示总榜
+     */
+    List<PlayerStatsManager.PlayerStats> queryTop(String season, StatsRankIndex.RankType type, int limit) throws SQLException;
+    
+    /**
+     * 查询某段日期内的排行榜（由每日汇总相加得到，不支持每日汇总的后端返回空列表）
+     * @param fromDay 第一天（从 1970-01-01 起的天数，包含）
+     * @param toDay 最后一天（包含）
+     */
+    List<PlayerStatsManager.PlayerStats> queryPeriodTop(long fromDay, long toDay, StatsRankIndex.RankType type, int limit) throws SQLException;
+    
+    /**
+     * 删除早于 beforeDay 的每日汇总
+     * @return 删除的行数
+     */
+    int pruneDailyStats(long beforeDay) throws SQLException;
+    
+    /**
+     * 累加一批统计增量到总榜和指定赛季（原子写入）
+     * @param season 当前赛季 ID，null 表示只写总榜
+     */
+    void applyDeltas(String season, Map<UUID, StatsWriteJournal.Delta> deltas) throws SQLException;
+    
+    /**
+     * 保存一局比赛：比赛记录与统计增量原子写入
+     * 不支持比赛记录的后端只累加统计增量
+     * @param season 当前赛季 ID，null 表示只写总榜
+     */
+    void commitMatch(String season, MatchResult match, Map<UUID, StatsWriteJournal.Delta> deltas) throws SQLException;
+    
+    /**
+     * 读取当前赛季 ID
+     * @return 赛季 ID，尚未设置时返回 null
+     */
+    String getActiveSeason() throws SQLException;
+    
+    /**
+     * 切换当前赛季（只修改赛季 ID，不修改任何统计数据）
+     */
+    void setActiveSeason(String season) throws SQLException;
+    
+    /**
+     * 列出有统计数据的所有赛季
+     */
+    List<String> listSeasons() throws SQLException;
+    
+    /**
+     * 分页查询某个玩家的比赛记录（按结束时间倒序）
+     * @param after 上一页返回的游标，第一页传 null
+     */
+    PlayerStatsManager.HistoryPage getPlayerHistory(UUID uuid, PlayerStatsManager.HistoryCursor after, int pageSize) throws SQLException;
+    
+    /**
+     * 分页查询全服比赛记录（按结束时间倒序）
+     * @param after 上一页返回的游标，第一页传 null
+     */
+    PlayerStatsManager.HistoryPage getServerHistory(PlayerStatsManager.HistoryCursor after, int pageSize) throws SQLException;
+    
+    /**
+     * 更新玩家名称和名称索引（只在玩家改名时调用；玩家不存在时只更新名称索引）
+     * 累加统计时不再写入名称
+     */
+    void updatePlayerName(UUID uuid, String playerName) throws SQLException;
+    
+    /**
+     * 按名称查找玩家（不区分大小写，用于查询离线玩家）
+     * @return 玩家 UUID，找不到时返回 null
+     */
+    UUID findPlayerByName(String playerName) throws SQLException;
+    
+    /**
+     * 为引入名称索引之前的玩家补齐名称索引（只执行一次）
+     * @return 写入索引的玩家数，已完成过时返回 -1
+     */
+    int buildNameIndex() throws SQLException;
+    
+    /**
+     * 按键集分页读取玩家统计（用于导出，每页一次查询，不持有长事务）
+     * @param after 上一页最后一名玩家，第一页传 null
+     */
+    List<PlayerStatsManager.PlayerStats> scanStats(UUID after, int limit) throws SQLException;
+    
+    /**
+     * 按比赛 ID 分页读取比赛记录及参赛玩家（用于导出，不支持比赛记录的后端返回空列表）
+     * @param afterId 上一页最后一场比赛的 ID，第一页传 0
+     */
+    List<StatsTransfer.MatchRecord> scanMatches(long afterId, int limit) throws SQLException;
+    
+    /**
+     * 导入一批玩家统计（累加到已有数据上，原子写入）
+     */
+    void importStats(List<PlayerStatsManager.PlayerStats> batch) throws SQLException;
+    
+    /**
+     * 导入一批比赛记录（分配新的比赛 ID，原子写入；不支持比赛记录的后端忽略）
+     */
+    void importMatches(List<StatsTransfer.MatchRecord> batch) throws SQLException;
+    
+    /**
+     * 是否为本地存储（不依赖数据库连接，不需要熔断期间的本地暂存）
+     */
+    boolean isLocal();
+    
+    /**
+     * 关闭存储，释放文件或连接资源
+     */
+    void close();
+}
@@ -0,0 +1,354 @@
+package org.luminolcraft.randomitempvp;
+
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 统计数据批量导入/导出（/ripvp stats export|import）
+ * 导出按键集分页流式读取 player_stats 和比赛记录，写入压缩的二进制文件；
+ * 导入流式读取文件，按批次以多行 upsert 累加到当前存储（可用于 SQLite/MySQL 互迁或合并两个服务器的数据）
+ *
+ * 文件格式（GZIP 压缩）：魔数、版本，之后为若干条记录（1 = 玩家统计，2 = 比赛记录），以 0 和记录数结尾
+ */
+public class StatsTransfer {
+    private static final int MAGIC = 0x52495058; // "RIPX"
+    private static final int VERSION = 1;
+    private static final byte TAG_END = 0;
+    private static final byte TAG_PLAYER = 1;
+    private static final byte TAG_MATCH = 2;
+    
+    /**
+     * 导出/导入的比赛记录
+     */
+    public static class MatchRecord {
+        private final long id;
+        private final String arenaName;
+        private final String mapId;
+        private final String winnerUuid;
+        private final String winnerName;
+        private final int playerCount;
+        private final long startedAt;
+        private final long endedAt;
+        private final long duration;
+        private final List<MatchPlayerRecord> players = new ArrayList<>();
+        
+        public MatchRecord(long id, String arenaName, String mapId, String winnerUuid, String winnerName,
+                           int playerCount, long startedAt, long endedAt, long duration) {
+            this.id = id;
+            this.arenaName = arenaName;
+            this.mapId = mapId;
+            this.winnerUuid = winnerUuid;
+            this.winnerName = winnerName;
+            this.playerCount = playerCount;
+            this.startedAt = startedAt;
+            this.endedAt = endedAt;
+            this.duration = duration;
+        }
+        
+        public long getId() { return id; }
+        public String getArenaName() { return arenaName; }
+        public String getMapId() { return mapId; }
+        public String getWinnerUuid() { return winnerUuid; }
+        public String getWinnerName() { return winnerName; }
+        public int getPlayerCount() { return playerCount; }
+        public long getStartedAt() { return startedAt; }
+        public long getEndedAt() { return endedAt; }
+        public long getDuration() { return duration; }
+        public List<MatchPlayerRecord> getPlayers() { return players; }
+    }
+    
+    /**
+     * 导出/导入的参赛玩家记录
+     */
+    public static class MatchPlayerRecord {
+        private final String uuid;
+        private final String playerName;
+        private final int kills;
+        private final int deaths;
+        private final String result;
+        private final long endedAt;
+        
+        public MatchPlayerRecord(String uuid, String playerName, int kills, int deaths, String result, long endedAt) {
+            this.uuid = uuid;
+            this.playerName = playerName;
+            this.kills = kills;
+            this.deaths = deaths;
+            this.result = result;
+            this.endedAt = endedAt;
+        }
+        
+        public String getUuid() { return uuid; }
+        public String getPlayerName() { return playerName; }
+        public int getKills() { return kills; }
+        public int getDeaths() { return deaths; }
+        public String getResult() { return result; }
+        public long getEndedAt() { return endedAt; }
+    }
+    
+    /**
+     * 导入/导出结果
+     */
+    public static class Result {
+        private final long players;
+        private final long matches;
+        
+        Result(long players, long matches) {
+            this.players = players;
+            this.matches = matches;
+        }
+        
+        public long getPlayers() { return players; }
+        public long getMatches() { return matches; }
+    }
+    
+    private final JavaPlugin plugin;
+    private final StatsStore store;
+    // 写入 player_stats 时持有写回日志的刷新锁（与日志刷新互斥）
+    private final Lock flushLock;
+    private final int batchSize;
+    private final long progressInterval;
+    
+    public StatsTransfer(JavaPlugin plugin, StatsStore store, Lock flushLock, int batchSize, long progressInterval) {
+        this.plugin = plugin;
+        this.store = store;
+        this.flushLock = flushLock;
+        this.batchSize = Math.max(1, batchSize);
+        this.progressInterval = Math.max(1L, progressInterval);
+    }
+    
+    /**
+     * 导出全部统计数据和比赛记录（阻塞，应在异步线程中调用）
+     * @param progress 进度消息
+     */
+    public Result exportTo(File file, Consumer<String> progress) throws IOException, SQLException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        
+        // 先写入临时文件，完成后再替换，导出失败时不会留下不完整的文件
+        File temp = new File(file.getPath() + ".tmp");
+        long players = 0;
+        long matches = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(new FileOutputStream(temp), 65536)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            
+            UUID after = null;
+            while (true) {
+                List<PlayerStatsManager.PlayerStats> page = store.scanStats(after, batchSize);
+                for (PlayerStatsManager.PlayerStats stats : page) {
+                    writePlayer(out, stats);
+                    if (++players % progressInterval == 0) {
+                        progress.accept("已导出 " + players + " 名玩家的统计数据...");
+                    }
+                }
+                if (page.size() < batchSize) {
+                    break;
+                }
+                after = page.get(page.size() - 1).getUuid();
+            }
+            
+            long afterId = 0;
+            while (true) {
+                List<MatchRecord> page = store.scanMatches(afterId, batchSize);
+                for (MatchRecord match : page) {
+                    writeMatch(out, match);
+                    if (++matches % progressInterval == 0) {
+                        progress.accept("已导出 " + matches + " 场比赛记录...");
+                    }
+                }
+                if (page.size() < batchSize) {
+                    break;
+                }
+                afterId = page.get(page.size() - 1).getId();
+            }
+            
+            out.writeByte(TAG_END);
+            out.writeLong(players);
+            out.writeLong(matches);
+        } catch (IOException | SQLException | RuntimeException e) {
+            temp.delete();
+            throw e;
+        }
+        
+        if (file.exists() && !file.delete()) {
+            temp.delete();
+            throw new IOException("无法覆盖已有的导出文件：" + file.getPath());
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("无法写入导出文件：" + file.getPath());
+        }
+        plugin.getLogger().info("统计数据已导出到 " + file.getPath() + "：" + players + " 名玩家，" + matches + " 场比赛");
+        return new Result(players, matches);
+    }
+    
+    /**
+     * 导入统计数据和比赛记录（阻塞，应在异步线程中调用）
+     * 玩家统计累加到已有数据上，比赛记录分配新的 ID；每批一个事务，中途失败时已提交的批次保留
+     * @param progress 进度消息
+     */
+    public Result importFrom(File file, Consumer<String> progress) throws IOException, SQLException {
+        long players = 0;
+        long matches = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(new FileInputStream(file), 65536)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("不是有效的统计导出文件");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("不支持的导出文件版本：" + version);
+            }
+            
+            List<PlayerStatsManager.PlayerStats> statsBatch = new ArrayList<>();
+            List<MatchRecord> matchBatch = new ArrayList<>();
+            while (true) {
+                byte tag = in.readByte();
+                if (tag == TAG_END) {
+                    break;
+                } else if (tag == TAG_PLAYER) {
+                    statsBatch.add(readPlayer(in));
+                    if (statsBatch.size() >= batchSize) {
+                        players = importStatsBatch(statsBatch, players, progress);
+                    }
+                } else if (tag == TAG_MATCH) {
+                    matchBatch.add(readMatch(in));
+                    if (matchBatch.size() >= batchSize) {
+                        matches = importMatchBatch(matchBatch, matches, progress);
+                    }
+                } else {
+                    throw new IOException("导出文件已损坏（未知记录类型 " + tag + "）");
+                }
+            }
+            players = importStatsBatch(statsBatch, players, progress);
+            matches = importMatchBatch(matchBatch, matches, progress);
+            
+            long expectedPlayers = in.readLong();
+            long expectedMatches = in.readLong();
+            if (expectedPlayers != players || expectedMatches != matches) {
+                throw new IOException("导出文件记录数不一致（文件记录 " + expectedPlayers + "/" + expectedMatches +
+                    "，实际读取 " + players + "/" + matches + "）");
+            }
+        }
+        plugin.getLogger().info("已从 " + file.getPath() + " 导入统计数据：" + players + " 名玩家，" + matches + " 场比赛");
+        return new Result(players, matches);
+    }
+    
+    private long importStatsBatch(List<PlayerStatsManager.PlayerStats> batch, long imported, Consumer<String> progress) throws SQLException {
+        if (batch.isEmpty()) {
+            return imported;
+        }
+        flushLock.lock();
+        try {
+            store.importStats(batch);
+        } finally {
+            flushLock.unlock();
+        }
+        long total = imported + batch.size();
+        if (total / progressInterval != imported / progressInterval) {
+            progress.accept("已导入 " + total + " 名玩家的统计数据...");
+        }
+        batch.clear();
+        return total;
+    }
+    
+    private long importMatchBatch(List<MatchRecord> batch, long imported, Consumer<String> progress) throws SQLException {
+        if (batch.isEmpty()) {
+            return imported;
+        }
+        store.importMatches(batch);
+        long total = imported + batch.size();
+        if (total / progressInterval != imported / progressInterval) {
+            progress.accept("已导入 " + total + " 场比赛记录...");
+        }
+        batch.clear();
+        return total;
+    }
+    
+    private static void writePlayer(DataOutputStream out, PlayerStatsManager.PlayerStats stats) throws IOException {
+        out.writeByte(TAG_PLAYER);
+        out.writeLong(stats.getUuid().getMostSignificantBits());
+        out.writeLong(stats.getUuid().getLeastSignificantBits());
+        writeNullable(out, stats.getPlayerName());
+        out.writeInt(stats.getWins());
+        out.writeInt(stats.getLosses());
+        out.writeInt(stats.getKills());
+        out.writeInt(stats.getDeaths());
+        out.writeInt(stats.getGamesPlayed());
+        out.writeLong(stats.getLastPlayed());
+    }
+    
+    private static PlayerStatsManager.PlayerStats readPlayer(DataInputStream in) throws IOException {
+        UUID uuid = new UUID(in.readLong(), in.readLong());
+        PlayerStatsManager.PlayerStats stats = new PlayerStatsManager.PlayerStats(uuid, readNullable(in));
+        stats.setWins(in.readInt());
+        stats.setLosses(in.readInt());
+        stats.setKills(in.readInt());
+        stats.setDeaths(in.readInt());
+        stats.setGamesPlayed(in.readInt());
+        stats.setLastPlayed(in.readLong());
+        return stats;
+    }
+    
+    private static void writeMatch(DataOutputStream out, MatchRecord match) throws IOException {
+        out.writeByte(TAG_MATCH);
+        out.writeLong(match.getId());
+        writeNullable(out, match.getArenaName());
+        writeNullable(out, match.getMapId());
+        writeNullable(out, match.getWinnerUuid());
+        writeNullable(out, match.getWinnerName());
+        out.writeInt(match.getPlayerCount());
+        out.writeLong(match.getStartedAt());
+        out.writeLong(match.getEndedAt());
+        out.writeLong(match.getDuration());
+        out.writeInt(match.getPlayers().size());
+        for (MatchPlayerRecord player : match.getPlayers()) {
+            writeNullable(out, player.getUuid());
+            writeNullable(out, player.getPlayerName());
+            out.writeInt(player.getKills());
+            out.writeInt(player.getDeaths());
+            writeNullable(out, player.getResult());
+            out.writeLong(player.getEndedAt());
+        }
+    }
+    
+    private static MatchRecord readMatch(DataInputStream in) throws IOException {
+        MatchRecord match = new MatchRecord(in.readLong(), readNullable(in), readNullable(in), readNullable(in),
+            readNullable(in), in.readInt(), in.readLong(), in.readLong(), in.readLong());
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            match.getPlayers().add(new MatchPlayerRecord(readNullable(in), readNullable(in),
+                in.readInt(), in.readInt(), readNullable(in), in.readLong()));
+        }
+        return match;
+    }
+    
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+    
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
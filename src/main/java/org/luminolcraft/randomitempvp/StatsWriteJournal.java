@@ -0,0 +1,507 @@
+package org.luminolcraft.randomitempvp;
+
+import io.papermc.paper.threadedregions.scheduler.ScheduledTask;
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * 统计数据写回日志（write-behind）
+ * 击杀/死亡/胜利/失败事件先按玩家 UUID 累加到内存计数器，
+ * 再按定时或数量阈值通过 StatsStore 批量写入（JDBC 后端为一个批处理、一个事务）。
+ * 数据库熔断期间增量写入本地暂存文件（StatsSpool），恢复后先按顺序重放暂存数据再继续写入；
+ * 本地文件存储后端不依赖数据库连接，不使用本地暂存
+ */
+public class StatsWriteJournal {
+    private final JavaPlugin plugin;
+    private final DatabaseManager database;
+    private final StatsStore store;
+    // 当前赛季 ID（刷新时读取，null 表示未启用赛季）
+    // 切换赛季时旧赛季的增量会被封存（seal），因此 pending 中的增量总是属于当前赛季
+    private final Supplier<String> season;
+    private final long flushDelayMillis;
+    private final int maxBatchSize;
+    
+    // 待写入的增量（按 UUID 合并）
+    private final Map<UUID, Delta> pending = new ConcurrentHashMap<>();
+    // 切换赛季时封存的旧赛季增量（按封存顺序写入，写入时使用封存时的赛季）
+    private final Deque<Sealed> sealed = new ConcurrentLinkedDeque<>();
+    // 保证同一时间只有一个刷新在执行
+    private final ReentrantLock flushLock = new ReentrantLock();
+    // 防止阈值刷新被重复调度
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private ScheduledTask flushTask = null;
+    // 数据库连接完成后才开始刷新（之前的增量只累积在内存中）
+    private volatile boolean started = false;
+    // 数据库不可用时的本地暂存（本地存储后端为 null）
+    private final StatsSpool spool;
+    
+    public StatsWriteJournal(JavaPlugin plugin, DatabaseManager database, StatsStore store, Supplier<String> season,
+                             long flushDelayMillis, int maxBatchSize) {
+        this.plugin = plugin;
+        this.database = database;
+        this.store = store;
+        this.season = season;
+        this.flushDelayMillis = Math.max(50L, flushDelayMillis);
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.spool = store.isLocal() ? null : new StatsSpool(plugin, database, new File(plugin.getDataFolder(), "stats-spool"));
+    }
+    
+    /**
+     * 单个玩家的统计增量
+     */
+    public static class Delta {
+        private String playerName;
+        private int wins;
+        private int losses;
+        private int kills;
+        private int deaths;
+        private int gamesPlayed;
+        private long lastPlayed;
+        
+        public Delta(String playerName) {
+            this.playerName = playerName;
+        }
+        
+        public static Delta win(String playerName) {
+            Delta delta = new Delta(playerName);
+            delta.wins = 1;
+            delta.gamesPlayed = 1;
+            delta.lastPlayed = System.currentTimeMillis();
+            return delta;
+        }
+        
+        public static Delta loss(String playerName) {
+            Delta delta = new Delta(playerName);
+            delta.losses = 1;
+            delta.gamesPlayed = 1;
+            delta.lastPlayed = System.currentTimeMillis();
+            return delta;
+        }
+        
+        public static Delta kill(String playerName) {
+            Delta delta = new Delta(playerName);
+            delta.kills = 1;
+            delta.lastPlayed = System.currentTimeMillis();
+            return delta;
+        }
+        
+        /**
+         * 按各项数值创建增量（用于从本地暂存恢复）
+         */
+        static Delta of(String playerName, int wins, int losses, int kills, int deaths, int gamesPlayed, long lastPlayed) {
+            Delta delta = new Delta(playerName);
+            delta.wins = wins;
+            delta.losses = losses;
+            delta.kills = kills;
+            delta.deaths = deaths;
+            delta.gamesPlayed = gamesPlayed;
+            delta.lastPlayed = lastPlayed;
+            return delta;
+        }
+        
+        public static Delta death(String playerName) {
+            Delta delta = new Delta(playerName);
+            delta.deaths = 1;
+            delta.lastPlayed = System.currentTimeMillis();
+            return delta;
+        }
+        
+        /**
+         * 叠加一局比赛的结果（胜负各计一场，中途离开不计场次）
+         */
+        public void addMatch(int kills, int deaths, boolean won, boolean lost, long playedAt) {
+            this.kills += kills;
+            this.deaths += deaths;
+            if (won) {
+                this.wins++;
+            }
+            if (lost) {
+                this.losses++;
+            }
+            if (won || lost) {
+                this.gamesPlayed++;
+            }
+            this.lastPlayed = Math.max(this.lastPlayed, playedAt);
+        }
+        
+        /**
+         * 合并另一个增量（名称和最后游戏时间取较新的值）
+         */
+        public void add(Delta other) {
+            if (other.playerName != null) {
+                this.playerName = other.playerName;
+            }
+            this.wins += other.wins;
+            this.losses += other.losses;
+            this.kills += other.kills;
+            this.deaths += other.deaths;
+            this.gamesPlayed += other.gamesPlayed;
+            this.lastPlayed = Math.max(this.lastPlayed, other.lastPlayed);
+        }
+        
+        public String getPlayerName() { return playerName; }
+        public int getWins() { return wins; }
+        public int getLosses() { return losses; }
+        public int getKills() { return kills; }
+        public int getDeaths() { return deaths; }
+        public int getGamesPlayed() { return gamesPlayed; }
+        public long getLastPlayed() { return lastPlayed; }
+    }
+    
+    /**
+     * 切换赛季时封存的一批增量
+     */
+    private static class Sealed {
+        private final String season;
+        private final Map<UUID, Delta> deltas;
+        
+        Sealed(String season, Map<UUID, Delta> deltas) {
+            this.season = season;
+            this.deltas = deltas;
+        }
+    }
+    
+    /**
+     * 启动定时刷新任务
+     */
+    public void start() {
+        if (spool != null) {
+            flushLock.lock();
+            try {
+                spool.open();
+            } finally {
+                flushLock.unlock();
+            }
+        }
+        started = true;
+        flushTask = Bukkit.getAsyncScheduler().runAtFixedRate(plugin, task -> flush(),
+            flushDelayMillis, flushDelayMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * 记录一个增量（只修改内存，不访问数据库）
+     */
+    public void record(UUID uuid, Delta delta) {
+        pending.merge(uuid, delta, (existing, added) -> {
+            existing.add(added);
+            return existing;
+        });
+        
+        // 达到批量上限，提前刷新
+        if (pending.size() >= maxBatchSize && flushScheduled.compareAndSet(false, true)) {
+            Bukkit.getAsyncScheduler().runNow(plugin, task -> {
+                flushScheduled.set(false);
+                flush();
+            });
+        }
+    }
+    
+    /**
+     * 封存当前所有待写入的增量，之后按指定赛季写入（切换赛季时在记录增量的锁内调用，只操作内存）
+     * @param season 这些增量所属的赛季 ID
+     */
+    public void seal(String season) {
+        Map<UUID, Delta> deltas = drainAll();
+        if (!deltas.isEmpty()) {
+            sealed.add(new Sealed(season, deltas));
+        }
+    }
+    
+    /**
+     * 获取某个玩家尚未写入数据库的增量副本（包括本地暂存中尚未重放的部分和封存的旧赛季增量）
+     * @return 增量副本，如果没有则返回 null
+     */
+    public Delta getPending(UUID uuid) {
+        Delta copy = new Delta(null);
+        boolean found = false;
+        Delta spooled = spool != null ? spool.getSpooled(uuid) : null;
+        if (spooled != null) {
+            copy.add(spooled);
+            found = true;
+        }
+        for (Sealed batch : sealed) {
+            Delta delta = batch.deltas.get(uuid);
+            if (delta != null) {
+                copy.add(delta);
+                found = true;
+            }
+        }
+        Delta existing = pending.computeIfPresent(uuid, (key, delta) -> {
+            copy.add(delta);
+            return delta;
+        });
+        return found || existing != null ? copy : null;
+    }
+    
+    /**
+     * 获取所有尚未写入数据库的增量副本
+     */
+    public Map<UUID, Delta> getPendingSnapshot() {
+        Map<UUID, Delta> snapshot = new LinkedHashMap<>();
+        if (spool != null) {
+            for (UUID uuid : spool.getSpooledPlayers()) {
+                snapshot.put(uuid, null);
+            }
+        }
+        for (Sealed batch : sealed) {
+            for (UUID uuid : batch.deltas.keySet()) {
+                snapshot.put(uuid, null);
+            }
+        }
+        for (UUID uuid : pending.keySet()) {
+            snapshot.put(uuid, null);
+        }
+        snapshot.replaceAll((uuid, ignored) -> getPending(uuid));
+        snapshot.values().removeIf(delta -> delta == null);
+        return snapshot;
+    }
+    
+    /**
+     * 获取刷新锁
+     * 持有此锁期间，日志不会向 player_stats 写入数据（用于读取一致的数据库快照）
+     */
+    public Lock getFlushLock() {
+        return flushLock;
+    }
+    
+    /**
+     * 获取待写入的增量数量（包括封存的旧赛季增量）
+     */
+    public int getPendingCount() {
+        int count = pending.size();
+        for (Sealed batch : sealed) {
+            count += batch.deltas.size();
+        }
+        return count;
+    }
+    
+    /**
+     * 获取本地暂存中尚未重放的增量条数
+     */
+    public long getSpooledCount() {
+        return spool != null ? spool.getSpooledRecords() : 0;
+    }
+    
+    /**
+     * 本地暂存中是否有尚未重放的数据
+     */
+    public boolean hasSpooled() {
+        return spool != null && !spool.isEmpty();
+    }
+    
+    /**
+     * 将所有待写入的增量刷新到数据库
+     * 每批最多 maxBatchSize 个玩家，每批一个事务
+     */
+    public void flush() {
+        if (!started || (pending.isEmpty() && sealed.isEmpty() && !hasSpooled())) {
+            return;
+        }
+        
+        flushLock.lock();
+        try {
+            // 先按顺序重放本地暂存的数据；重放完成前新的增量不直接写入数据库，
+            // 而是追加到暂存之后（保持写入顺序，内存中的待写入数据不会无限增长）
+            if (hasSpooled() && !replaySpool()) {
+                spoolSealed();
+                spool(drainAll(), season.get());
+                return;
+            }
+            
+            // 再写入封存的旧赛季增量（按旧赛季写入）
+            if (!flushSealed()) {
+                return;
+            }
+            
+            while (!pending.isEmpty()) {
+                Map<UUID, Delta> batch = drain();
+                if (batch.isEmpty()) {
+                    break;
+                }
+                
+                try {
+                    store.applyDeltas(season.get(), batch);
+                } catch (SQLException e) {
+                    database.logFailure("统计数据批量写入失败（" + batch.size() + " 名玩家）", e);
+                    if (spool == null || database.isAvailable()) {
+                        // 非连接问题，放回日志等待下次重试（不丢失数据）
+                        requeue(batch);
+                    } else {
+                        // 数据库已熔断，转入本地暂存，不再等待连接超时
+                        requeue(batch);
+                        spool(drainAll(), season.get());
+                    }
+                    break;
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+    
+    /**
+     * 停止定时任务并同步刷新剩余数据（插件关闭时调用）
+     * 无法写入数据库的增量写入本地暂存，下次启动后重放
+     */
+    public void shutdown() {
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+        flush();
+        
+        flushLock.lock();
+        try {
+            if (spool != null) {
+                spoolSealed();
+                spool(drainAll(), season.get());
+                spool.close();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+    
+    /**
+     * 重放本地暂存的数据
+     * @return 是否已全部重放
+     */
+    private boolean replaySpool() {
+        try {
+            long replayed = spool.replay(maxBatchSize);
+            if (replayed > 0) {
+                plugin.getLogger().info("数据库已恢复，已按顺序重放 " + replayed + " 条本地暂存的统计数据");
+            }
+            return spool.isEmpty();
+        } catch (SQLException e) {
+            // 熔断期间每次刷新都会尝试，不重复输出
+            if (!(e instanceof DatabaseCircuitBreaker.CircuitOpenException)) {
+                database.logFailure("重放本地暂存的统计数据失败，将在下次刷新时重试", e);
+            }
+            return false;
+        } catch (IOException e) {
+            plugin.getLogger().severe("读取本地暂存的统计数据失败！");
+            e.printStackTrace();
+            return false;
+        }
+    }
+    
+    /**
+     * 写入封存的旧赛季增量
+     * @return 是否已全部写入（失败时保留在封存队列中，数据库已熔断时转入本地暂存）
+     */
+    private boolean flushSealed() {
+        Sealed batch;
+        while ((batch = sealed.peek()) != null) {
+            try {
+                store.applyDeltas(batch.season, batch.deltas);
+                sealed.poll();
+            } catch (SQLException e) {
+                database.logFailure("旧赛季统计数据写入失败（" + batch.deltas.size() + " 名玩家）", e);
+                if (spool != null && !database.isAvailable()) {
+                    spoolSealed();
+                    spool(drainAll(), season.get());
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * 将封存的旧赛季增量按各自的赛季写入本地暂存（写入失败的保留在封存队列中）
+     */
+    private void spoolSealed() {
+        Sealed batch;
+        while ((batch = sealed.peek()) != null) {
+            try {
+                spool.append(batch.deltas, batch.season);
+                sealed.poll();
+            } catch (IOException e) {
+                plugin.getLogger().severe("写入统计暂存文件失败（" + batch.deltas.size() + " 名玩家），数据保留在内存中");
+                e.printStackTrace();
+                return;
+            }
+        }
+    }
+    
+    /**
+     * 将增量写入本地暂存（写入失败时放回日志）
+     * @param season 增量所属的赛季 ID
+     */
+    private void spool(Map<UUID, Delta> batch, String season) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        
+        boolean first = spool.isEmpty();
+        try {
+            spool.append(batch, season);
+            if (first) {
+                plugin.getLogger().warning("数据库不可用，统计数据已暂存到本地文件，恢复后将按顺序写回");
+            }
+        } catch (IOException e) {
+            plugin.getLogger().severe("写入统计暂存文件失败（" + batch.size() + " 名玩家），数据保留在内存中");
+            e.printStackTrace();
+            requeue(batch);
+        }
+    }
+    
+    /**
+     * 取出日志中的所有增量
+     */
+    private Map<UUID, Delta> drainAll() {
+        Map<UUID, Delta> all = new LinkedHashMap<>();
+        for (UUID uuid : pending.keySet()) {
+            Delta delta = pending.remove(uuid);
+            if (delta != null) {
+                all.put(uuid, delta);
+            }
+        }
+        return all;
+    }
+    
+    /**
+     * 从日志中取出最多 maxBatchSize 个增量
+     */
+    private Map<UUID, Delta> drain() {
+        Map<UUID, Delta> batch = new LinkedHashMap<>();
+        Iterator<UUID> iterator = pending.keySet().iterator();
+        while (iterator.hasNext() && batch.size() < maxBatchSize) {
+            UUID uuid = iterator.next();
+            Delta delta = pending.remove(uuid);
+            if (delta != null) {
+                batch.put(uuid, delta);
+            }
+        }
+        return batch;
+    }
+    
+    /**
+     * 将写入失败的增量放回日志（保留期间新产生的名称和时间）
+     */
+    private void requeue(Map<UUID, Delta> batch) {
+        for (Map.Entry<UUID, Delta> entry : batch.entrySet()) {
+            pending.merge(entry.getKey(), entry.getValue(), (newer, older) -> {
+                older.add(newer);
+                return older;
+            });
+        }
+    }
+}
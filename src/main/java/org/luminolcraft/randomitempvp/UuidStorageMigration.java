@@ -0,0 +1,284 @@
+package org.luminolcraft.randomitempvp;
+
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * player_stats.uuid 在线迁移：文本（36 字符）-> 二进制（16 字节）
+ * 1. 创建以二进制 UUID 为主键的新表
+ * 2. 按主键分批复制旧表数据，每批一个短事务，期间服务器照常读写旧表
+ * 3. 持有日志刷新锁（统计写入暂存在内存中），补齐复制期间变化的行，
+ *    重命名新旧表并切换存储格式
+ * 中途重启时从头重新复制（REPLACE 写入，可重复执行）
+ */
+public class UuidStorageMigration {
+    // 补齐阶段向前多检查的时间（覆盖复制开始前产生、之后才写入的增量）
+    private static final long CATCH_UP_MARGIN_MILLIS = 5 * 60 * 1000L;
+    
+    // 需要复制的列（战斗数据在基础统计之后）
+    private static final String[] COMBAT_COLUMNS = {
+        "damage_dealt", "damage_taken", "items_received", "tnt_thrown", "fireballs_thrown", "airdrops_opened", "time_survived"
+    };
+    private static final String COLUMNS = "uuid, player_name, wins, losses, kills, deaths, games_played, last_played, " +
+        String.join(", ", COMBAT_COLUMNS);
+    
+    private final JavaPlugin plugin;
+    private final DatabaseManager database;
+    private final Lock writeLock;
+    private final int chunkSize;
+    private final long chunkDelayMillis;
+    
+    /**
+     * @param writeLock 持有期间不会有其他代码写入 player_stats（写回日志的刷新锁）
+     */
+    public UuidStorageMigration(JavaPlugin plugin, DatabaseManager database, Lock writeLock, int chunkSize, long chunkDelayMillis) {
+        this.plugin = plugin;
+        this.database = database;
+        this.writeLock = writeLock;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.chunkDelayMillis = Math.max(0L, chunkDelayMillis);
+    }
+    
+    /**
+     * 执行迁移（阻塞，应在异步线程中调用）
+     */
+    public void run() {
+        if (database.isBinaryUuids()) {
+            return;
+        }
+        
+        long startedAt = System.currentTimeMillis();
+        plugin.getLogger().info("开始将 player_stats 的 UUID 迁移为二进制存储（每批 " + chunkSize + " 行）...");
+        
+        try {
+            createTargetTable();
+            long copied = copyChunks();
+            
+            writeLock.lock();
+            try {
+                long caughtUp = catchUp(startedAt - CATCH_UP_MARGIN_MILLIS);
+                swapTables();
+                database.setBinaryUuids(true);
+                plugin.getLogger().info("UUID 迁移完成：复制 " + copied + " 行，补齐 " + caughtUp + " 行，耗时 " +
+                    (System.currentTimeMillis() - startedAt) / 1000 + " 秒");
+            } finally {
+                writeLock.unlock();
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().severe("UUID 迁移失败，继续使用文本存储（下次启动时将重试）");
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            plugin.getLogger().warning("UUID 迁移被中断，下次启动时将重试");
+        }
+    }
+    
+    /**
+     * 创建以二进制 UUID 为主键的新表（索引与旧表一致）
+     */
+    private void createTargetTable() throws SQLException {
+        String[] statements;
+        if (database.getDatabaseType() == DatabaseManager.DatabaseType.SQLITE) {
+            // WITHOUT ROWID：数据按主键聚簇存储，主键查询不再需要额外的索引
+            statements = new String[] {
+                """
+                CREATE TABLE IF NOT EXISTS player_stats_bin (
+                    uuid BLOB PRIMARY KEY,
+                    player_name TEXT NOT NULL,
+                    wins INTEGER DEFAULT 0,
+                    losses INTEGER DEFAULT 0,
+                    kills INTEGER DEFAULT 0,
+                    deaths INTEGER DEFAULT 0,
+                    games_played INTEGER DEFAULT 0,
+                    last_played INTEGER DEFAULT 0,
+                    damage_dealt INTEGER DEFAULT 0,
+                    damage_taken INTEGER DEFAULT 0,
+                    items_received INTEGER DEFAULT 0,
+                    tnt_thrown INTEGER DEFAULT 0,
+                    fireballs_thrown INTEGER DEFAULT 0,
+                    airdrops_opened INTEGER DEFAULT 0,
+                    time_survived INTEGER DEFAULT 0,
+                    kd_ratio REAL GENERATED ALWAYS AS
+                        (CASE WHEN deaths = 0 THEN CAST(kills AS REAL) ELSE CAST(kills AS REAL) / deaths END) VIRTUAL
+                ) WITHOUT ROWID
+                """,
+                // SQLite 的索引名在整个数据库中唯一，新表的索引使用不同的名称
+                "CREATE INDEX IF NOT EXISTS idx_bin_wins ON player_stats_bin (wins)",
+                "CREATE INDEX IF NOT EXISTS idx_bin_kills ON player_stats_bin (kills)",
+                "CREATE INDEX IF NOT EXISTS idx_bin_kd ON player_stats_bin (kd_ratio) WHERE games_played >= 10"
+            };
+        } else {
+            statements = new String[] {
+                """
+                CREATE TABLE IF NOT EXISTS player_stats_bin (
+                    uuid BINARY(16) PRIMARY KEY,
+                    player_name VARCHAR(16) NOT NULL,
+                    wins INT DEFAULT 0,
+                    losses INT DEFAULT 0,
+                    kills INT DEFAULT 0,
+                    deaths INT DEFAULT 0,
+                    games_played INT DEFAULT 0,
+                    last_played BIGINT DEFAULT 0,
+                    damage_dealt BIGINT DEFAULT 0,
+                    damage_taken BIGINT DEFAULT 0,
+                    items_received BIGINT DEFAULT 0,
+                    tnt_thrown BIGINT DEFAULT 0,
+                    fireballs_thrown BIGINT DEFAULT 0,
+                    airdrops_opened BIGINT DEFAULT 0,
+                    time_survived BIGINT DEFAULT 0,
+                    kd_ratio DOUBLE AS (IF(deaths = 0, kills, kills / deaths)) STORED,
+                    INDEX idx_wins (wins),
+                    INDEX idx_kills (kills),
+                    INDEX idx_kd (kd_ratio)
+                ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
+                """
+            };
+        }
+        
+        try (Connection conn = database.getConnection();
+             Statement stmt = conn.createStatement()) {
+            for (String sql : statements) {
+                stmt.execute(sql);
+            }
+        }
+    }
+    
+    /**
+     * 按主键顺序分批复制（键集分页，每批一个短事务）
+     * @return 复制的行数
+     */
+    private long copyChunks() throws SQLException, InterruptedException {
+        String selectSql = "SELECT " + COLUMNS + " " +
+                           "FROM player_stats WHERE uuid > ? ORDER BY uuid LIMIT ?";
+        
+        String lastUuid = "";
+        long copied = 0;
+        while (true) {
+            int rows;
+            try (Connection conn = database.getConnection()) {
+                boolean autoCommit = conn.getAutoCommit();
+                conn.setAutoCommit(false);
+                try (PreparedStatement select = conn.prepareStatement(selectSql);
+                     PreparedStatement insert = conn.prepareStatement(insertSql())) {
+                    select.setString(1, lastUuid);
+                    select.setInt(2, chunkSize);
+                    
+                    rows = 0;
+                    try (ResultSet rs = select.executeQuery()) {
+                        while (rs.next()) {
+                            lastUuid = rs.getString("uuid");
+                            bindRow(insert, rs);
+                            insert.addBatch();
+                            rows++;
+                        }
+                    }
+                    if (rows > 0) {
+                        insert.executeBatch();
+                    }
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(autoCommit);
+                }
+            }
+            
+            copied += rows;
+            if (rows < chunkSize) {
+                return copied;
+            }
+            if (copied % (chunkSize * 50L) == 0) {
+                plugin.getLogger().info("UUID 迁移进度：已复制 " + copied + " 行");
+            }
+            if (chunkDelayMillis > 0) {
+                Thread.sleep(chunkDelayMillis); // 让出写连接，避免影响正常写入
+            }
+        }
+    }
+    
+    /**
+     * 补齐复制期间被修改或新增的行（所有写入都会更新 last_played）
+     * @return 补齐的行数
+     */
+    private long catchUp(long since) throws SQLException {
+        String selectSql = "SELECT " + COLUMNS + " " +
+                           "FROM player_stats WHERE last_played >= ?";
+        
+        long rows = 0;
+        try (Connection conn = database.getConnection();
+             PreparedStatement select = conn.prepareStatement(selectSql);
+             PreparedStatement insert = conn.prepareStatement(insertSql())) {
+            select.setLong(1, since);
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    bindRow(insert, rs);
+                    insert.addBatch();
+                    rows++;
+                }
+            }
+            if (rows > 0) {
+                insert.executeBatch();
+            }
+        }
+        return rows;
+    }
+    
+    /**
+     * 用新表替换旧表，并记录存储格式
+     */
+    private void swapTables() throws SQLException {
+        try (Connection conn = database.getConnection()) {
+            if (database.getDatabaseType() == DatabaseManager.DatabaseType.SQLITE) {
+                boolean autoCommit = conn.getAutoCommit();
+                conn.setAutoCommit(false);
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("ALTER TABLE player_stats RENAME TO player_stats_text");
+                    stmt.execute("ALTER TABLE player_stats_bin RENAME TO player_stats");
+                    stmt.execute("DROP TABLE player_stats_text");
+                    database.setMeta(conn, "uuid_format", "BINARY");
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                } finally {
+                    conn.setAutoCommit(autoCommit);
+                }
+            } else {
+                // MySQL 的 RENAME TABLE 同时重命名多张表是原子操作
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("RENAME TABLE player_stats TO player_stats_text, player_stats_bin TO player_stats");
+                    database.setMeta(conn, "uuid_format", "BINARY");
+                    stmt.execute("DROP TABLE player_stats_text");
+                }
+            }
+        }
+    }
+    
+    private String insertSql() {
+        String verb = database.getDatabaseType() == DatabaseManager.DatabaseType.SQLITE ? "INSERT OR REPLACE" : "REPLACE";
+        return verb + " INTO player_stats_bin (" + COLUMNS + ") " +
+               "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    }
+    
+    private void bindRow(PreparedStatement insert, ResultSet rs) throws SQLException {
+        insert.setBytes(1, DatabaseManager.toBytes(UUID.fromString(rs.getString("uuid"))));
+        insert.setString(2, rs.getString("player_name"));
+        insert.setInt(3, rs.getInt("wins"));
+        insert.setInt(4, rs.getInt("losses"));
+        insert.setInt(5, rs.getInt("kills"));
+        insert.setInt(6, rs.getInt("deaths"));
+        insert.setInt(7, rs.getInt("games_played"));
+        insert.setLong(8, rs.getLong("last_played"));
+        for (int i = 0; i < COMBAT_COLUMNS.length; i++) {
+            insert.setLong(9 + i, rs.getLong(COMBAT_COLUMNS[i]));
+        }
+    }
+}
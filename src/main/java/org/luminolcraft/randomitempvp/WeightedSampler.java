@@ -0,0 +1,134 @@
+package org.luminolcraft.randomitempvp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 按权重随机抽取的别名表（Walker / Vose 算法）
+ * 构建时 O(n)，之后每次抽取 O(1)：一个随机数同时决定落在哪一列和是否取该列的别名，抽取时不分配对象。
+ * 构建后不可修改，可以在多个线程中共享（随机数生成器由调用方提供）
+ * @param <T> 抽取的元素类型
+ */
+public final class WeightedSampler<T> {
+    
+    private final List<T> items;
+    // 每一列保留本元素的概率，其余概率属于该列的别名
+    private final double[] probability;
+    private final int[] alias;
+    
+    private WeightedSampler(List<T> items, double[] probability, int[] alias) {
+        this.items = items;
+        this.probability = probability;
+        this.alias = alias;
+    }
+    
+    /**
+     * 从权重表构建别名表（权重不大于 0 的元素会被忽略）
+     * @param weights 元素及其权重
+     */
+    public static <T> WeightedSampler<T> of(Map<T, ? extends Number> weights) {
+        return of(new ArrayList<>(weights.keySet()), new ArrayList<>(weights.values()));
+    }
+    
+    /**
+     * 从元素列表和对应的权重构建别名表（权重不大于 0 的元素会被忽略）
+     * @param candidates 元素（可以重复出现，如同一物品的不同变种）
+     * @param weights 与元素一一对应的权重
+     */
+    public static <T> WeightedSampler<T> of(List<T> candidates, List<? extends Number> weights) {
+        if (candidates.size() != weights.size()) {
+            throw new IllegalArgumentException("元素数量与权重数量不一致");
+        }
+        List<T> items = new ArrayList<>(candidates.size());
+        List<Double> itemWeights = new ArrayList<>(candidates.size());
+        double total = 0;
+        for (int i = 0; i < candidates.size(); i++) {
+            double weight = weights.get(i) != null ? weights.get(i).doubleValue() : 0;
+            if (weight > 0) {
+                items.add(candidates.get(i));
+                itemWeights.add(weight);
+                total += weight;
+            }
+        }
+        
+        int n = items.size();
+        double[] probability = new double[n];
+        int[] alias = new int[n];
+        if (n == 0) {
+            return new WeightedSampler<>(items, probability, alias);
+        }
+        
+        // 按平均值缩放：小于 1 的列需要别名补齐，大于等于 1 的列把多出的部分分给别人
+        double[] scaled = new double[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int i = 0; i < n; i++) {
+            scaled[i] = itemWeights.get(i) * n / total;
+            if (scaled[i] < 1.0) {
+                small[smallCount++] = i;
+            } else {
+                large[largeCount++] = i;
+            }
+        }
+        
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+            probability[less] = scaled[less];
+            alias[less] = more;
+            scaled[more] = (scaled[more] + scaled[less]) - 1.0;
+            if (scaled[more] < 1.0) {
+                small[smallCount++] = more;
+            } else {
+                large[largeCount++] = more;
+            }
+        }
+        // 剩下的列（包括浮点误差留下的）只取自己
+        while (largeCount > 0) {
+            int index = large[--largeCount];
+            probability[index] = 1.0;
+            alias[index] = index;
+        }
+        while (smallCount > 0) {
+            int index = small[--smallCount];
+            probability[index] = 1.0;
+            alias[index] = index;
+        }
+        
+        return new WeightedSampler<>(items, probability, alias);
+    }
+    
+    /**
+     * 按权重随机抽取一个元素
+     * @param random 随机数生成器（如 ThreadLocalRandom.current()）
+     * @return 抽中的元素，没有元素时返回 null
+     */
+    public T sample(Random random) {
+        int n = probability.length;
+        if (n == 0) {
+            return null;
+        }
+        // 整数部分选列，小数部分决定取本列还是别名
+        double u = random.nextDouble() * n;
+        int column = Math.min((int) u, n - 1);
+        return (u - column) < probability[column] ? items.get(column) : items.get(alias[column]);
+    }
+    
+    /**
+     * 是否没有任何可抽取的元素
+     */
+    public boolean isEmpty() {
+        return probability.length == 0;
+    }
+    
+    /**
+     * 可抽取的元素数量
+     */
+    public int size() {
+        return probability.length;
+    }
+}